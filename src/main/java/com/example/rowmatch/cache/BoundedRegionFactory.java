@@ -0,0 +1,74 @@
+package com.example.rowmatch.cache;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// an in-process second-level cache provider with a size cap and a time to live per region, configured through
+// rowmatch.cache.<region>.max-entries and rowmatch.cache.<region>.ttl-ms with rowmatch.cache.default.* as fallback
+public class BoundedRegionFactory extends RegionFactoryTemplate {
+
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final Map<String, BoundedStorageAccess> storages = new ConcurrentHashMap<>();
+
+    private Map<?, ?> configValues;
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map configValues) {
+        this.configValues = configValues;
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig, DomainDataRegionBuildingContext buildingContext) {
+        return createStorage(regionConfig.getRegionName());
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return createStorage(regionName);
+    }
+
+    // never bounded, a query result is only known to be stale as long as the update time of its tables is kept
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return new BoundedStorageAccess(Integer.MAX_VALUE, 0);
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        storages.values().forEach(BoundedStorageAccess::release);
+        storages.clear();
+    }
+
+    public Map<String, Integer> getRegionSizes() {
+        Map<String, Integer> sizes = new TreeMap<>();
+        storages.forEach((regionName, storage) -> sizes.put(regionName, storage.size()));
+
+        return sizes;
+    }
+
+    private BoundedStorageAccess createStorage(String regionName) {
+        BoundedStorageAccess storage = new BoundedStorageAccess((int) getSetting(regionName, "max-entries", DEFAULT_MAX_ENTRIES), getSetting(regionName, "ttl-ms", 0));
+        storages.put(regionName, storage);
+
+        return storage;
+    }
+
+    private long getSetting(String regionName, String name, long defaultValue) {
+        Object value = configValues.get("rowmatch.cache." + regionName + "." + name);
+        if (value == null) {
+            value = configValues.get("rowmatch.cache.default." + name);
+        }
+
+        return value != null ? Long.parseLong(value.toString().trim()) : defaultValue;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.rowmatch.cache;
+
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// one cache region held in the heap of this node, least recently used entries go first once it is full
+public class BoundedStorageAccess implements DomainDataStorageAccess {
+
+    private final int maxEntries;
+
+    // 0 keeps entries until they are evicted
+    private final long ttlMillis;
+
+    private final Map<Object, Entry> entries;
+
+    public BoundedStorageAccess(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                return size() > BoundedStorageAccess.this.maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (isExpired(entry)) {
+            entries.remove(key);
+            return null;
+        }
+
+        return entry.value;
+    }
+
+    @Override
+    public synchronized void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        entries.put(key, new Entry(value, System.currentTimeMillis()));
+    }
+
+    @Override
+    public synchronized boolean contains(Object key) {
+        Entry entry = entries.get(key);
+
+        return entry != null && !isExpired(entry);
+    }
+
+    @Override
+    public synchronized void evictData() {
+        entries.clear();
+    }
+
+    @Override
+    public synchronized void evictData(Object key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public synchronized void release() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // an item locked by an update in flight must outlive the time to live, or a concurrent load could put stale state back
+    private boolean isExpired(Entry entry) {
+        return ttlMillis > 0 && !(entry.value instanceof SoftLock) && entry.storedAt + ttlMillis <= System.currentTimeMillis();
+    }
+
+    private static class Entry {
+
+        private final Object value;
+
+        private final long storedAt;
+
+        private Entry(Object value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+}
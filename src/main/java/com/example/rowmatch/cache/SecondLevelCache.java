@@ -0,0 +1,89 @@
+package com.example.rowmatch.cache;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Collection;
+import java.util.Map;
+
+// evicts what is changed behind Hibernate's back and publishes the cache statistics
+@Component
+@ManagedResource(objectName = "rowmatch:type=SecondLevelCache")
+public class SecondLevelCache {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public SecondLevelCache(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public void evict(Class<?> entityClass, Object id) {
+        entityManagerFactory.getCache().evict(entityClass, id);
+    }
+
+    public void evict(Class<?> entityClass, Collection<?> ids) {
+        ids.forEach(id -> evict(entityClass, id));
+    }
+
+    @ManagedOperation
+    public void evictAll() {
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return getStatistics().getSecondLevelCacheHitCount();
+    }
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return getStatistics().getSecondLevelCacheMissCount();
+    }
+
+    @ManagedAttribute
+    public long getPutCount() {
+        return getStatistics().getSecondLevelCachePutCount();
+    }
+
+    @ManagedAttribute
+    public long getQueryCacheHitCount() {
+        return getStatistics().getQueryCacheHitCount();
+    }
+
+    @ManagedAttribute
+    public long getQueryCacheMissCount() {
+        return getStatistics().getQueryCacheMissCount();
+    }
+
+    // entries held per region on this node
+    @ManagedAttribute
+    public Map<String, Integer> getRegionSizes() {
+        RegionFactory regionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getCache().getRegionFactory();
+
+        return regionFactory instanceof BoundedRegionFactory ? ((BoundedRegionFactory) regionFactory).getRegionSizes() : Map.of();
+    }
+
+    @ManagedOperation
+    public String describeRegion(String regionName) {
+        CacheRegionStatistics statistics = getStatistics().getDomainDataRegionStatistics(regionName);
+
+        return String.format("hits=%d misses=%d puts=%d size=%d", statistics.getHitCount(), statistics.getMissCount(), statistics.getPutCount(),
+                getRegionSizes().getOrDefault(regionName, 0));
+    }
+
+    public CacheRegionStatistics getRegionStatistics(String regionName) {
+        return getStatistics().getDomainDataRegionStatistics(regionName);
+    }
+
+    private Statistics getStatistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
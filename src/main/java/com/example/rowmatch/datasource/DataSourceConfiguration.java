@@ -0,0 +1,51 @@
+package com.example.rowmatch.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// replaces Spring Boot's single pool, so connections a thread opens while holding one come from pools of their own
+@Configuration(proxyBeanMethods = false)
+public class DataSourceConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+
+        return primary;
+    }
+
+    // nested connections write, so they always go to the primary. With replicas a connection is taken at the first statement
+    // rather than when the transaction begins, by which time it is known to be read-only.
+    @Bean
+    @Primary
+    public NestedConnectionDataSource dataSource(HikariDataSource primaryDataSource, ObjectProvider<ReadWriteRoutingDataSource> routingDataSource,
+                                                 DataSourceProperties properties,
+                                                 @Value("${rowmatch.datasource.nested-pool-sizes:4,2}") List<Integer> nestedPoolSizes) {
+        List<HikariDataSource> nestedPools = new ArrayList<>();
+        for (int poolSize : nestedPoolSizes) {
+            HikariDataSource nested = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+            nested.setPoolName("nested-" + (nestedPools.size() + 1));
+            nested.setMaximumPoolSize(poolSize);
+
+            nestedPools.add(nested);
+        }
+
+        ReadWriteRoutingDataSource routing = routingDataSource.getIfAvailable();
+        DataSource target = routing != null ? new LazyConnectionDataSourceProxy(routing) : primaryDataSource;
+
+        return new NestedConnectionDataSource(target, nestedPools);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.rowmatch.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// a thread's first connection comes from the target, every further one it opens while still holding it from the nested pool
+// of that depth. Hibernate fetches id blocks on a connection of their own and REQUIRES_NEW transactions open another, so
+// with a single pool every thread holding a connection could wait for a second one until the pool times out. Here a thread
+// only ever waits on a pool deeper than the ones it holds, so the waits cannot go round in a circle.
+public class NestedConnectionDataSource extends DelegatingDataSource {
+
+    private final List<HikariDataSource> nestedPools;
+
+    // connections the thread holds, shared with each of them so a close on another thread still counts for the opening one
+    private final ThreadLocal<Set<Connection>> heldConnections = ThreadLocal.withInitial(ConcurrentHashMap::newKeySet);
+
+    public NestedConnectionDataSource(DataSource target, List<HikariDataSource> nestedPools) {
+        super(target);
+        this.nestedPools = nestedPools;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Set<Connection> held = heldConnections.get();
+        try {
+            int depth = countOpen(held);
+            Connection connection = depth == 0 ? obtainTargetDataSource().getConnection() : getNestedPool(depth).getConnection();
+
+            return track(connection, held);
+        } finally {
+            release(held);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Set<Connection> held = heldConnections.get();
+        try {
+            int depth = countOpen(held);
+            Connection connection = depth == 0 ? obtainTargetDataSource().getConnection(username, password) : getNestedPool(depth).getConnection(username, password);
+
+            return track(connection, held);
+        } finally {
+            release(held);
+        }
+    }
+
+    // the target is closed with its own bean
+    public void close() {
+        nestedPools.forEach(HikariDataSource::close);
+    }
+
+    // deeper than the code ever nests shares the last pool
+    private HikariDataSource getNestedPool(int depth) {
+        return nestedPools.get(Math.min(depth, nestedPools.size()) - 1);
+    }
+
+    // a connection closed past its proxy, by the pool or through the target connection, no longer counts
+    private static int countOpen(Set<Connection> held) {
+        held.removeIf(NestedConnectionDataSource::isClosed);
+
+        return held.size();
+    }
+
+    private static boolean isClosed(Connection connection) {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    // a thread that holds no connection, also after failing to get one, does not keep its set
+    private void release(Set<Connection> held) {
+        if (held.isEmpty()) {
+            heldConnections.remove();
+        }
+    }
+
+    private static Connection track(Connection connection, Set<Connection> held) {
+        held.add(connection);
+
+        AtomicBoolean closed = new AtomicBoolean();
+
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(), new Class<?>[]{ConnectionProxy.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "getTargetConnection":
+                    return connection;
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        held.remove(connection);
+                    }
+                    break;
+            }
+
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        });
+    }
+}
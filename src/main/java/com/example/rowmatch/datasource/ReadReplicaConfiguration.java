@@ -0,0 +1,35 @@
+package com.example.rowmatch.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// only with replicas configured, otherwise every connection goes to the primary pool
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "rowmatch.datasource.replica-urls")
+public class ReadReplicaConfiguration {
+
+    // replicas share the primary's driver and credentials
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(HikariDataSource primaryDataSource, DataSourceProperties properties,
+                                                       @Value("${rowmatch.datasource.replica-urls}") List<String> replicaUrls,
+                                                       @Value("${rowmatch.datasource.replica-pool-size:10}") int replicaPoolSize) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String replicaUrl : replicaUrls) {
+            HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(replicaUrl.trim()).build();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setReadOnly(true);
+
+            replicas.add(replica);
+        }
+
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicas);
+    }
+}
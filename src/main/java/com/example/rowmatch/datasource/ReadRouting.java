@@ -0,0 +1,112 @@
+package com.example.rowmatch.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+// decides which reads may go to a read replica. only reads passed to read() do, everything else - writes, reads a transaction
+// goes on to update, and reads whose results are kept like the resident leaderboards - stays on the primary.
+@Component
+public class ReadRouting {
+
+    private static final ThreadLocal<Boolean> replicaReads = new ThreadLocal<>();
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final boolean enabled;
+
+    private final long readYourWritesMillis;
+
+    private final int maxTrackedWriters;
+
+    // userId -> until when the user's reads go to the primary, so a user sees their own writes however far the replicas lag
+    private final ConcurrentMap<Integer, Long> recentWriters = new ConcurrentHashMap<>();
+
+    public ReadRouting(PlatformTransactionManager transactionManager,
+                       @Value("${rowmatch.datasource.replica-urls:}") List<String> replicaUrls,
+                       @Value("${rowmatch.datasource.read-your-writes-ms:2000}") long readYourWritesMillis,
+                       @Value("${rowmatch.datasource.max-tracked-writers:100000}") int maxTrackedWriters) {
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.enabled = !replicaUrls.isEmpty();
+        this.readYourWritesMillis = readYourWritesMillis;
+        this.maxTrackedWriters = maxTrackedWriters;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // runs the read in a read-only transaction on a replica, unless one of the users wrote recently on this node.
+    // a read joining a caller's transaction stays on that transaction's connection.
+    public <T> T read(Collection<Integer> userIds, Supplier<T> read) {
+        if (!enabled || TransactionSynchronizationManager.isActualTransactionActive() || hasRecentWrite(userIds)) {
+            return read.get();
+        }
+
+        return readOnlyTransactionTemplate.execute(status -> {
+            replicaReads.set(Boolean.TRUE);
+            try {
+                return read.get();
+            } finally {
+                replicaReads.remove();
+            }
+        });
+    }
+
+    // the window starts at the commit, a write still in flight is not visible on the primary either
+    public void recordWrites(Collection<Integer> userIds) {
+        if (!enabled) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    markRecentWriters(userIds);
+                }
+            });
+        } else {
+            markRecentWriters(userIds);
+        }
+    }
+
+    static boolean isReplicaRead() {
+        return replicaReads.get() != null && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private boolean hasRecentWrite(Collection<Integer> userIds) {
+        long now = System.currentTimeMillis();
+
+        for (int userId : userIds) {
+            Long primaryUntil = recentWriters.get(userId);
+            if (primaryUntil != null && primaryUntil > now) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void markRecentWriters(Collection<Integer> userIds) {
+        long now = System.currentTimeMillis();
+
+        if (recentWriters.size() > maxTrackedWriters) {
+            recentWriters.values().removeIf(primaryUntil -> primaryUntil <= now);
+        }
+
+        for (int userId : userIds) {
+            recentWriters.put(userId, now + readYourWritesMillis);
+        }
+    }
+}
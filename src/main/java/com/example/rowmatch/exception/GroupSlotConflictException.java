@@ -0,0 +1,8 @@
+package com.example.rowmatch.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT, reason = "Tournament groups are being filled by other requests.")
+public class GroupSlotConflictException extends RuntimeException {
+}
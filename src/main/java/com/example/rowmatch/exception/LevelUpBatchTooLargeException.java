@@ -0,0 +1,8 @@
+package com.example.rowmatch.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.PAYLOAD_TOO_LARGE, reason = "Level up batch too large.")
+public class LevelUpBatchTooLargeException extends RuntimeException {
+}
@@ -0,0 +1,8 @@
+package com.example.rowmatch.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Too many users to rank at once.")
+public class RankBatchTooLargeException extends RuntimeException {
+}
@@ -0,0 +1,8 @@
+package com.example.rowmatch.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.NOT_FOUND, reason = "Tournament not found.")
+public class TournamentNotFoundException extends RuntimeException {
+}
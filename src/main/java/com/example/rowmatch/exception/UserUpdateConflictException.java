@@ -0,0 +1,8 @@
+package com.example.rowmatch.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT, reason = "User is being updated by another request.")
+public class UserUpdateConflictException extends RuntimeException {
+}
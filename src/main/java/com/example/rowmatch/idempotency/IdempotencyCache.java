@@ -0,0 +1,134 @@
+package com.example.rowmatch.idempotency;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@ManagedResource(objectName = "rowmatch:type=IdempotencyCache")
+public class IdempotencyCache {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyCache.class);
+
+    private final IdempotentResponseRepository idempotentResponseRepository;
+
+    private final long ttlMillis;
+
+    private final int maxEntries;
+
+    private final boolean persistent;
+
+    private final AtomicLong failedPersists = new AtomicLong();
+
+    private final ConcurrentMap<String, StoredResponse> responses = new ConcurrentHashMap<>();
+
+    // insertion order of the cached keys, oldest first, which is also expiry order as every entry lives equally long
+    private final Queue<String> storeOrder = new ConcurrentLinkedQueue<>();
+
+    public IdempotencyCache(IdempotentResponseRepository idempotentResponseRepository,
+                            @Value("${rowmatch.idempotency.ttl-ms:86400000}") long ttlMillis,
+                            @Value("${rowmatch.idempotency.max-entries:100000}") int maxEntries,
+                            @Value("${rowmatch.idempotency.persistent:false}") boolean persistent) {
+        this.idempotentResponseRepository = idempotentResponseRepository;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.persistent = persistent;
+    }
+
+    public StoredResponse get(String requestKey) {
+        StoredResponse response = responses.get(requestKey);
+        if (response == null && persistent) {
+            // stored by another node or before a restart
+            response = idempotentResponseRepository.findById(requestKey).map(IdempotentResponseEntity::toStoredResponse).orElse(null);
+            if (response != null && !isExpired(response, System.currentTimeMillis())) {
+                putInMemory(requestKey, response);
+            }
+        }
+
+        if (response == null || isExpired(response, System.currentTimeMillis())) {
+            return null;
+        }
+
+        return response;
+    }
+
+    public void put(String requestKey, StoredResponse response) {
+        putInMemory(requestKey, response);
+
+        if (persistent) {
+            try {
+                idempotentResponseRepository.save(new IdempotentResponseEntity(requestKey, response));
+            } catch (DataIntegrityViolationException ignored) {
+                // a retry on another node stored its response first, either one will do
+            } catch (DataAccessException e) {
+                // the request itself succeeded and its response is still answered, a retry reaching another node is handled again
+                failedPersists.incrementAndGet();
+                log.warn("Failed to persist idempotent response for {}", requestKey, e);
+            }
+        }
+    }
+
+    @ManagedAttribute
+    public long getFailedPersists() {
+        return failedPersists.get();
+    }
+
+    public int size() {
+        return responses.size();
+    }
+
+    @Scheduled(fixedDelayString = "${rowmatch.idempotency.purge-interval-ms:60000}", initialDelayString = "${rowmatch.idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+
+        while (true) {
+            String oldestKey = storeOrder.peek();
+            if (oldestKey == null) {
+                break;
+            }
+
+            StoredResponse oldest = responses.get(oldestKey);
+            if (oldest != null && !isExpired(oldest, now)) {
+                break;
+            }
+
+            storeOrder.poll();
+            responses.remove(oldestKey, oldest);
+        }
+
+        if (persistent) {
+            idempotentResponseRepository.deleteStoredBefore(now - ttlMillis);
+        }
+    }
+
+    private void putInMemory(String requestKey, StoredResponse response) {
+        if (responses.put(requestKey, response) == null) {
+            storeOrder.add(requestKey);
+        }
+
+        while (responses.size() > maxEntries) {
+            String oldestKey = storeOrder.poll();
+            if (oldestKey == null) {
+                break;
+            }
+
+            responses.remove(oldestKey);
+        }
+    }
+
+    private boolean isExpired(StoredResponse response, long now) {
+        return response.getStoredAt() + ttlMillis <= now;
+    }
+}
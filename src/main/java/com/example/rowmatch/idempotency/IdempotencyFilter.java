@@ -0,0 +1,193 @@
+package com.example.rowmatch.idempotency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.*;
+
+// answers a retried level up, participation or reward claim with the response of the first attempt instead of doing the work again
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Set<String> MUTATING_METHODS = Set.of("POST", "PUT", "PATCH");
+
+    private final IdempotencyCache idempotencyCache;
+
+    private final long inFlightWaitMillis;
+
+    // requests still being handled, so a retry arriving before the first attempt is answered waits for it
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyFilter(IdempotencyCache idempotencyCache, @Value("${rowmatch.idempotency.in-flight-wait-ms:10000}") long inFlightWaitMillis) {
+        this.idempotencyCache = idempotencyCache;
+        this.inFlightWaitMillis = inFlightWaitMillis;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !MUTATING_METHODS.contains(request.getMethod()) || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String requestKey = toRequestKey(request);
+
+        byte[] requestBody = StreamUtils.copyToByteArray(request.getInputStream());
+        String requestHash = hash(requestBody);
+        request = new CachedBodyRequest(request, requestBody);
+
+        // a retry either replays a stored response, waits for the attempt in flight, or becomes the attempt itself. when the attempt
+        // in flight fails, its waiters come back here and only one of them takes over, the others wait for that one in turn.
+        while (true) {
+            StoredResponse stored = idempotencyCache.get(requestKey);
+            if (stored != null) {
+                replay(stored, requestHash, response);
+                return;
+            }
+
+            CompletableFuture<StoredResponse> attempt = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(requestKey, attempt);
+            if (running == null) {
+                StoredResponse result = null;
+                try {
+                    result = execute(requestKey, requestHash, request, response, filterChain);
+                } finally {
+                    // removed before the waiters wake up, so the one taking over finds the key free
+                    inFlight.remove(requestKey, attempt);
+                    attempt.complete(result);
+                }
+                return;
+            }
+
+            try {
+                stored = running.get(inFlightWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response.sendError(HttpStatus.CONFLICT.value(), "A request with the same idempotency key is still being processed");
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                response.sendError(HttpStatus.CONFLICT.value(), "A request with the same idempotency key is still being processed");
+                return;
+            }
+
+            if (stored != null) {
+                replay(stored, requestHash, response);
+                return;
+            }
+        }
+    }
+
+    private StoredResponse execute(String requestKey, String requestHash, HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, responseWrapper);
+
+        StoredResponse stored = null;
+        // failures are not stored, the retry of a request rejected for a transient reason should get another chance
+        if (HttpStatus.valueOf(responseWrapper.getStatus()).is2xxSuccessful()) {
+            stored = new StoredResponse(requestHash, responseWrapper.getStatus(), responseWrapper.getContentType(), responseWrapper.getContentAsByteArray(), System.currentTimeMillis());
+            idempotencyCache.put(requestKey, stored);
+        }
+
+        responseWrapper.copyBodyToResponse();
+
+        return stored;
+    }
+
+    private void replay(StoredResponse stored, String requestHash, HttpServletResponse response) throws IOException {
+        // the key was reused for another request, replaying the first answer would hide that this one was never handled
+        if (stored.getRequestHash() != null && !stored.getRequestHash().equals(requestHash)) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(), "The idempotency key was already used for a request with another body");
+            return;
+        }
+
+        response.setStatus(stored.getStatus());
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    private static String hash(byte[] requestBody) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(requestBody));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // the same key sent to another endpoint is another request
+    private static String toRequestKey(HttpServletRequest request) {
+        String query = request.getQueryString();
+
+        return request.getMethod() + " " + request.getRequestURI() + (query != null ? "?" + query : "") + " " + request.getHeader(IDEMPOTENCY_KEY_HEADER);
+    }
+
+    // the body is read up front to hash it, the handler reads it again from here
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws UnsupportedEncodingException {
+            String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.ISO_8859_1.name();
+
+            return new BufferedReader(new InputStreamReader(getInputStream(), encoding));
+        }
+    }
+}
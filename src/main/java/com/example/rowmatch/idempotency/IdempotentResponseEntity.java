@@ -0,0 +1,49 @@
+package com.example.rowmatch.idempotency;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "idempotent_responses", indexes = @Index(name = "idx_idempotent_responses_stored_at", columnList = "storedAt"))
+public class IdempotentResponseEntity {
+
+    @Id
+    @Column(length = 512)
+    private String requestKey;
+
+    // null for responses stored before request hashes were kept, those are replayed to any body
+    @Column(length = 64)
+    private String requestHash;
+
+    @Column(nullable = false)
+    private int status;
+
+    @Column
+    private String contentType;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] body;
+
+    @Column(nullable = false)
+    private long storedAt;
+
+    public IdempotentResponseEntity(String requestKey, StoredResponse response) {
+        this.requestKey = requestKey;
+        this.requestHash = response.getRequestHash();
+        this.status = response.getStatus();
+        this.contentType = response.getContentType();
+        this.body = response.getBody();
+        this.storedAt = response.getStoredAt();
+    }
+
+    public StoredResponse toStoredResponse() {
+        return new StoredResponse(requestHash, status, contentType, body, storedAt);
+    }
+}
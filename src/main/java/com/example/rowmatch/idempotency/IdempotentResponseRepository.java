@@ -0,0 +1,17 @@
+package com.example.rowmatch.idempotency;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface IdempotentResponseRepository extends JpaRepository<IdempotentResponseEntity, String> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotentResponseEntity r where r.storedAt < :storedBefore")
+    int deleteStoredBefore(@Param("storedBefore") long storedBefore);
+}
@@ -0,0 +1,43 @@
+package com.example.rowmatch.idempotency;
+
+public class StoredResponse {
+
+    // hash of the body of the request answered, a retry under the same key must send the same body to be replayed
+    private final String requestHash;
+
+    private final int status;
+
+    private final String contentType;
+
+    private final byte[] body;
+
+    private final long storedAt;
+
+    public StoredResponse(String requestHash, int status, String contentType, byte[] body, long storedAt) {
+        this.requestHash = requestHash;
+        this.status = status;
+        this.contentType = contentType;
+        this.body = body;
+        this.storedAt = storedAt;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public long getStoredAt() {
+        return storedAt;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.rowmatch.lease;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLeaseEntity, String> {
+
+    @Transactional
+    @Modifying
+    @Query("update JobLeaseEntity l set l.lockedBy = :lockedBy, l.lockedAt = :now, l.lockedUntil = :lockedUntil where l.name = :name and l.lockedUntil <= :now")
+    int acquire(@Param("name") String name, @Param("lockedBy") String lockedBy, @Param("now") Instant now, @Param("lockedUntil") Instant lockedUntil);
+
+    @Transactional
+    @Modifying
+    @Query(value = "insert into job_leases (name, lockedBy, lockedAt, lockedUntil) values (:name, :lockedBy, :now, :lockedUntil)", nativeQuery = true)
+    int insert(@Param("name") String name, @Param("lockedBy") String lockedBy, @Param("now") Instant now, @Param("lockedUntil") Instant lockedUntil);
+
+    @Transactional
+    @Modifying
+    @Query("update JobLeaseEntity l set l.lockedUntil = :now where l.name = :name and l.lockedBy = :lockedBy")
+    int release(@Param("name") String name, @Param("lockedBy") String lockedBy, @Param("now") Instant now);
+}
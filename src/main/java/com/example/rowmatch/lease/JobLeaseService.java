@@ -0,0 +1,78 @@
+package com.example.rowmatch.lease;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+@Service
+public class JobLeaseService {
+
+    private final JobLeaseRepository jobLeaseRepository;
+
+    private final String nodeId;
+
+    public JobLeaseService(JobLeaseRepository jobLeaseRepository, @Value("${rowmatch.node-id:}") String nodeId) {
+        this.jobLeaseRepository = jobLeaseRepository;
+        this.nodeId = nodeId.isEmpty() ? generateNodeId() : nodeId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    // runs the job only on the node that holds the lease. a node that dies while holding it blocks the others
+    // for at most lockAtMostFor, after which the next node to try takes over.
+    public boolean runExclusively(String name, Duration lockAtMostFor, Runnable job) {
+        if (!tryAcquire(name, lockAtMostFor)) {
+            return false;
+        }
+
+        try {
+            job.run();
+        } finally {
+            release(name);
+        }
+
+        return true;
+    }
+
+    public boolean tryAcquire(String name, Duration lockAtMostFor) {
+        Instant now = Instant.now();
+
+        if (jobLeaseRepository.acquire(name, nodeId, now, now.plus(lockAtMostFor)) == 1) {
+            return true;
+        }
+
+        if (jobLeaseRepository.existsById(name)) {
+            return false;
+        }
+
+        // the first run of a job ever, nodes racing here are decided by the primary key
+        try {
+            return jobLeaseRepository.insert(name, nodeId, now, now.plus(lockAtMostFor)) == 1;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    public void release(String name) {
+        jobLeaseRepository.release(name, nodeId, Instant.now());
+    }
+
+    private static String generateNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
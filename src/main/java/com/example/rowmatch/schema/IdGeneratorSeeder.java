@@ -0,0 +1,39 @@
+package com.example.rowmatch.schema;
+
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+// the tables got their ids from identity columns before, so each generator starts above the highest id already taken.
+// runs after the entity manager factory has updated the schema and before anything is inserted, a generator that
+// already has its row is left alone.
+@Component
+@DependsOn("entityManagerFactory")
+public class IdGeneratorSeeder {
+
+    private static final List<String> GENERATED_TABLES = List.of("users", "tournaments", "tournament_groups", "tournament_participations");
+
+    private static final String SEED_SQL = "INSERT INTO id_generators (name, nextValue) SELECT ?, COALESCE(MAX(id), 0) + 1 FROM %s "
+            + "WHERE NOT EXISTS (SELECT 1 FROM id_generators WHERE name = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdGeneratorSeeder(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void seed() {
+        for (String table : GENERATED_TABLES) {
+            try {
+                jdbcTemplate.update(String.format(SEED_SQL, table), table, table);
+            } catch (DataIntegrityViolationException ignored) {
+                // another node starting at the same time seeded it
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.rowmatch.tournament;
+
+import java.time.Instant;
+
+public class ActiveTournament {
+
+    private final int id;
+
+    private final Instant startedAt;
+
+    private final Instant endsAt;
+
+    public ActiveTournament(int id, Instant startedAt, Instant endsAt) {
+        this.id = id;
+        this.startedAt = startedAt;
+        this.endsAt = endsAt;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getEndsAt() {
+        return endsAt;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.rowmatch.tournament;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Objects;
+import java.util.OptionalInt;
+
+@Component
+public class ActiveTournamentHolder {
+
+    private final TournamentRepository tournamentRepository;
+
+    private final CronExpression rotationCron;
+
+    private final Duration gracePeriod;
+
+    // null until the first lookup, replaced as a whole so a reader never sees a half rotated state
+    private volatile State state;
+
+    public ActiveTournamentHolder(TournamentRepository tournamentRepository, @Value("${rowmatch.tournament.rotation-cron:0 0 0 * * ?}") String rotationCron, @Value("${rowmatch.tournament.rotation-grace-period-ms:10000}") long gracePeriodMs) {
+        this.tournamentRepository = tournamentRepository;
+        this.rotationCron = CronExpression.parse(rotationCron);
+        this.gracePeriod = Duration.ofMillis(gracePeriodMs);
+    }
+
+    public ActiveTournament get() {
+        return getState().active;
+    }
+
+    // the previous tournament keeps taking scores for the grace period, so level ups of requests in flight during the rotation still count
+    public boolean acceptsScoresFor(int tournamentId) {
+        State current = getState();
+        if (current.active != null && current.active.getId() == tournamentId) {
+            return true;
+        }
+
+        return current.previous != null && current.previous.getId() == tournamentId && Instant.now().isBefore(current.previousAcceptsScoresUntil);
+    }
+
+    public Instant getNextRotation() {
+        return rotationCron.next(Instant.now().atZone(ZoneId.systemDefault())).toInstant();
+    }
+
+    // hands out the previous tournament once, after its grace period is over
+    public synchronized OptionalInt pollExpiredPrevious() {
+        State current = getState();
+        if (current.previous == null || Instant.now().isBefore(current.previousAcceptsScoresUntil)) {
+            return OptionalInt.empty();
+        }
+
+        state = new State(current.active, current.upcoming, null, null);
+
+        return OptionalInt.of(current.previous.getId());
+    }
+
+    public synchronized void setUpcoming(TournamentEntity tournament) {
+        State current = getState();
+
+        state = new State(current.active, toActiveTournament(tournament), current.previous, current.previousAcceptsScoresUntil);
+    }
+
+    public void rotate(TournamentEntity tournament) {
+        // the switch must not become visible to other requests before it is committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    switchTo(toActiveTournament(tournament));
+                }
+            });
+        } else {
+            switchTo(toActiveTournament(tournament));
+        }
+    }
+
+    public ActiveTournament toActiveTournament(TournamentEntity tournament) {
+        Instant startedAt = tournament.getStartsAt() != null ? tournament.getStartsAt() : tournament.getCreatedAt() != null ? tournament.getCreatedAt() : Instant.now();
+        Instant endsAt = rotationCron.next(startedAt.atZone(ZoneId.systemDefault())).toInstant();
+
+        return new ActiveTournament(tournament.getId(), startedAt, endsAt);
+    }
+
+    // picks up rotations made by other nodes, comparing only the ids before loading anything
+    @Scheduled(fixedDelayString = "${rowmatch.tournament.active-refresh-interval-ms:5000}", initialDelayString = "${rowmatch.tournament.active-refresh-interval-ms:5000}")
+    public void refresh() {
+        State current = state;
+        Integer activeId = tournamentRepository.findActiveTournamentId().orElse(null);
+        Integer upcomingId = tournamentRepository.findUpcomingTournamentId().orElse(null);
+
+        if (current != null && (current.matches(activeId, upcomingId) || current.isAheadOf(activeId, upcomingId))) {
+            return;
+        }
+
+        load();
+    }
+
+    private State getState() {
+        State current = state;
+        if (current == null) {
+            current = load();
+        }
+
+        // every node switches on its own at the boundary, without waiting for the rotation job or a refresh
+        if (current.upcoming != null && !Instant.now().isBefore(current.upcoming.getStartedAt())) {
+            current = switchTo(current.upcoming);
+        }
+
+        return current;
+    }
+
+    private synchronized State switchTo(ActiveTournament tournament) {
+        State current = state != null ? state : load();
+        if (current.active != null && current.active.getId() == tournament.getId()) {
+            return current;
+        }
+
+        ActiveTournament upcoming = current.upcoming != null && current.upcoming.getId() == tournament.getId() ? null : current.upcoming;
+        state = new State(tournament, upcoming, current.active, Instant.now().plus(gracePeriod));
+
+        return state;
+    }
+
+    private synchronized State load() {
+        State current = state;
+        ActiveTournament active = tournamentRepository.getTournamentByIsActiveTrue().map(this::toActiveTournament).orElse(null);
+        ActiveTournament upcoming = tournamentRepository.getTournamentByIsUpcomingTrue().map(this::toActiveTournament).orElse(null);
+
+        if (current != null && current.active != null && (active == null || active.getId() != current.active.getId())) {
+            state = new State(active, upcoming, current.active, Instant.now().plus(gracePeriod));
+        } else if (current != null) {
+            state = new State(active, upcoming, current.previous, current.previousAcceptsScoresUntil);
+        } else {
+            state = new State(active, upcoming, null, null);
+        }
+
+        return state;
+    }
+
+    private static Integer idOf(ActiveTournament tournament) {
+        return tournament != null ? tournament.getId() : null;
+    }
+
+    private static class State {
+
+        private final ActiveTournament active;
+
+        private final ActiveTournament upcoming;
+
+        private final ActiveTournament previous;
+
+        private final Instant previousAcceptsScoresUntil;
+
+        private State(ActiveTournament active, ActiveTournament upcoming, ActiveTournament previous, Instant previousAcceptsScoresUntil) {
+            this.active = active;
+            this.upcoming = upcoming;
+            this.previous = previous;
+            this.previousAcceptsScoresUntil = previousAcceptsScoresUntil;
+        }
+
+        private boolean matches(Integer activeId, Integer upcomingId) {
+            return Objects.equals(idOf(active), activeId) && Objects.equals(idOf(upcoming), upcomingId);
+        }
+
+        // switched at the boundary while the database still waits for the rotation job
+        private boolean isAheadOf(Integer activeId, Integer upcomingId) {
+            return Objects.equals(idOf(previous), activeId) && Objects.equals(idOf(active), upcomingId);
+        }
+    }
+}
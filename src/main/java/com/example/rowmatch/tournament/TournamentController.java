@@ -1,11 +1,20 @@
 package com.example.rowmatch.tournament;
 
 import com.example.rowmatch.exception.*;
+import com.example.rowmatch.tournament.leaderboard.FinishedLeaderboard;
 import com.example.rowmatch.tournament.response.GetLeaderboardResponse;
 import com.example.rowmatch.tournament.response.GetRankResponse;
+import com.example.rowmatch.tournament.response.GetRanksResponse;
 import com.example.rowmatch.user.UserDto;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/tournaments")
@@ -31,13 +40,38 @@ public class TournamentController {
         return ResponseEntity.ok().body(new GetRankResponse(rank));
     }
 
+    @GetMapping(value="/{id}/participants/ranks")
+    public ResponseEntity<GetRanksResponse> getUserRanks(@PathVariable int id, @RequestParam List<Integer> userIds) {
+        Map<Integer, Integer> ranks = tournamentService.getUserRanks(id, userIds);
+
+        return ResponseEntity.ok().body(new GetRanksResponse(ranks));
+    }
+
     @GetMapping(value="/groups/{groupId}/leaderboard")
-    public ResponseEntity<GetLeaderboardResponse> getGroupLeaderboard(@PathVariable int groupId) throws GroupNotFoundException {
+    public ResponseEntity<?> getGroupLeaderboard(@PathVariable int groupId, @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws GroupNotFoundException {
+        FinishedLeaderboard finishedLeaderboard = tournamentService.getFinishedGroupLeaderboard(groupId);
+        if (finishedLeaderboard != null) {
+            if (finishedLeaderboard.matches(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(finishedLeaderboard.getETag()).build();
+            }
+
+            return ResponseEntity.ok().eTag(finishedLeaderboard.getETag()).contentType(MediaType.APPLICATION_JSON).body(finishedLeaderboard.getBody());
+        }
+
         GetLeaderboardResponse leaderboard = tournamentService.getGroupLeaderboard(groupId);
 
         return ResponseEntity.ok().body(leaderboard);
     }
 
+    // every group of the tournament, written out while the rows are read rather than collected first
+    @GetMapping(value="/{id}/leaderboard")
+    public ResponseEntity<StreamingResponseBody> getTournamentLeaderboard(@PathVariable int id) throws TournamentNotFoundException {
+        boolean isTournamentOver = tournamentService.isTournamentOver(id);
+        StreamingResponseBody body = out -> tournamentService.writeTournamentLeaderboard(id, isTournamentOver, out);
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @PatchMapping(value= "/{id}/participants/{userId}/claim_reward")
     public ResponseEntity<UserDto> claimReward(@PathVariable int id, @PathVariable int userId) throws ParticipationNotFoundException, OngoingTournamentClaimedException, RewardAlreadyClaimedException, NoRewardEarnedException, GroupNotFoundException {
         UserDto user = tournamentService.claimReward(id, userId);
@@ -4,23 +4,60 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.CreationTimestamp;
 
 import javax.persistence.*;
+import java.time.Instant;
 
 @Getter
 @Setter
 @Entity
-@Table(name = "tournaments")
+@Table(name = "tournaments", indexes = {
+        @Index(name = "idx_tournaments_active", columnList = "isActive"),
+        @Index(name = "idx_tournaments_upcoming", columnList = "isUpcoming"),
+        @Index(name = "idx_tournaments_settled_ended", columnList = "isSettled, endedAt")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "tournaments")
 public class TournamentEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "tournaments")
+    @TableGenerator(name = "tournaments", table = "id_generators", pkColumnName = "name", valueColumnName = "nextValue", pkColumnValue = "tournaments", allocationSize = 50)
     private int id;
 
     @Column(nullable = false)
     private boolean isActive;
 
+    // prepared ahead of the rotation, becomes the active tournament at startsAt
+    @Column(nullable = false)
+    private boolean isUpcoming;
+
+    @Column
+    private Instant startsAt;
+
+    @Column
+    private Instant endedAt;
+
+    @Column(nullable = false)
+    private boolean isSettled;
+
+    @CreationTimestamp
+    @Column
+    private Instant createdAt;
+
     public TournamentEntity() {
         this.isActive = true;
     }
+
+    public static TournamentEntity upcoming(Instant startsAt) {
+        TournamentEntity tournament = new TournamentEntity();
+        tournament.setActive(false);
+        tournament.setUpcoming(true);
+        tournament.setStartsAt(startsAt);
+
+        return tournament;
+    }
 }
@@ -0,0 +1,21 @@
+package com.example.rowmatch.tournament;
+
+// a tournament id and a second int, a user id or a group level, packed into one long map key. keys of one tournament share
+// the high half, so a tournament's entries can be told apart without unpacking the rest.
+public final class TournamentKeys {
+
+    private TournamentKeys() {
+    }
+
+    public static long of(int tournamentId, int id) {
+        return ((long) tournamentId << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    public static int tournamentId(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static int id(long key) {
+        return (int) key;
+    }
+}
@@ -1,12 +1,35 @@
 package com.example.rowmatch.tournament;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TournamentRepository extends JpaRepository<TournamentEntity, Integer> {
 
     Optional<TournamentEntity> getTournamentByIsActiveTrue();
+
+    @Query("select t.id from TournamentEntity t where t.isActive = true")
+    Optional<Integer> findActiveTournamentId();
+
+    Optional<TournamentEntity> getTournamentByIsUpcomingTrue();
+
+    @Query("select t.id from TournamentEntity t where t.isUpcoming = true")
+    Optional<Integer> findUpcomingTournamentId();
+
+    @Query("select t.id from TournamentEntity t where t.isSettled = false and t.endedAt <= :endedBefore order by t.id")
+    List<Integer> findTournamentIdsToSettle(@Param("endedBefore") Instant endedBefore);
+
+    // a single column update, so a copy of the tournament cached before another node rotated it cannot be written back
+    @Transactional
+    @Modifying
+    @Query("update TournamentEntity t set t.isSettled = true where t.id = :id")
+    int markSettled(@Param("id") int id);
 }
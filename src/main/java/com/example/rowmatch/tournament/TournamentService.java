@@ -1,14 +1,28 @@
 package com.example.rowmatch.tournament;
 
+import com.example.rowmatch.datasource.ReadRouting;
 import com.example.rowmatch.exception.*;
 import com.example.rowmatch.tournament.group.TournamentGroupService;
+import com.example.rowmatch.tournament.leaderboard.FinishedLeaderboard;
+import com.example.rowmatch.tournament.leaderboard.TournamentLeaderboardService;
+import com.example.rowmatch.tournament.leaderboard.TournamentLeaderboardStreamer;
 import com.example.rowmatch.tournament.participation.TournamentParticipationDto;
 import com.example.rowmatch.tournament.participation.TournamentParticipationService;
 import com.example.rowmatch.tournament.response.GetLeaderboardResponse;
+import com.example.rowmatch.tournament.settlement.TournamentRewards;
+import com.example.rowmatch.tournament.settlement.TournamentSettlementService;
 import com.example.rowmatch.user.UserDto;
 import com.example.rowmatch.user.UserService;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
 
 @Service
 public class TournamentService {
@@ -17,42 +31,101 @@ public class TournamentService {
 
     private final TournamentRepository tournamentRepository;
 
+    private final ActiveTournamentHolder activeTournamentHolder;
+
     private final TournamentGroupService tournamentGroupService;
 
     private final TournamentParticipationService tournamentParticipationService;
 
+    private final TournamentLeaderboardService tournamentLeaderboardService;
+
+    private final TournamentSettlementService tournamentSettlementService;
+
+    private final TournamentLeaderboardStreamer tournamentLeaderboardStreamer;
+
+    private final ReadRouting readRouting;
+
     private static final int TOURNAMENT_MINIMUM_ENTRY_LEVEL = 20;
     private static final int TOURNAMENT_MINIMUM_ENTRY_COINS = 1000;
-    private static final int TOURNAMENT_FIRST_RANK_REWARD = 10000;
-    private static final int TOURNAMENT_SECOND_RANK_REWARD = 5000;
-    private static final int TOURNAMENT_THIRD_RANK_REWARD = 3000;
-    private static final int TOURNAMENT_NON_PODIUM_RANK_REWARD = 1000;
-    private static final int TOURNAMENT_LAST_REWARDED_RANK = 10;
 
-    public TournamentService(UserService userService, TournamentRepository tournamentRepository, TournamentGroupService tournamentGroupService, TournamentParticipationService tournamentParticipationService) {
+    // each request is one ranking query, bounded so a long user list cannot turn it into a scan of the tournament
+    private static final int MAX_RANK_BATCH_SIZE = 100;
+
+    public TournamentService(UserService userService, TournamentRepository tournamentRepository, ActiveTournamentHolder activeTournamentHolder, TournamentGroupService tournamentGroupService, TournamentParticipationService tournamentParticipationService, TournamentLeaderboardService tournamentLeaderboardService, TournamentSettlementService tournamentSettlementService, TournamentLeaderboardStreamer tournamentLeaderboardStreamer, ReadRouting readRouting) {
         this.userService = userService;
         this.tournamentRepository = tournamentRepository;
+        this.activeTournamentHolder = activeTournamentHolder;
         this.tournamentGroupService = tournamentGroupService;
         this.tournamentParticipationService = tournamentParticipationService;
+        this.tournamentLeaderboardService = tournamentLeaderboardService;
+        this.tournamentSettlementService = tournamentSettlementService;
+        this.tournamentLeaderboardStreamer = tournamentLeaderboardStreamer;
+        this.readRouting = readRouting;
     }
 
-    public void create() {
-        save(new TournamentEntity());
+    // created a whole rotation ahead, optionally with an empty group for every level the given tournament had, so the boundary only flips a flag
+    public void prepareNextTournament(Integer groupLevelsOfTournamentId) {
+        if (tournamentRepository.getTournamentByIsUpcomingTrue().isPresent()) {
+            return;
+        }
+
+        // read from the database rather than the holder, which may not have seen a rotation by another node yet
+        TournamentEntity active = tournamentRepository.getTournamentByIsActiveTrue().orElse(null);
+        Instant startsAt = active != null ? activeTournamentHolder.toActiveTournament(active).getEndsAt() : activeTournamentHolder.getNextRotation();
+
+        // after an outage the missed rotations are not caught up one by one, the next tournament just starts now
+        TournamentEntity tournament = save(TournamentEntity.upcoming(startsAt.isBefore(Instant.now()) ? Instant.now() : startsAt));
+
+        if (groupLevelsOfTournamentId != null) {
+            tournamentGroupService.prepareGroups(tournament.getId(), groupLevelsOfTournamentId);
+        }
+
+        activeTournamentHolder.setUpcoming(tournament);
+    }
+
+    public boolean isRotationDue() {
+        return tournamentRepository.getTournamentByIsUpcomingTrue().map(tournament -> !tournament.getStartsAt().isAfter(Instant.now())).orElse(false);
     }
 
+    // hands the active flag from the finished tournament to the prepared one in a single transaction, so there is no moment without an active tournament
+    @Transactional
+    public OptionalInt rotate() {
+        TournamentEntity previous = tournamentRepository.getTournamentByIsActiveTrue().orElse(null);
+        TournamentEntity next = tournamentRepository.getTournamentByIsUpcomingTrue().orElseGet(TournamentEntity::new);
+
+        if (previous != null) {
+            previous.setActive(false);
+            previous.setEndedAt(Instant.now());
+            save(previous);
+        }
+
+        next.setActive(true);
+        next.setUpcoming(false);
+
+        activeTournamentHolder.rotate(save(next));
+
+        return previous != null ? OptionalInt.of(previous.getId()) : OptionalInt.empty();
+    }
+
+    public List<Integer> getTournamentIdsToSettle(Duration gracePeriod) {
+        return tournamentRepository.findTournamentIdsToSettle(Instant.now().minus(gracePeriod));
+    }
+
+    // one transaction for the whole join, so the user is read once and written once and nothing is left half done
+    @Transactional
     public GetLeaderboardResponse participate(int userId) throws NoActiveTournamentException, UserNotFoundException, UserAlreadyJoinedTournamentException, RankTooLowForTournamentException, NotEnoughCoinsForTournamentException, ParticipationNotFoundException, LastEarnedRewardNotClaimedException, GroupNotFoundException {
         int tournamentId = getActiveTournamentId();
 
-        checkIfUserAlreadyJoined(tournamentId, userId);
-
-        UserDto user = userService.get(userId);
+        // held until the join commits, so the fee is charged from the latest coins
+        UserDto user = userService.getForUpdate(userId);
+        checkIfUserAlreadyJoined(tournamentId, user);
         isEligibleToEnterTournament(user);
 
         int groupId = tournamentGroupService.getGroupIdForUserLevel(user.getLevel(), tournamentId);
 
-        tournamentParticipationService.participate(tournamentId, groupId, userId);
+        TournamentParticipationDto participation = tournamentParticipationService.participate(tournamentId, groupId, userId);
 
-        return getGroupLeaderboard(groupId);
+        return new GetLeaderboardResponse(tournamentLeaderboardService.getLeaderboardIncluding(participation));
     }
 
     public GetLeaderboardResponse getGroupLeaderboard(int groupId) {
@@ -61,53 +134,102 @@ public class TournamentService {
         return new GetLeaderboardResponse(participations);
     }
 
+    public FinishedLeaderboard getFinishedGroupLeaderboard(int groupId) {
+        return tournamentLeaderboardService.getFinishedLeaderboard(groupId);
+    }
+
+    // looked up before the leaderboard is streamed, as an unknown tournament can no longer be answered with a 404 once it started
+    public boolean isTournamentOver(int id) throws TournamentNotFoundException {
+        TournamentEntity tournament = tournamentRepository.findById(id).orElseThrow(TournamentNotFoundException::new);
+
+        return !tournament.isActive() && !tournament.isUpcoming();
+    }
+
+    // nothing of it is kept, so the whole scan may run on a replica
+    public void writeTournamentLeaderboard(int id, boolean isTournamentOver, OutputStream out) {
+        readRouting.read(List.of(), () -> {
+            tournamentLeaderboardStreamer.write(id, isTournamentOver, out);
+
+            return null;
+        });
+    }
+
+    // ranks outside the resident groups are counted on a replica, group leaderboards are not since a loaded group is kept
+    // and only brought up to date by later writes
     public int getUserRank(int id, int userId) throws ParticipationNotFoundException, GroupNotFoundException {
-        return tournamentParticipationService.getRankByTournamentIdAndUserId(id, userId);
+        return readRouting.read(List.of(userId), () -> tournamentParticipationService.getRankByTournamentIdAndUserId(id, userId));
+    }
+
+    public Map<Integer, Integer> getUserRanks(int id, Collection<Integer> userIds) {
+        if (userIds.size() > MAX_RANK_BATCH_SIZE) {
+            throw new RankBatchTooLargeException();
+        }
+
+        return readRouting.read(userIds, () -> tournamentParticipationService.getRanksByTournamentIdAndUserIds(id, userIds));
     }
 
     public UserDto claimReward(int id, int userId) throws OngoingTournamentClaimedException, ParticipationNotFoundException, RewardAlreadyClaimedException, NoRewardEarnedException, GroupNotFoundException {
-        if (isActive(id)) {
+        // a tournament within its grace period still takes scores, so its ranks are not final yet
+        if (isActive(id) || activeTournamentHolder.acceptsScoresFor(id)) {
             throw new OngoingTournamentClaimedException();
         }
 
-        checkIfCanClaimReward(id, userId);
-
-        int reward = calculateReward(id, userId);
+        int reward = tournamentParticipationService.getUnclaimedReward(id, userId);
+        if (reward == 0) {
+            throw new NoRewardEarnedException();
+        }
 
         tournamentParticipationService.claimReward(id, userId);
 
         return userService.updateAfterRewardClaim(userId, reward);
     }
 
-    public void incrementTournamentScore(int id, int userId) {
-        if (!isActive(id)) {
+    public void incrementTournamentScore(int id, int userId, int delta) {
+        if (!activeTournamentHolder.acceptsScoresFor(id)) {
             return;
         }
 
         try {
-            tournamentParticipationService.incrementTournamentScore(id, userId);
+            tournamentParticipationService.incrementTournamentScore(id, userId, delta);
         } catch (ParticipationNotFoundException ignored) {
         }
     }
 
     public boolean isActive(int id) {
-        TournamentEntity tournament = tournamentRepository.findById(id).orElse(null);
+        ActiveTournament tournament = activeTournamentHolder.get();
 
-        return tournament != null && tournament.isActive();
+        return tournament != null && tournament.getId() == id;
     }
 
-    public void deactivatePreviousTournament() {
-        TournamentEntity tournament = tournamentRepository.getTournamentByIsActiveTrue().orElse(null);
-        if (tournament == null) {
-            return;
-        }
+    // runs once the settlement delay since the tournament ended has passed, see TournamentJobs for what it does not cover
+    public void settleTournament(int id) {
+        tournamentParticipationService.flushPendingTournamentScores();
+
+        tournamentSettlementService.settle(id);
+
+        tournamentRepository.markSettled(id);
 
-        tournament.setActive(false);
-        save(tournament);
+        tournamentLeaderboardService.freezeTournament(id);
     }
 
-    private void save(TournamentEntity tournament) {
-        tournamentRepository.save(tournament);
+    // every node drops its own state of a finished tournament, settling it is left to one of them. the tournament takes no more
+    // scores on this node, so what the node still buffers for it is written now rather than at its next stale flush.
+    public void evictTournament(int id) {
+        tournamentParticipationService.flushPendingTournamentScores();
+
+        tournamentGroupService.evictTournament(id);
+        tournamentLeaderboardService.evictTournament(id);
+    }
+
+    public void creditUnclaimedRewards(int id) {
+        tournamentSettlementService.creditUnclaimedRewards(id);
+
+        // the frozen leaderboards still show the rewards as unclaimed
+        tournamentLeaderboardService.freezeTournament(id);
+    }
+
+    private TournamentEntity save(TournamentEntity tournament) {
+        return tournamentRepository.save(tournament);
     }
 
     private void isEligibleToEnterTournament(UserDto user) throws NotEnoughCoinsForTournamentException, RankTooLowForTournamentException, ParticipationNotFoundException, LastEarnedRewardNotClaimedException, GroupNotFoundException {
@@ -135,58 +257,26 @@ public class TournamentService {
             return;
         }
 
-        int lastEnteredTournamentRank = getUserRank(id, userId);
-        if (lastEnteredTournamentRank >= TOURNAMENT_LAST_REWARDED_RANK) {
-            return;
-        }
-
-        boolean isRewardClaimed = tournamentParticipationService.isRewardClaimed(id, userId);
-        if (!isRewardClaimed) {
+        OptionalInt unclaimedRewardRank = tournamentParticipationService.getUnclaimedRewardRank(id, userId);
+        if (unclaimedRewardRank.isPresent() && unclaimedRewardRank.getAsInt() < TournamentRewards.TOURNAMENT_LAST_REWARDED_RANK) {
             throw new LastEarnedRewardNotClaimedException();
         }
     }
 
-    private void checkIfUserAlreadyJoined(int id, int userId) throws UserAlreadyJoinedTournamentException {
-        boolean hasUserAlreadyJoined = tournamentParticipationService.existsByTournamentIdAndUserId(id, userId);
-        if (hasUserAlreadyJoined) {
+    // the user row is written in the same transaction as the participation, so it answers a repeated join without a query.
+    // joins racing on different nodes both pass here and are told apart by the participation insert.
+    private void checkIfUserAlreadyJoined(int id, UserDto user) throws UserAlreadyJoinedTournamentException {
+        if (user.getLastEnteredTournamentId() != null && user.getLastEnteredTournamentId() == id) {
             throw new UserAlreadyJoinedTournamentException();
         }
     }
 
-    private void checkIfCanClaimReward(int id, int userId) throws RewardAlreadyClaimedException, ParticipationNotFoundException {
-        boolean isRewardClaimed = tournamentParticipationService.isRewardClaimed(id, userId);
-        if (isRewardClaimed) {
-            throw new RewardAlreadyClaimedException();
-        }
-    }
-
     private int getActiveTournamentId() throws NoActiveTournamentException {
-        TournamentEntity tournament = tournamentRepository.getTournamentByIsActiveTrue().orElse(null);
+        ActiveTournament tournament = activeTournamentHolder.get();
         if (tournament == null) {
             throw new NoActiveTournamentException();
         }
 
         return tournament.getId();
     }
-
-    private int calculateReward(int id, int userId) throws ParticipationNotFoundException, NoRewardEarnedException, GroupNotFoundException {
-        int rank = getUserRank(id, userId);
-        if (rank > TOURNAMENT_LAST_REWARDED_RANK) {
-            throw new NoRewardEarnedException();
-        }
-
-        int reward;
-
-        if (rank == 1) {
-            reward = TOURNAMENT_FIRST_RANK_REWARD;
-        } else if (rank == 2) {
-            reward = TOURNAMENT_SECOND_RANK_REWARD;
-        } else if (rank == 3) {
-            reward = TOURNAMENT_THIRD_RANK_REWARD;
-        } else {
-            reward = TOURNAMENT_NON_PODIUM_RANK_REWARD;
-        }
-
-        return reward;
-    }
 }
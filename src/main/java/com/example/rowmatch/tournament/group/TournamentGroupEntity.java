@@ -3,6 +3,8 @@ package com.example.rowmatch.tournament.group;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 
 import javax.persistence.*;
@@ -12,11 +14,14 @@ import java.time.Instant;
 @Setter
 @NoArgsConstructor
 @Entity
-@Table(name = "tournament_groups")
+@Table(name = "tournament_groups", indexes = @Index(name = "idx_groups_tournament_level", columnList = "tournamentId, groupLevel, createdAt"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "tournament_groups")
 public class TournamentGroupEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "tournament_groups")
+    @TableGenerator(name = "tournament_groups", table = "id_generators", pkColumnName = "name", valueColumnName = "nextValue", pkColumnValue = "tournament_groups", allocationSize = 50)
     private int id;
 
     @Column(nullable = false)
@@ -25,6 +30,9 @@ public class TournamentGroupEntity {
     @Column(nullable = false)
     private int groupLevel;
 
+    @Column(nullable = false)
+    private int participantCount;
+
     @CreationTimestamp
     @Column(nullable = false)
     private Instant createdAt;
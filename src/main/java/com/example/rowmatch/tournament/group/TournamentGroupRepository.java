@@ -1,11 +1,24 @@
 package com.example.rowmatch.tournament.group;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TournamentGroupRepository extends JpaRepository<TournamentGroupEntity, Integer> {
     Optional<TournamentGroupEntity> findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(int tournamentId, int groupLevel);
+
+    // the levels of a tournament are only read once it is finished, when they no longer change on any node
+    @QueryHints({@QueryHint(name = "org.hibernate.cacheable", value = "true"), @QueryHint(name = "org.hibernate.cacheRegion", value = "group_levels")})
+    @Query("select distinct g.groupLevel from TournamentGroupEntity g where g.tournamentId = :tournamentId")
+    List<Integer> findDistinctGroupLevelsByTournamentId(@Param("tournamentId") int tournamentId);
+
+    Optional<TournamentGroupEntity> findFirstByTournamentIdAndGroupLevelAndParticipantCountLessThanOrderByIdAsc(int tournamentId, int groupLevel, int participantCount);
 }
@@ -1,7 +1,23 @@
 package com.example.rowmatch.tournament.group;
 
+import com.example.rowmatch.tournament.ActiveTournament;
+import com.example.rowmatch.tournament.ActiveTournamentHolder;
+import com.example.rowmatch.tournament.TournamentKeys;
 import com.example.rowmatch.tournament.participation.TournamentParticipationService;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Service
 public class TournamentGroupService {
@@ -10,34 +26,166 @@ public class TournamentGroupService {
 
     private final TournamentParticipationService tournamentParticipationService;
 
+    private final ActiveTournamentHolder activeTournamentHolder;
+
+    private final TournamentGroupSlotClaimer tournamentGroupSlotClaimer;
+
+    private final TransactionTemplate requiresNewTransactionTemplate;
+
+    // (tournamentId, groupLevel) -> the group new participants of that level are placed in
+    private final ConcurrentMap<Long, OpenGroup> openGroups = new ConcurrentHashMap<>();
+
     private static final int TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT = 20;
 
-    public TournamentGroupService(TournamentGroupRepository tournamentGroupRepository, TournamentParticipationService tournamentParticipationService) {
+    public TournamentGroupService(TournamentGroupRepository tournamentGroupRepository, TournamentParticipationService tournamentParticipationService, ActiveTournamentHolder activeTournamentHolder, TournamentGroupSlotClaimer tournamentGroupSlotClaimer, PlatformTransactionManager transactionManager) {
         this.tournamentGroupRepository = tournamentGroupRepository;
         this.tournamentParticipationService = tournamentParticipationService;
+        this.activeTournamentHolder = activeTournamentHolder;
+        this.tournamentGroupSlotClaimer = tournamentGroupSlotClaimer;
+        this.requiresNewTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
     public int getGroupIdForUserLevel(int userLevel, int tournamentId) {
         int groupLevel = getTournamentGroupLevelForUserLevel(userLevel);
-        TournamentGroupEntity group = tournamentGroupRepository.findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(tournamentId, groupLevel).orElse(null);
+        if (tournamentGroupSlotClaimer.isEnabled()) {
+            return tournamentGroupSlotClaimer.claimSlot(tournamentId, groupLevel, TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT);
+        }
 
-        if (group == null) {
-            group = createGroup(tournamentId, groupLevel);
-        } else {
-            int numOfParticipatorsInGroup = tournamentParticipationService.getParticipationCountByTournamentIdAndGroupId(tournamentId, group.getId());
-            if (numOfParticipatorsInGroup == TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT) {
-                group = createGroup(tournamentId, groupLevel);
+        long key = TournamentKeys.of(tournamentId, groupLevel);
+
+        while (true) {
+            OpenGroup group = getOpenGroup(key, tournamentId, groupLevel);
+            if (group.claimSlot()) {
+                releaseOnRollback(group);
+
+                return group.id;
+            }
+
+            // only the first join that finds the group full replaces it, the others wait on the full group and retry against the replacement.
+            // The insert runs under the group's monitor rather than inside the map's bin lock, which other keys share.
+            synchronized (group) {
+                if (openGroups.get(key) == group) {
+                    openGroups.put(key, new OpenGroup(createGroup(tournamentId, groupLevel).getId(), 0));
+                }
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOpenGroupsOfActiveTournament() {
+        if (tournamentGroupSlotClaimer.isEnabled()) {
+            return;
+        }
+
+        ActiveTournament tournament = activeTournamentHolder.get();
+        if (tournament == null) {
+            return;
+        }
+
+        for (int groupLevel : tournamentGroupRepository.findDistinctGroupLevelsByTournamentId(tournament.getId())) {
+            getOpenGroup(TournamentKeys.of(tournament.getId(), groupLevel), tournament.getId(), groupLevel);
+        }
+    }
+
+    // saved together, so the inserts go out in JDBC batches
+    public void prepareGroups(int tournamentId, int groupLevelsOfTournamentId) {
+        List<TournamentGroupEntity> groups = tournamentGroupRepository.findDistinctGroupLevelsByTournamentId(groupLevelsOfTournamentId).stream()
+                .map(groupLevel -> new TournamentGroupEntity(tournamentId, groupLevel))
+                .collect(Collectors.toList());
+
+        for (TournamentGroupEntity group : tournamentGroupRepository.saveAll(groups)) {
+            // both allocators pick up an existing empty group, this one only spares them the lookup
+            if (!tournamentGroupSlotClaimer.isEnabled()) {
+                openGroups.putIfAbsent(TournamentKeys.of(tournamentId, group.getGroupLevel()), new OpenGroup(group.getId(), 0));
             }
         }
+    }
 
-        return group.getId();
+    public void evictTournament(int tournamentId) {
+        openGroups.keySet().removeIf(key -> TournamentKeys.tournamentId(key) == tournamentId);
     }
 
+    private OpenGroup getOpenGroup(long key, int tournamentId, int groupLevel) {
+        OpenGroup group = openGroups.get(key);
+        if (group != null) {
+            return group;
+        }
+
+        // only taken the first time a (tournamentId, groupLevel) is asked for on this node
+        synchronized (openGroups) {
+            group = openGroups.get(key);
+            if (group == null) {
+                group = loadOpenGroup(tournamentId, groupLevel);
+                openGroups.put(key, group);
+            }
+
+            return group;
+        }
+    }
+
+    private OpenGroup loadOpenGroup(int tournamentId, int groupLevel) {
+        TournamentGroupEntity group = tournamentGroupRepository.findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(tournamentId, groupLevel).orElse(null);
+        if (group == null) {
+            return new OpenGroup(createGroup(tournamentId, groupLevel).getId(), 0);
+        }
+
+        return new OpenGroup(group.getId(), tournamentParticipationService.getParticipationCountByTournamentIdAndGroupId(tournamentId, group.getId()));
+    }
+
+    // committed on its own, so the group outlives a rolled back join and every node placing participants in it finds its row
     private TournamentGroupEntity createGroup(int tournamentId, int groupLevel) {
-        return tournamentGroupRepository.save(new TournamentGroupEntity(tournamentId, groupLevel));
+        return requiresNewTransactionTemplate.execute(status -> tournamentGroupRepository.save(new TournamentGroupEntity(tournamentId, groupLevel)));
+    }
+
+    // a join that is rolled back gives its slot back, otherwise the group would be replaced before it is full. once the group
+    // was replaced the slot stays empty, as new joins only go to the replacement.
+    private void releaseOnRollback(OpenGroup group) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    group.releaseSlot();
+                }
+            }
+        });
     }
 
     private int getTournamentGroupLevelForUserLevel(int level) {
         return level / 100 + (level % 100 == 0 ? -1 : 0);
     }
+
+    private static class OpenGroup {
+
+        private final int id;
+
+        private final AtomicInteger claimedSlots;
+
+        private OpenGroup(int id, int claimedSlots) {
+            this.id = id;
+            this.claimedSlots = new AtomicInteger(claimedSlots);
+        }
+
+        // never counts past the limit, so a released slot is one a join actually held
+        private boolean claimSlot() {
+            while (true) {
+                int claimed = claimedSlots.get();
+                if (claimed >= TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT) {
+                    return false;
+                }
+
+                if (claimedSlots.compareAndSet(claimed, claimed + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void releaseSlot() {
+            claimedSlots.decrementAndGet();
+        }
+    }
 }
@@ -0,0 +1,111 @@
+package com.example.rowmatch.tournament.group;
+
+import com.example.rowmatch.cache.SecondLevelCache;
+import com.example.rowmatch.exception.GroupSlotConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Component
+public class TournamentGroupSlotClaimer {
+
+    private static final Logger log = LoggerFactory.getLogger(TournamentGroupSlotClaimer.class);
+
+    // past Hibernate rather than a JPQL bulk update, which would clear the whole tournament_groups region and the group_levels
+    // query cache on every join. only the claimed group is evicted.
+    private static final String CLAIM_SLOT_SQL = "UPDATE tournament_groups SET participantCount = participantCount + 1 WHERE id = ? AND participantCount < ?";
+
+    private static final String RELEASE_SLOT_SQL = "UPDATE tournament_groups SET participantCount = participantCount - 1 WHERE id = ? AND participantCount > 0";
+
+    // every failed attempt means another join filled the group in between, so running out of attempts takes heavy contention
+    private static final int MAX_CLAIM_ATTEMPTS = 10;
+
+    private final TournamentGroupRepository tournamentGroupRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final SecondLevelCache secondLevelCache;
+
+    private final TransactionTemplate requiresNewTransactionTemplate;
+
+    private final boolean enabled;
+
+    public TournamentGroupSlotClaimer(TournamentGroupRepository tournamentGroupRepository, JdbcTemplate jdbcTemplate, SecondLevelCache secondLevelCache,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${rowmatch.group-allocation.database-claiming:false}") boolean enabled) {
+        this.tournamentGroupRepository = tournamentGroupRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.secondLevelCache = secondLevelCache;
+        this.requiresNewTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // each attempt commits on its own. inside the join's transaction a REPEATABLE READ snapshot would keep showing a group another
+    // node filled, and the row lock of the claim would be held until the join commits, queueing every other join to the group.
+    public int claimSlot(int tournamentId, int groupLevel, int maxParticipantCount) {
+        for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+            Integer groupId = requiresNewTransactionTemplate.execute(status -> tryClaimSlot(tournamentId, groupLevel, maxParticipantCount));
+            if (groupId != null) {
+                secondLevelCache.evict(TournamentGroupEntity.class, groupId);
+                releaseOnRollback(groupId);
+
+                return groupId;
+            }
+        }
+
+        throw new GroupSlotConflictException();
+    }
+
+    private Integer tryClaimSlot(int tournamentId, int groupLevel, int maxParticipantCount) {
+        TournamentGroupEntity group = tournamentGroupRepository.findFirstByTournamentIdAndGroupLevelAndParticipantCountLessThanOrderByIdAsc(tournamentId, groupLevel, maxParticipantCount).orElse(null);
+        if (group == null) {
+            return createGroupWithClaimedSlot(tournamentId, groupLevel);
+        }
+
+        // another node may have taken the last slot since the read, in which case the next open group is tried
+        return jdbcTemplate.update(CLAIM_SLOT_SQL, group.getId(), maxParticipantCount) == 1 ? group.getId() : null;
+    }
+
+    private int createGroupWithClaimedSlot(int tournamentId, int groupLevel) {
+        // nodes racing here each open a group, the oldest open group is always filled first so none of them stays half empty for long
+        TournamentGroupEntity group = new TournamentGroupEntity(tournamentId, groupLevel);
+        group.setParticipantCount(1);
+
+        return tournamentGroupRepository.save(group).getId();
+    }
+
+    // the slot is already committed, a join that rolls back afterwards gives it back so the group does not stay short of a member
+    private void releaseOnRollback(int groupId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+
+                try {
+                    requiresNewTransactionTemplate.executeWithoutResult(releaseStatus -> jdbcTemplate.update(RELEASE_SLOT_SQL, groupId));
+                    secondLevelCache.evict(TournamentGroupEntity.class, groupId);
+                } catch (RuntimeException e) {
+                    log.warn("Could not release the slot of group {} claimed by a rolled back join", groupId, e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.rowmatch.tournament.leaderboard;
+
+public class FinishedLeaderboard {
+
+    private final byte[] body;
+
+    private final String eTag;
+
+    public FinishedLeaderboard(byte[] body, String eTag) {
+        this.body = body;
+        this.eTag = eTag;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(eTag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
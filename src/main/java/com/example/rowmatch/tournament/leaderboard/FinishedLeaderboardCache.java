@@ -0,0 +1,174 @@
+package com.example.rowmatch.tournament.leaderboard;
+
+import com.example.rowmatch.tournament.participation.TournamentParticipationDto;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import com.example.rowmatch.tournament.response.GetLeaderboardResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class FinishedLeaderboardCache {
+
+    private final ObjectMapper objectMapper;
+
+    private final TournamentParticipationRepository tournamentParticipationRepository;
+
+    private final int maxGroups;
+
+    // a group of an unsettled tournament is read again after this long. a settled one is kept until the capacity evicts it,
+    // and is only checked this often for reward claims made on other nodes, as a claim only evicts the node serving it
+    private final long ttlMillis;
+
+    private final ConcurrentMap<Integer, Frozen> leaderboards = new ConcurrentHashMap<>();
+
+    // every freeze in order, oldest first. an evicted or refrozen group leaves its record behind, which is skipped once it
+    // reaches the head, so an eviction never has to search the queue
+    private final Queue<Frozen> freezeOrder = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queuedCount = new AtomicInteger();
+
+    public FinishedLeaderboardCache(ObjectMapper objectMapper, TournamentParticipationRepository tournamentParticipationRepository,
+                                    @Value("${rowmatch.leaderboard.finished-cache-size:20000}") int maxGroups,
+                                    @Value("${rowmatch.leaderboard.finished-cache-ttl-ms:30000}") long ttlMillis) {
+        this.objectMapper = objectMapper;
+        this.tournamentParticipationRepository = tournamentParticipationRepository;
+        this.maxGroups = maxGroups;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public FinishedLeaderboard get(int groupId) {
+        Frozen frozen = leaderboards.get(groupId);
+        if (frozen == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (frozen.isDue(now, ttlMillis)) {
+            // a settled group only changes by reward claims, which a count reveals without reading and encoding the group again
+            if (!frozen.settled || tournamentParticipationRepository.countClaimedRewardsByGroupId(groupId) != frozen.claimedRewardCount) {
+                leaderboards.remove(groupId, frozen);
+                return null;
+            }
+
+            frozen.checkedAt = now;
+        }
+
+        return frozen.leaderboard;
+    }
+
+    public boolean isFull() {
+        return leaderboards.size() >= maxGroups;
+    }
+
+    public FinishedLeaderboard freeze(int groupId, List<TournamentParticipationDto> participations) {
+        return put(groupId, participations, true);
+    }
+
+    // a finished group whose scores may still change until its tournament is settled
+    public FinishedLeaderboard freezeUnsettled(int groupId, List<TournamentParticipationDto> participations) {
+        return put(groupId, participations, false);
+    }
+
+    public void evict(int groupId) {
+        leaderboards.remove(groupId);
+    }
+
+    private FinishedLeaderboard put(int groupId, List<TournamentParticipationDto> participations, boolean settled) {
+        long now = System.currentTimeMillis();
+        Frozen frozen = new Frozen(groupId, render(participations), countClaimedRewards(participations), settled, now);
+
+        leaderboards.put(groupId, frozen);
+        freezeOrder.add(frozen);
+        queuedCount.incrementAndGet();
+
+        trim(now);
+
+        return frozen.leaderboard;
+    }
+
+    // drops records from the head while the cache is over capacity, or they are left behind or of an expired unsettled group.
+    // a settled group at the head never expires, so once twice the capacity is queued it is moved to the tail and the records
+    // behind it are reached
+    private void trim(long now) {
+        while (true) {
+            Frozen oldest = freezeOrder.peek();
+            if (oldest == null) {
+                return;
+            }
+
+            boolean keep = leaderboards.get(oldest.groupId) == oldest && leaderboards.size() <= maxGroups && (oldest.settled || !oldest.isDue(now, ttlMillis));
+            if (keep && queuedCount.get() <= maxGroups * 2) {
+                return;
+            }
+
+            if (!freezeOrder.remove(oldest)) {
+                continue;
+            }
+
+            if (keep) {
+                freezeOrder.add(oldest);
+            } else {
+                queuedCount.decrementAndGet();
+                leaderboards.remove(oldest.groupId, oldest);
+            }
+        }
+    }
+
+    private FinishedLeaderboard render(List<TournamentParticipationDto> participations) {
+        byte[] body = encode(new GetLeaderboardResponse(participations, true));
+
+        return new FinishedLeaderboard(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+    }
+
+    private static int countClaimedRewards(List<TournamentParticipationDto> participations) {
+        int claimedRewardCount = 0;
+        for (TournamentParticipationDto participation : participations) {
+            claimedRewardCount += participation.isRewardClaimed() ? 1 : 0;
+        }
+
+        return claimedRewardCount;
+    }
+
+    private byte[] encode(GetLeaderboardResponse response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Frozen {
+
+        private final int groupId;
+
+        private final FinishedLeaderboard leaderboard;
+
+        private final int claimedRewardCount;
+
+        private final boolean settled;
+
+        private volatile long checkedAt;
+
+        private Frozen(int groupId, FinishedLeaderboard leaderboard, int claimedRewardCount, boolean settled, long frozenAt) {
+            this.groupId = groupId;
+            this.leaderboard = leaderboard;
+            this.claimedRewardCount = claimedRewardCount;
+            this.settled = settled;
+            this.checkedAt = frozenAt;
+        }
+
+        private boolean isDue(long now, long ttlMillis) {
+            return now - checkedAt >= ttlMillis;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.rowmatch.tournament.leaderboard;
+
+import com.example.rowmatch.tournament.participation.TournamentParticipationDto;
+
+import java.util.*;
+
+public class GroupLeaderboard {
+
+    static final Comparator<TournamentParticipationDto> RANKING_ORDER = Comparator.comparingInt(TournamentParticipationDto::getUserScore).reversed()
+            .thenComparingInt(TournamentParticipationDto::getId);
+
+    private final int tournamentId;
+
+    // replaced as a whole on every write so readers never need a lock
+    private volatile Snapshot snapshot;
+
+    public GroupLeaderboard(int tournamentId, List<TournamentParticipationDto> participations) {
+        TournamentParticipationDto[] ranked = participations.toArray(new TournamentParticipationDto[0]);
+        Arrays.sort(ranked, RANKING_ORDER);
+
+        this.tournamentId = tournamentId;
+        this.snapshot = new Snapshot(ranked);
+    }
+
+    public int getTournamentId() {
+        return tournamentId;
+    }
+
+    public List<TournamentParticipationDto> getParticipations() {
+        return Collections.unmodifiableList(Arrays.asList(snapshot.ranked));
+    }
+
+    public OptionalInt getRank(int userId) {
+        Snapshot current = snapshot;
+
+        TournamentParticipationDto participation = current.byUserId.get(userId);
+        if (participation == null) {
+            return OptionalInt.empty();
+        }
+
+        return OptionalInt.of(Arrays.binarySearch(current.ranked, participation, RANKING_ORDER) + 1);
+    }
+
+    public TournamentParticipationDto getParticipation(int userId) {
+        return snapshot.byUserId.get(userId);
+    }
+
+    public synchronized void incrementScore(int userId, int delta) {
+        TournamentParticipationDto participation = snapshot.byUserId.get(userId);
+        if (participation != null) {
+            put(participation.withUserScore(participation.getUserScore() + delta));
+        }
+    }
+
+    public synchronized void put(TournamentParticipationDto participation) {
+        TournamentParticipationDto[] current = snapshot.ranked;
+
+        int existingIndex = indexOfId(current, participation.getId());
+        TournamentParticipationDto[] others = existingIndex < 0 ? current : remove(current, existingIndex);
+
+        int insertionIndex = -Arrays.binarySearch(others, participation, RANKING_ORDER) - 1;
+
+        TournamentParticipationDto[] updated = new TournamentParticipationDto[others.length + 1];
+        System.arraycopy(others, 0, updated, 0, insertionIndex);
+        updated[insertionIndex] = participation;
+        System.arraycopy(others, insertionIndex, updated, insertionIndex + 1, others.length - insertionIndex);
+
+        snapshot = new Snapshot(updated);
+    }
+
+    private static int indexOfId(TournamentParticipationDto[] participations, int id) {
+        for (int i = 0; i < participations.length; i++) {
+            if (participations[i].getId() == id) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static TournamentParticipationDto[] remove(TournamentParticipationDto[] participations, int index) {
+        TournamentParticipationDto[] remaining = new TournamentParticipationDto[participations.length - 1];
+        System.arraycopy(participations, 0, remaining, 0, index);
+        System.arraycopy(participations, index + 1, remaining, index, participations.length - index - 1);
+
+        return remaining;
+    }
+
+    private static class Snapshot {
+
+        private final TournamentParticipationDto[] ranked;
+
+        private final Map<Integer, TournamentParticipationDto> byUserId;
+
+        private Snapshot(TournamentParticipationDto[] ranked) {
+            this.ranked = ranked;
+            this.byUserId = new HashMap<>(ranked.length * 2);
+
+            for (TournamentParticipationDto participation : ranked) {
+                byUserId.put(participation.getUserId(), participation);
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.rowmatch.tournament.leaderboard;
+
+import com.example.rowmatch.tournament.TournamentEntity;
+import com.example.rowmatch.tournament.TournamentKeys;
+import com.example.rowmatch.tournament.TournamentRepository;
+import com.example.rowmatch.tournament.participation.TournamentParticipationDto;
+import com.example.rowmatch.tournament.participation.TournamentParticipationEntity;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import com.example.rowmatch.tournament.participation.TournamentScoreBuffer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Service
+public class TournamentLeaderboardService {
+
+    private static final int WRITE_STAMP_STRIPES = 1024;
+
+    // a group written to this often while it loads is answered from the database without becoming resident
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private final TournamentParticipationRepository tournamentParticipationRepository;
+
+    private final TournamentRepository tournamentRepository;
+
+    private final FinishedLeaderboardCache finishedLeaderboardCache;
+
+    private final TournamentScoreBuffer tournamentScoreBuffer;
+
+    // groups of the active tournament and the previous one in its grace period, a finished tournament is dropped by
+    // evictTournament. not capped otherwise, so it holds at most every group of two tournaments.
+    private final ConcurrentMap<Integer, GroupLeaderboard> leaderboards = new ConcurrentHashMap<>();
+
+    // bumped under a group's map entry by every write to it, so a load read outside the map can tell it missed one
+    private final AtomicLongArray writeStamps = new AtomicLongArray(WRITE_STAMP_STRIPES);
+
+    // (tournamentId, userId) -> groupId of every participation in a resident group
+    private final ConcurrentMap<Long, Integer> groupIdsByParticipant = new ConcurrentHashMap<>();
+
+    public TournamentLeaderboardService(TournamentParticipationRepository tournamentParticipationRepository, TournamentRepository tournamentRepository, FinishedLeaderboardCache finishedLeaderboardCache, TournamentScoreBuffer tournamentScoreBuffer) {
+        this.tournamentParticipationRepository = tournamentParticipationRepository;
+        this.tournamentRepository = tournamentRepository;
+        this.finishedLeaderboardCache = finishedLeaderboardCache;
+        this.tournamentScoreBuffer = tournamentScoreBuffer;
+    }
+
+    // loaded outside the map so a cold group does not block reads and writes of the groups sharing its bin for a query
+    public List<TournamentParticipationDto> getLeaderboard(int groupId) {
+        List<TournamentParticipationDto> participations = Collections.emptyList();
+
+        for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+            GroupLeaderboard resident = leaderboards.get(groupId);
+            if (resident != null) {
+                return resident.getParticipations();
+            }
+
+            long stamp = writeStamps.get(stripe(groupId));
+            participations = findAllByGroupIdWithPendingScores(groupId);
+            if (participations.isEmpty()) {
+                return participations;
+            }
+
+            List<TournamentParticipationDto> loaded = participations;
+            GroupLeaderboard leaderboard = leaderboards.compute(groupId, (id, current) -> {
+                if (current != null) {
+                    return current;
+                }
+
+                // a write landed since the read began, the loaded scores may not have it
+                if (writeStamps.get(stripe(groupId)) != stamp) {
+                    return null;
+                }
+
+                for (TournamentParticipationDto participation : loaded) {
+                    groupIdsByParticipant.put(TournamentKeys.of(participation.getTournamentId(), participation.getUserId()), groupId);
+                }
+
+                return new GroupLeaderboard(loaded.get(0).getTournamentId(), loaded);
+            });
+
+            if (leaderboard != null) {
+                return leaderboard.getParticipations();
+            }
+        }
+
+        return participations;
+    }
+
+    public FinishedLeaderboard getFinishedLeaderboard(int groupId) {
+        FinishedLeaderboard finishedLeaderboard = finishedLeaderboardCache.get(groupId);
+        if (finishedLeaderboard != null || leaderboards.containsKey(groupId)) {
+            return finishedLeaderboard;
+        }
+
+        // neither frozen nor resident, so this is either an old tournament's group or a cold one of the active tournament,
+        // which the caller then loads into the resident set through getLeaderboard. an upcoming tournament may already take
+        // joins on nodes that switched at the boundary before the rotation job ran.
+        List<TournamentParticipationDto> participations = findAllByGroupId(groupId);
+        if (participations.isEmpty()) {
+            return null;
+        }
+
+        TournamentEntity tournament = tournamentRepository.findById(participations.get(0).getTournamentId()).orElse(null);
+        if (tournament != null && (tournament.isActive() || tournament.isUpcoming())) {
+            return null;
+        }
+
+        // scores of the grace period and the buffers of other nodes may still land until the tournament is settled
+        if (tournament != null && !tournament.isSettled()) {
+            return finishedLeaderboardCache.freezeUnsettled(groupId, participations);
+        }
+
+        return finishedLeaderboardCache.freeze(groupId, participations);
+    }
+
+    public void freezeTournament(int tournamentId) {
+        for (int groupId : tournamentParticipationRepository.findDistinctGroupIdsByTournamentId(tournamentId)) {
+            if (finishedLeaderboardCache.isFull()) {
+                return;
+            }
+
+            finishedLeaderboardCache.freeze(groupId, findAllByGroupId(groupId));
+        }
+    }
+
+    public OptionalInt getRank(int tournamentId, int userId) {
+        Integer groupId = groupIdsByParticipant.get(TournamentKeys.of(tournamentId, userId));
+        if (groupId == null) {
+            return OptionalInt.empty();
+        }
+
+        GroupLeaderboard leaderboard = leaderboards.get(groupId);
+        if (leaderboard == null) {
+            return OptionalInt.empty();
+        }
+
+        return leaderboard.getRank(userId);
+    }
+
+    public Map<Integer, Integer> getRanks(int tournamentId, Collection<Integer> userIds) {
+        Map<Integer, Integer> ranks = new HashMap<>();
+
+        for (int userId : userIds) {
+            getRank(tournamentId, userId).ifPresent(rank -> ranks.put(userId, rank));
+        }
+
+        return ranks;
+    }
+
+    public void update(TournamentParticipationEntity participation) {
+        TournamentParticipationDto updatedParticipation = new TournamentParticipationDto(participation);
+
+        afterCommit(() -> apply(updatedParticipation));
+    }
+
+    // (tournamentId, userId) -> delta, written by the given relative update. Only groups resident before the write are raised,
+    // and only if they are still the same instance once it is committed, as a group loaded since already reads the new scores.
+    public <T> T incrementScores(Map<Long, Integer> deltasByParticipant, Supplier<T> write) {
+        Map<Long, GroupLeaderboard> residentLeaderboards = new HashMap<>();
+        Map<Long, Integer> residentGroupIds = new HashMap<>();
+        for (Long key : deltasByParticipant.keySet()) {
+            Integer groupId = groupIdsByParticipant.get(key);
+            GroupLeaderboard leaderboard = groupId != null ? leaderboards.get(groupId) : null;
+            if (leaderboard != null) {
+                residentLeaderboards.put(key, leaderboard);
+                residentGroupIds.put(key, groupId);
+            }
+        }
+
+        T result = write.get();
+
+        if (!residentLeaderboards.isEmpty()) {
+            afterCommit(() -> residentLeaderboards.forEach((key, resident) ->
+                    leaderboards.compute(residentGroupIds.get(key), (groupId, leaderboard) -> {
+                        writeStamps.incrementAndGet(stripe(groupId));
+
+                        if (leaderboard == resident) {
+                            leaderboard.incrementScore(TournamentKeys.id(key), deltasByParticipant.get(key));
+                        }
+
+                        return leaderboard;
+                    })));
+        }
+
+        return result;
+    }
+
+    public List<TournamentParticipationDto> getLeaderboardIncluding(TournamentParticipationDto participation) {
+        GroupLeaderboard leaderboard = leaderboards.get(participation.getGroupId());
+        if (leaderboard == null) {
+            // read inside the caller's transaction but not made resident, the group is loaded again once the write is committed
+            return findAllByGroupIdWithPendingScores(participation.getGroupId());
+        }
+
+        List<TournamentParticipationDto> participations = new ArrayList<>(leaderboard.getParticipations());
+        participations.removeIf(resident -> resident.getId() == participation.getId());
+        participations.add(participation);
+        participations.sort(GroupLeaderboard.RANKING_ORDER);
+
+        return participations;
+    }
+
+    public TournamentParticipationDto getResidentParticipation(int tournamentId, int userId) {
+        Integer groupId = groupIdsByParticipant.get(TournamentKeys.of(tournamentId, userId));
+        if (groupId == null) {
+            return null;
+        }
+
+        GroupLeaderboard leaderboard = leaderboards.get(groupId);
+        if (leaderboard == null) {
+            return null;
+        }
+
+        return leaderboard.getParticipation(userId);
+    }
+
+    public void bufferScoreIncrement(TournamentParticipationDto participation, int delta) {
+        // buffered under the group's map entry, so a concurrent load either sees the delta as pending or gets it applied afterwards
+        leaderboards.compute(participation.getGroupId(), (groupId, leaderboard) -> {
+            tournamentScoreBuffer.add(participation.getId(), delta);
+            writeStamps.incrementAndGet(stripe(groupId));
+
+            if (leaderboard != null) {
+                leaderboard.incrementScore(participation.getUserId(), delta);
+            }
+
+            return leaderboard;
+        });
+    }
+
+    public void evictTournament(int tournamentId) {
+        leaderboards.values().removeIf(leaderboard -> leaderboard.getTournamentId() == tournamentId);
+        groupIdsByParticipant.keySet().removeIf(key -> TournamentKeys.tournamentId(key) == tournamentId);
+    }
+
+    // a write inside a transaction must not become visible to other requests before it is committed
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void apply(TournamentParticipationDto participation) {
+        // only resident groups are touched, the rest will be loaded with this write already in the database. a load that
+        // read the group before the write was committed sees the stamp move and is not made resident.
+        leaderboards.compute(participation.getGroupId(), (groupId, leaderboard) -> {
+            writeStamps.incrementAndGet(stripe(groupId));
+
+            if (leaderboard != null) {
+                leaderboard.put(participation);
+                groupIdsByParticipant.put(TournamentKeys.of(participation.getTournamentId(), participation.getUserId()), groupId);
+            }
+
+            return leaderboard;
+        });
+
+        // only the reward claim changes a finished group, the next read freezes it again
+        finishedLeaderboardCache.evict(participation.getGroupId());
+    }
+
+    private static int stripe(int groupId) {
+        return Math.floorMod(groupId, WRITE_STAMP_STRIPES);
+    }
+
+    private List<TournamentParticipationDto> findAllByGroupIdWithPendingScores(int groupId) {
+        List<TournamentParticipationDto> participations = tournamentScoreBuffer.withoutFlush(() -> findAllByGroupId(groupId).stream()
+                .map(participation -> participation.withUserScore(participation.getUserScore() + (int) tournamentScoreBuffer.getPendingDelta(participation.getId())))
+                .collect(Collectors.toList()));
+
+        participations.sort(GroupLeaderboard.RANKING_ORDER);
+
+        return participations;
+    }
+
+    // already in ranking order
+    private List<TournamentParticipationDto> findAllByGroupId(int groupId) {
+        return tournamentParticipationRepository.findLeaderboardByGroupId(groupId);
+    }
+}
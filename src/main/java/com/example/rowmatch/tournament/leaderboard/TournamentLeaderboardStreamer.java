@@ -0,0 +1,197 @@
+package com.example.rowmatch.tournament.leaderboard;
+
+import com.example.rowmatch.tournament.participation.TournamentParticipationDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// writes a whole tournament's leaderboard, in the shape of GetLeaderboardResponse, while the rows are read from a forward-only
+// cursor. memory stays flat however many participations there are, and the first groups are sent before the last are read.
+// it is as current as the database, buffered scores show up once they are flushed. the pooled connection, a replica's when
+// configured and the primary's otherwise, is held until the last row is written, so a slow client would hold it as long:
+// the stream is given up once it runs past its timeout, also while a write to the client is blocked.
+@Component
+public class TournamentLeaderboardStreamer {
+
+    // every group in ranking order: score descending, earlier participation first on ties
+    private static final String FIND_LEADERBOARD_SQL = "SELECT id, tournamentId, groupId, userId, userScore, isRewardClaimed FROM tournament_participations "
+            + "WHERE tournamentId = ? ORDER BY groupId, userScore DESC, id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final int fetchSize;
+
+    private final long timeoutMillis;
+
+    // a write to a client that stopped reading blocks until the container gives up on the socket. it is left blocking here,
+    // so the cursor can be closed and its connection returned at the stream's deadline
+    private final ExecutorService clientWriters = Executors.newCachedThreadPool();
+
+    public TournamentLeaderboardStreamer(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                         @Value("${rowmatch.leaderboard.stream-fetch-size:1000}") int fetchSize,
+                                         @Value("${rowmatch.leaderboard.stream-timeout-ms:30000}") long timeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void write(int tournamentId, boolean isTournamentOver, OutputStream out) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        DeadlineOutputStream client = new DeadlineOutputStream(out, deadline, tournamentId);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(client)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("participations");
+
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(FIND_LEADERBOARD_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setInt(1, tournamentId);
+                statement.setFetchSize(fetchSize);
+                statement.setQueryTimeout((int) Math.max(1, timeoutMillis / 1000));
+
+                return statement;
+            }, (RowCallbackHandler) resultSet -> {
+                // the query timeout only covers running the query, not a client reading the rows slowly
+                if (System.currentTimeMillis() > deadline) {
+                    throw timeout(tournamentId);
+                }
+
+                writeParticipation(generator, resultSet);
+            });
+
+            generator.writeEndArray();
+            generator.writeBooleanField("isTournamentOver", isTournamentOver);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clientWriters.shutdownNow();
+    }
+
+    private void writeParticipation(JsonGenerator generator, ResultSet resultSet) throws SQLException {
+        TournamentParticipationDto participation = new TournamentParticipationDto(resultSet.getInt(1), resultSet.getInt(2), resultSet.getInt(3),
+                resultSet.getInt(4), resultSet.getInt(5), resultSet.getBoolean(6));
+
+        try {
+            generator.writeObject(participation);
+        } catch (IOException e) {
+            // the client went away, which ends the query as well
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private QueryTimeoutException timeout(int tournamentId) {
+        return new QueryTimeoutException("Streaming the leaderboard of tournament " + tournamentId + " took longer than " + timeoutMillis + " ms");
+    }
+
+    // hands each buffer the generator flushes to a writer thread and waits for it no longer than the stream's deadline.
+    // once a write has been given up on the client is not written to again, not even to close it.
+    private class DeadlineOutputStream extends OutputStream {
+
+        private final OutputStream out;
+
+        private final long deadline;
+
+        private final int tournamentId;
+
+        private boolean abandoned;
+
+        private DeadlineOutputStream(OutputStream out, long deadline, int tournamentId) {
+            this.out = out;
+            this.deadline = deadline;
+            this.tournamentId = tournamentId;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // the generator reuses its buffer for the next rows, so the writer gets a copy
+            byte[] bytes = Arrays.copyOfRange(b, off, off + len);
+
+            run(() -> {
+                out.write(bytes);
+
+                return null;
+            });
+        }
+
+        @Override
+        public void flush() throws IOException {
+            run(() -> {
+                out.flush();
+
+                return null;
+            });
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!abandoned) {
+                run(() -> {
+                    out.close();
+
+                    return null;
+                });
+            }
+        }
+
+        private void run(Callable<Void> write) throws IOException {
+            if (abandoned) {
+                throw timeout(tournamentId);
+            }
+
+            Future<Void> pending = clientWriters.submit(write);
+            try {
+                pending.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                abandoned = true;
+                pending.cancel(true);
+
+                throw timeout(tournamentId);
+            } catch (InterruptedException e) {
+                abandoned = true;
+                pending.cancel(true);
+                Thread.currentThread().interrupt();
+
+                throw new IOException("Interrupted while writing the leaderboard of tournament " + tournamentId, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.rowmatch.tournament.participation;
+
+import lombok.Getter;
+
+@Getter
+public class ParticipationRankDto {
+
+    private final int userId;
+
+    private final int rank;
+
+    // a settled participation keeps its final rank, the others are ranked behind everyone counted ahead of them
+    public ParticipationRankDto(int userId, Integer finalRank, long rankedAhead) {
+        this.userId = userId;
+        this.rank = finalRank != null ? finalRank : (int) rankedAhead + 1;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.rowmatch.tournament.participation;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// the columns the rank and reward reads of a single participation need
+@Getter
+@AllArgsConstructor
+public class ParticipationRewardDto {
+
+    private final int id;
+
+    private final int groupId;
+
+    private final int userScore;
+
+    private final boolean rewardClaimed;
+
+    private final Integer finalRank;
+
+    private final Integer reward;
+}
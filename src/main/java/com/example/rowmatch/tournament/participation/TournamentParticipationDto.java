@@ -20,11 +20,19 @@ public class TournamentParticipationDto {
     private boolean isRewardClaimed;
 
     public TournamentParticipationDto(TournamentParticipationEntity entity) {
-        this.id = entity.getId();
-        this.tournamentId = entity.getTournamentId();
-        this.groupId = entity.getGroupId();
-        this.userId = entity.getUserId();
-        this.userScore = entity.getUserScore();
-        this.isRewardClaimed = entity.isRewardClaimed();
+        this(entity.getId(), entity.getTournamentId(), entity.getGroupId(), entity.getUserId(), entity.getUserScore(), entity.isRewardClaimed());
     }
-}
\ No newline at end of file
+
+    public TournamentParticipationDto(int id, int tournamentId, int groupId, int userId, int userScore, boolean isRewardClaimed) {
+        this.id = id;
+        this.tournamentId = tournamentId;
+        this.groupId = groupId;
+        this.userId = userId;
+        this.userScore = userScore;
+        this.isRewardClaimed = isRewardClaimed;
+    }
+
+    public TournamentParticipationDto withUserScore(int userScore) {
+        return new TournamentParticipationDto(id, tournamentId, groupId, userId, userScore, isRewardClaimed);
+    }
+}
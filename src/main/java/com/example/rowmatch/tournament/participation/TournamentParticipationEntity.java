@@ -3,18 +3,30 @@ package com.example.rowmatch.tournament.participation;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
 
 @Getter
 @Setter
 @NoArgsConstructor
+@DynamicUpdate
 @Entity
-@Table(name = "tournament_participations")
+@Table(name = "tournament_participations",
+        uniqueConstraints = @UniqueConstraint(name = "uk_participations_tournament_user", columnNames = {"tournamentId", "userId"}),
+        indexes = {
+                // group leaderboards and ranks, in ranking order
+                @Index(name = "idx_participations_group_score", columnList = "groupId, userScore, id"),
+                // group counts and the settlement scan of a tournament
+                @Index(name = "idx_participations_tournament_group", columnList = "tournamentId, groupId"),
+                // the reward crediting walk over a tournament's unclaimed rewards
+                @Index(name = "idx_participations_tournament_claimed", columnList = "tournamentId, isRewardClaimed, id")
+        })
 public class TournamentParticipationEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "tournament_participations")
+    @TableGenerator(name = "tournament_participations", table = "id_generators", pkColumnName = "name", valueColumnName = "nextValue", pkColumnValue = "tournament_participations", allocationSize = 50)
     private int id;
 
     @Column(nullable = false)
@@ -32,6 +44,13 @@ public class TournamentParticipationEntity {
     @Column
     private boolean isRewardClaimed;
 
+    // set when the tournament is settled, null while it is running
+    @Column
+    private Integer finalRank;
+
+    @Column
+    private Integer reward;
+
     public TournamentParticipationEntity(int tournamentId, int groupId, int userId) {
         this.tournamentId = tournamentId;
         this.groupId = groupId;
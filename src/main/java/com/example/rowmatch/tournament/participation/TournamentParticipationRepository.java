@@ -1,8 +1,13 @@
 package com.example.rowmatch.tournament.participation;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,5 +20,46 @@ public interface TournamentParticipationRepository extends JpaRepository<Tournam
 
     List<TournamentParticipationEntity> findAllByGroupIdOrderByUserScoreDesc(int groupId);
 
+    // straight into read-only DTOs in ranking order, so loading a group builds no managed entities to snapshot and dirty check
+    @Transactional(readOnly = true)
+    @Query("select new com.example.rowmatch.tournament.participation.TournamentParticipationDto(p.id, p.tournamentId, p.groupId, p.userId, p.userScore, p.isRewardClaimed) "
+            + "from TournamentParticipationEntity p where p.groupId = :groupId order by p.userScore desc, p.id")
+    List<TournamentParticipationDto> findLeaderboardByGroupId(@Param("groupId") int groupId);
+
     Optional<TournamentParticipationEntity> findByTournamentIdAndUserId(int tournamentId, int userId);
+
+    @Transactional(readOnly = true)
+    @Query("select new com.example.rowmatch.tournament.participation.ParticipationRewardDto(p.id, p.groupId, p.userScore, p.isRewardClaimed, p.finalRank, p.reward) "
+            + "from TournamentParticipationEntity p where p.tournamentId = :tournamentId and p.userId = :userId")
+    Optional<ParticipationRewardDto> findRewardByTournamentIdAndUserId(@Param("tournamentId") int tournamentId, @Param("userId") int userId);
+
+    // the ranks of a whole batch in one grouped query, each participation joined to the rows ahead of it in its group.
+    // settled participations join nothing and keep their final rank.
+    @Transactional(readOnly = true)
+    @Query("select new com.example.rowmatch.tournament.participation.ParticipationRankDto(p.userId, p.finalRank, count(o.id)) from TournamentParticipationEntity p "
+            + "left join TournamentParticipationEntity o on p.finalRank is null and o.groupId = p.groupId and (o.userScore > p.userScore or (o.userScore = p.userScore and o.id < p.id)) "
+            + "where p.tournamentId = :tournamentId and p.userId in :userIds group by p.id, p.userId, p.finalRank")
+    List<ParticipationRankDto> findRanksByTournamentIdAndUserIdIn(@Param("tournamentId") int tournamentId, @Param("userIds") Collection<Integer> userIds);
+
+    @Transactional
+    @Modifying
+    @Query("update TournamentParticipationEntity p set p.userScore = p.userScore + :delta where p.tournamentId = :tournamentId and p.userId = :userId")
+    int incrementUserScore(@Param("tournamentId") int tournamentId, @Param("userId") int userId, @Param("delta") int delta);
+
+    @Transactional
+    @Modifying
+    @Query("update TournamentParticipationEntity p set p.isRewardClaimed = true where p.id = :id and p.isRewardClaimed = false")
+    int markRewardClaimed(@Param("id") int id);
+
+    @Query("select distinct p.groupId from TournamentParticipationEntity p where p.tournamentId = :tournamentId")
+    List<Integer> findDistinctGroupIdsByTournamentId(@Param("tournamentId") int tournamentId);
+
+    // tells whether a frozen leaderboard missed a reward claim made on another node, the only change to a settled group
+    @Transactional(readOnly = true)
+    @Query("select count(p) from TournamentParticipationEntity p where p.groupId = :groupId and p.isRewardClaimed = true")
+    int countClaimedRewardsByGroupId(@Param("groupId") int groupId);
+
+    @Transactional(readOnly = true)
+    @Query("select count(p) from TournamentParticipationEntity p where p.groupId = :groupId and (p.userScore > :userScore or (p.userScore = :userScore and p.id < :id))")
+    int countRankedAhead(@Param("groupId") int groupId, @Param("userScore") int userScore, @Param("id") int id);
 }
@@ -2,12 +2,16 @@ package com.example.rowmatch.tournament.participation;
 
 import com.example.rowmatch.exception.GroupNotFoundException;
 import com.example.rowmatch.exception.ParticipationNotFoundException;
-import com.example.rowmatch.tournament.group.TournamentGroupService;
+import com.example.rowmatch.exception.RewardAlreadyClaimedException;
+import com.example.rowmatch.exception.UserAlreadyJoinedTournamentException;
+import com.example.rowmatch.tournament.TournamentKeys;
+import com.example.rowmatch.tournament.leaderboard.TournamentLeaderboardService;
+import com.example.rowmatch.tournament.settlement.TournamentRewards;
 import com.example.rowmatch.user.UserService;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
@@ -15,63 +19,151 @@ public class TournamentParticipationService {
 
     private final TournamentParticipationRepository tournamentParticipationRepository;
 
+    private final TournamentLeaderboardService tournamentLeaderboardService;
+
+    private final TournamentScoreBuffer tournamentScoreBuffer;
+
     private final UserService userService;
 
     private static final int TOURNAMENT_PARTICIPATION_FEE = 1000;
 
-    public TournamentParticipationService(TournamentParticipationRepository tournamentParticipationRepository, UserService userService) {
+    public TournamentParticipationService(TournamentParticipationRepository tournamentParticipationRepository, TournamentLeaderboardService tournamentLeaderboardService, TournamentScoreBuffer tournamentScoreBuffer, UserService userService) {
         this.tournamentParticipationRepository = tournamentParticipationRepository;
+        this.tournamentLeaderboardService = tournamentLeaderboardService;
+        this.tournamentScoreBuffer = tournamentScoreBuffer;
         this.userService = userService;
     }
 
-    public void participate(int tournamentId, int groupId, int userId) {
-        save(new TournamentParticipationEntity(tournamentId, groupId, userId));
+    public TournamentParticipationDto participate(int tournamentId, int groupId, int userId) throws UserAlreadyJoinedTournamentException {
+        TournamentParticipationEntity participation;
+        // inserted right away rather than at the commit, so a second join of the user is told apart by the unique (tournamentId, userId) key
+        try {
+            participation = tournamentParticipationRepository.saveAndFlush(new TournamentParticipationEntity(tournamentId, groupId, userId));
+        } catch (DataIntegrityViolationException e) {
+            throw new UserAlreadyJoinedTournamentException();
+        }
+
+        tournamentLeaderboardService.update(participation);
 
         userService.updateAfterParticipation(userId, tournamentId, TOURNAMENT_PARTICIPATION_FEE);
+
+        return new TournamentParticipationDto(participation);
     }
 
-    public void incrementTournamentScore(int tournamentId, int userId) throws ParticipationNotFoundException {
-        TournamentParticipationEntity participation = getByTournamentIdAndUserId(tournamentId, userId);
+    public void incrementTournamentScore(int tournamentId, int userId, int delta) throws ParticipationNotFoundException {
+        if (tournamentScoreBuffer.isEnabled()) {
+            bufferTournamentScoreIncrement(tournamentId, userId, delta);
+            return;
+        }
+
+        // relative update in the database, so concurrent level-ups on any node cannot overwrite each other. a resident group
+        // is raised by the delta rather than reading the row back, one that is not resident is left alone.
+        int updatedCount = tournamentLeaderboardService.incrementScores(Map.of(TournamentKeys.of(tournamentId, userId), delta),
+                () -> tournamentParticipationRepository.incrementUserScore(tournamentId, userId, delta));
+        if (updatedCount == 0) {
+            throw new ParticipationNotFoundException();
+        }
+    }
 
-        participation.setUserScore(participation.getUserScore() + 1);
-        save(participation);
+    public void flushPendingTournamentScores() {
+        tournamentScoreBuffer.flush();
     }
 
     public int getParticipationCountByTournamentIdAndGroupId(int tournamentId, int groupId) {
         return tournamentParticipationRepository.countByTournamentIdAndGroupId(tournamentId, groupId);
     }
 
-    public boolean existsByTournamentIdAndUserId(int tournamentId, int userId) {
-        return tournamentParticipationRepository.existsByTournamentIdAndUserId(tournamentId, userId);
+    public List<TournamentParticipationDto> findAllByGroupIdOrderByUserScoreDesc(int groupId) {
+        return tournamentLeaderboardService.getLeaderboard(groupId);
     }
 
-    public List<TournamentParticipationDto> findAllByGroupIdOrderByUserScoreDesc(int groupId) {
-        List<TournamentParticipationEntity> participations = tournamentParticipationRepository.findAllByGroupIdOrderByUserScoreDesc(groupId);
+    public int getRankByTournamentIdAndUserId(int tournamentId, int userId) throws ParticipationNotFoundException, GroupNotFoundException {
+        OptionalInt residentRank = tournamentLeaderboardService.getRank(tournamentId, userId);
+        if (residentRank.isPresent()) {
+            return residentRank.getAsInt();
+        }
 
-        return participations.stream().map(TournamentParticipationDto::new).collect(Collectors.toCollection(ArrayList::new));
+        // the lookup and the count in one read-only query
+        return tournamentParticipationRepository.findRanksByTournamentIdAndUserIdIn(tournamentId, List.of(userId)).stream()
+                .findFirst()
+                .map(ParticipationRankDto::getRank)
+                .orElseThrow(ParticipationNotFoundException::new);
     }
 
-    public int getRankByTournamentIdAndUserId(int tournamentId, int userId) throws ParticipationNotFoundException, GroupNotFoundException {
-        TournamentParticipationEntity participation = getByTournamentIdAndUserId(tournamentId, userId);
+    public Map<Integer, Integer> getRanksByTournamentIdAndUserIds(int tournamentId, Collection<Integer> userIds) {
+        Map<Integer, Integer> ranks = new HashMap<>(tournamentLeaderboardService.getRanks(tournamentId, userIds));
 
-        List<TournamentParticipationDto> participations = findAllByGroupIdOrderByUserScoreDesc(participation.getGroupId());
+        List<Integer> nonResidentUserIds = userIds.stream().filter(userId -> !ranks.containsKey(userId)).distinct().collect(Collectors.toList());
+        if (nonResidentUserIds.isEmpty()) {
+            return ranks;
+        }
 
-        return indexOfParticipation(participation.getId(), participations) + 1;
+        for (ParticipationRankDto rank : tournamentParticipationRepository.findRanksByTournamentIdAndUserIdIn(tournamentId, nonResidentUserIds)) {
+            ranks.put(rank.getUserId(), rank.getRank());
+        }
+
+        return ranks;
     }
 
-    public void claimReward(int tournamentId, int userId) throws ParticipationNotFoundException {
+    public void claimReward(int tournamentId, int userId) throws ParticipationNotFoundException, RewardAlreadyClaimedException {
         TournamentParticipationEntity participation = getByTournamentIdAndUserId(tournamentId, userId);
 
+        // conditional, so a concurrent claim or the automatic reward crediting cannot pay the same reward twice
+        if (tournamentParticipationRepository.markRewardClaimed(participation.getId()) == 0) {
+            throw new RewardAlreadyClaimedException();
+        }
+
         participation.setRewardClaimed(true);
-        save(participation);
+        tournamentLeaderboardService.update(participation);
+    }
+
+    public OptionalInt getUnclaimedRewardRank(int tournamentId, int userId) throws ParticipationNotFoundException {
+        // one lookup answers both questions, the rank is only counted when the reward is still open
+        ParticipationRewardDto participation = getRewardByTournamentIdAndUserId(tournamentId, userId);
+        if (participation.isRewardClaimed()) {
+            return OptionalInt.empty();
+        }
+
+        if (participation.getFinalRank() != null) {
+            return OptionalInt.of(participation.getFinalRank());
+        }
+
+        OptionalInt residentRank = tournamentLeaderboardService.getRank(tournamentId, userId);
+        if (residentRank.isPresent()) {
+            return residentRank;
+        }
+
+        return OptionalInt.of(countRankedAhead(participation) + 1);
+    }
+
+    public int getUnclaimedReward(int tournamentId, int userId) throws ParticipationNotFoundException, RewardAlreadyClaimedException {
+        ParticipationRewardDto participation = getRewardByTournamentIdAndUserId(tournamentId, userId);
+        if (participation.isRewardClaimed()) {
+            throw new RewardAlreadyClaimedException();
+        }
+
+        if (participation.getReward() != null) {
+            return participation.getReward();
+        }
+
+        return TournamentRewards.getRewardForRank(getRank(participation));
     }
 
     public boolean isRewardClaimed(int tournamentId, int userId) throws ParticipationNotFoundException {
-        TournamentParticipationEntity participation = getByTournamentIdAndUserId(tournamentId, userId);
+        ParticipationRewardDto participation = getRewardByTournamentIdAndUserId(tournamentId, userId);
 
         return participation.isRewardClaimed();
     }
 
+    private void bufferTournamentScoreIncrement(int tournamentId, int userId, int delta) throws ParticipationNotFoundException {
+        TournamentParticipationDto participation = tournamentLeaderboardService.getResidentParticipation(tournamentId, userId);
+        if (participation == null) {
+            participation = new TournamentParticipationDto(getByTournamentIdAndUserId(tournamentId, userId));
+        }
+
+        tournamentLeaderboardService.bufferScoreIncrement(participation, delta);
+    }
+
     private TournamentParticipationEntity getByTournamentIdAndUserId(int tournamentId, int userId) throws ParticipationNotFoundException {
         TournamentParticipationEntity participation = tournamentParticipationRepository.findByTournamentIdAndUserId(tournamentId, userId).orElse(null);
         if (participation == null) {
@@ -81,20 +173,21 @@ public class TournamentParticipationService {
         return participation;
     }
 
-    private void save(TournamentParticipationEntity participation) {
-        tournamentParticipationRepository.save(participation);
+    // the reads that only answer with a rank or reward select those columns, without a managed entity to snapshot and dirty check
+    private ParticipationRewardDto getRewardByTournamentIdAndUserId(int tournamentId, int userId) throws ParticipationNotFoundException {
+        return tournamentParticipationRepository.findRewardByTournamentIdAndUserId(tournamentId, userId).orElseThrow(ParticipationNotFoundException::new);
     }
 
-    private int indexOfParticipation(int id, List<TournamentParticipationDto> participations)  {
-        int rank = 0;
-        for (TournamentParticipationDto participation : participations) {
-            if (participation.getId() == id) {
-                break;
-            }
-
-            rank++;
+    private int getRank(ParticipationRewardDto participation) {
+        // settled tournaments answer from the row itself, the count is only needed for tournaments closed before settlement
+        if (participation.getFinalRank() != null) {
+            return participation.getFinalRank();
         }
 
-        return rank;
+        return countRankedAhead(participation) + 1;
+    }
+
+    private int countRankedAhead(ParticipationRewardDto participation) {
+        return tournamentParticipationRepository.countRankedAhead(participation.getGroupId(), participation.getUserScore(), participation.getId());
     }
 }
@@ -0,0 +1,122 @@
+package com.example.rowmatch.tournament.participation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+@Component
+public class TournamentScoreBuffer {
+
+    private static final String INCREMENT_SCORE_SQL = "UPDATE tournament_participations SET userScore = userScore + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final long maxStalenessMillis;
+
+    private final int maxPendingParticipations;
+
+    // participationId -> score not yet written, merged under the map's per-bin locks so no increment is lost while draining
+    private final ConcurrentMap<Integer, Long> pendingDeltas = new ConcurrentHashMap<>();
+
+    private final AtomicLong oldestPendingAt = new AtomicLong();
+
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    public TournamentScoreBuffer(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                 @Value("${rowmatch.score-buffer.enabled:false}") boolean enabled,
+                                 @Value("${rowmatch.score-buffer.max-staleness-ms:1000}") long maxStalenessMillis,
+                                 @Value("${rowmatch.score-buffer.max-pending-participations:5000}") int maxPendingParticipations) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.maxPendingParticipations = maxPendingParticipations;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void add(int participationId, long delta) {
+        pendingDeltas.merge(participationId, delta, Long::sum);
+        oldestPendingAt.compareAndSet(0, System.currentTimeMillis());
+    }
+
+    public long getPendingDelta(int participationId) {
+        return pendingDeltas.getOrDefault(participationId, 0L);
+    }
+
+    // reads run here never interleave with a flush, so the rows they read plus getPendingDelta always add up to the real score
+    public <T> T withoutFlush(Supplier<T> read) {
+        flushLock.readLock().lock();
+        try {
+            return read.get();
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rowmatch.score-buffer.flush-interval-ms:200}")
+    public void flushIfStale() {
+        long pendingSince = oldestPendingAt.get();
+        if (pendingSince == 0) {
+            return;
+        }
+
+        if (pendingDeltas.size() >= maxPendingParticipations || System.currentTimeMillis() - pendingSince >= maxStalenessMillis) {
+            flush();
+        }
+    }
+
+    // also run on a graceful shutdown. a node that is killed loses what it still buffers, the settlement delay does not cover it
+    @PreDestroy
+    public void flush() {
+        flushLock.writeLock().lock();
+        try {
+            oldestPendingAt.set(0);
+
+            // ordered by id so concurrent flushes from several nodes lock rows in the same order
+            TreeMap<Integer, Long> drainedDeltas = new TreeMap<>();
+            for (Integer participationId : pendingDeltas.keySet()) {
+                Long delta = pendingDeltas.remove(participationId);
+                if (delta != null && delta != 0) {
+                    drainedDeltas.put(participationId, delta);
+                }
+            }
+
+            if (drainedDeltas.isEmpty()) {
+                return;
+            }
+
+            List<Object[]> rows = new ArrayList<>(drainedDeltas.size());
+            drainedDeltas.forEach((participationId, delta) -> rows.add(new Object[]{delta, participationId}));
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INCREMENT_SCORE_SQL, rows));
+            } catch (RuntimeException e) {
+                drainedDeltas.forEach(this::add);
+
+                throw e;
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+}
@@ -7,9 +7,14 @@ import java.util.List;
 public class GetLeaderboardResponse {
     public List<TournamentParticipationDto> participations;
 
-    // TODO: use a flag to indicate if tournament is ongoing or not, just so we can cache the response if tournament is over
+    public boolean isTournamentOver;
 
     public GetLeaderboardResponse(List<TournamentParticipationDto> participations) {
+        this(participations, false);
+    }
+
+    public GetLeaderboardResponse(List<TournamentParticipationDto> participations, boolean isTournamentOver) {
         this.participations = participations;
+        this.isTournamentOver = isTournamentOver;
     }
-}
\ No newline at end of file
+}
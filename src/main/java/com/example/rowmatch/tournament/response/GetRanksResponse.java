@@ -0,0 +1,11 @@
+package com.example.rowmatch.tournament.response;
+
+import java.util.Map;
+
+public class GetRanksResponse {
+    public Map<Integer, Integer> ranks;
+
+    public GetRanksResponse(Map<Integer, Integer> ranks) {
+        this.ranks = ranks;
+    }
+}
@@ -1,22 +1,116 @@
 package com.example.rowmatch.tournament.scheduled;
 
+import com.example.rowmatch.lease.JobLeaseService;
+import com.example.rowmatch.tournament.ActiveTournamentHolder;
 import com.example.rowmatch.tournament.TournamentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.OptionalInt;
+
 @Component
 public class TournamentJobs {
 
+    private static final Logger log = LoggerFactory.getLogger(TournamentJobs.class);
+
+    public static final String ROTATION_LEASE = "tournament-rotation";
+
+    public static final String SETTLEMENT_LEASE = "tournament-settlement";
+
     private final TournamentService tournamentService;
 
-    public TournamentJobs(TournamentService tournamentService) {
+    private final ActiveTournamentHolder activeTournamentHolder;
+
+    private final JobLeaseService jobLeaseService;
+
+    private final boolean autoCreditRewards;
+
+    private final boolean prepareGroups;
+
+    private final Duration settlementDelay;
+
+    private final Duration rotationLeaseDuration;
+
+    private final Duration settlementLeaseDuration;
+
+    public TournamentJobs(TournamentService tournamentService, ActiveTournamentHolder activeTournamentHolder, JobLeaseService jobLeaseService,
+                          @Value("${rowmatch.settlement.auto-credit-rewards:false}") boolean autoCreditRewards,
+                          @Value("${rowmatch.tournament.prepare-groups:true}") boolean prepareGroups,
+                          @Value("${rowmatch.tournament.rotation-grace-period-ms:10000}") long gracePeriodMs,
+                          @Value("${rowmatch.tournament.active-refresh-interval-ms:5000}") long activeRefreshIntervalMs,
+                          @Value("${rowmatch.score-buffer.enabled:false}") boolean scoreBufferEnabled,
+                          @Value("${rowmatch.score-buffer.max-staleness-ms:1000}") long maxStalenessMs,
+                          @Value("${rowmatch.score-buffer.flush-interval-ms:200}") long flushIntervalMs,
+                          @Value("${rowmatch.lease.rotation-lock-at-most-for-ms:60000}") long rotationLeaseMs,
+                          @Value("${rowmatch.lease.settlement-lock-at-most-for-ms:1800000}") long settlementLeaseMs) {
         this.tournamentService = tournamentService;
+        this.activeTournamentHolder = activeTournamentHolder;
+        this.jobLeaseService = jobLeaseService;
+        this.autoCreditRewards = autoCreditRewards;
+        this.prepareGroups = prepareGroups;
+        this.settlementDelay = getSettlementDelay(gracePeriodMs, activeRefreshIntervalMs, scoreBufferEnabled, maxStalenessMs, flushIntervalMs);
+        this.rotationLeaseDuration = Duration.ofMillis(rotationLeaseMs);
+        this.settlementLeaseDuration = Duration.ofMillis(settlementLeaseMs);
+    }
+
+    // checked often instead of fired once by a cron, so when the node holding the lease dies another one rotates shortly after
+    @Scheduled(fixedDelayString = "${rowmatch.tournament.rotation-check-interval-ms:1000}", initialDelayString = "${rowmatch.tournament.rotation-check-interval-ms:1000}")
+    public void rotateTournament() {
+        jobLeaseService.runExclusively(ROTATION_LEASE, rotationLeaseDuration, () -> {
+            if (!tournamentService.isRotationDue()) {
+                tournamentService.prepareNextTournament(null);
+                return;
+            }
+
+            OptionalInt finishedTournamentId = tournamentService.rotate();
+
+            tournamentService.prepareNextTournament(prepareGroups && finishedTournamentId.isPresent() ? finishedTournamentId.getAsInt() : null);
+        });
+    }
+
+    // a tournament is settled once the settlement delay has passed since it ended, by when a healthy node has normally written
+    // what it buffered for it. its end is recorded in the database, so a settlement cut short by a dying node is picked up again
+    @Scheduled(fixedDelayString = "${rowmatch.tournament.rotation-check-interval-ms:1000}", initialDelayString = "${rowmatch.tournament.rotation-check-interval-ms:1000}")
+    public void settleFinishedTournaments() {
+        jobLeaseService.runExclusively(SETTLEMENT_LEASE, settlementLeaseDuration, () -> {
+            for (int tournamentId : tournamentService.getTournamentIdsToSettle(settlementDelay)) {
+                try {
+                    tournamentService.settleTournament(tournamentId);
+                } catch (RuntimeException e) {
+                    // left unsettled for the next run, the tournaments after it are not held up
+                    log.error("Settling tournament {} failed", tournamentId, e);
+                    continue;
+                }
+
+                // after the new tournament is open, so crediting a large tournament does not delay it
+                if (autoCreditRewards) {
+                    tournamentService.creditUnclaimedRewards(tournamentId);
+                }
+            }
+        });
+    }
+
+    // flushes what this node buffered for the tournament once its grace period is over
+    @Scheduled(fixedDelayString = "${rowmatch.tournament.rotation-check-interval-ms:1000}", initialDelayString = "${rowmatch.tournament.rotation-check-interval-ms:1000}")
+    public void evictFinishedTournament() {
+        activeTournamentHolder.pollExpiredPrevious().ifPresent(tournamentService::evictTournament);
     }
 
-    @Scheduled(cron = "0 0 0 * * ?")
-    public void createActiveTournamentAndDeactivatePrevious() {
-        tournamentService.deactivatePreviousTournament();
+    // settlement only flushes the buffer of the node running it, the other nodes are given time rather than waited for. a node
+    // that learns of the rotation from its refresh starts its grace period up to one refresh late, and a delta it buffered just
+    // before the grace period ended is written by its flush on eviction, or by a stale flush within the max staleness plus one
+    // flush check if that comes first. this is only a time bound: a node paused past it, or whose flush fails, writes its
+    // deltas after the ranks were settled, and one killed without a shutdown loses them.
+    public static Duration getSettlementDelay(long gracePeriodMs, long activeRefreshIntervalMs, boolean scoreBufferEnabled, long maxStalenessMs, long flushIntervalMs) {
+        long delayMs = gracePeriodMs + activeRefreshIntervalMs;
+        if (scoreBufferEnabled) {
+            delayMs += maxStalenessMs + flushIntervalMs;
+        }
 
-        tournamentService.create();
+        return Duration.ofMillis(delayMs);
     }
 }
@@ -0,0 +1,34 @@
+package com.example.rowmatch.tournament.settlement;
+
+public final class TournamentRewards {
+
+    public static final int TOURNAMENT_LAST_REWARDED_RANK = 10;
+
+    private static final int TOURNAMENT_FIRST_RANK_REWARD = 10000;
+    private static final int TOURNAMENT_SECOND_RANK_REWARD = 5000;
+    private static final int TOURNAMENT_THIRD_RANK_REWARD = 3000;
+    private static final int TOURNAMENT_NON_PODIUM_RANK_REWARD = 1000;
+
+    private TournamentRewards() {
+    }
+
+    public static int getRewardForRank(int rank) {
+        if (rank > TOURNAMENT_LAST_REWARDED_RANK) {
+            return 0;
+        }
+
+        int reward;
+
+        if (rank == 1) {
+            reward = TOURNAMENT_FIRST_RANK_REWARD;
+        } else if (rank == 2) {
+            reward = TOURNAMENT_SECOND_RANK_REWARD;
+        } else if (rank == 3) {
+            reward = TOURNAMENT_THIRD_RANK_REWARD;
+        } else {
+            reward = TOURNAMENT_NON_PODIUM_RANK_REWARD;
+        }
+
+        return reward;
+    }
+}
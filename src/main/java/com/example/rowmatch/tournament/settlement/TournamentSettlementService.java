@@ -0,0 +1,230 @@
+package com.example.rowmatch.tournament.settlement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+@Service
+public class TournamentSettlementService {
+
+    private static final Logger log = LoggerFactory.getLogger(TournamentSettlementService.class);
+
+    private static final String SETTLE_PARTICIPATION_SQL = "UPDATE tournament_participations SET finalRank = ?, reward = ? WHERE id = ?";
+
+    // the same order the live ranking uses: score descending, earlier participation first on ties
+    private static final String FIND_RANKED_PARTICIPATIONS_SQL = "SELECT id, groupId FROM tournament_participations "
+            + "WHERE tournamentId = ? ORDER BY groupId, userScore DESC, id";
+
+    private static final String FIND_UNCLAIMED_REWARDS_SQL = "SELECT id, userId, reward FROM tournament_participations "
+            + "WHERE tournamentId = ? AND id > ? AND reward > 0 AND isRewardClaimed = false ORDER BY id LIMIT ?";
+
+    private static final String MARK_REWARD_CLAIMED_SQL = "UPDATE tournament_participations SET isRewardClaimed = true WHERE id = ? AND isRewardClaimed = false";
+
+    private static final String CREDIT_REWARD_SQL = "UPDATE users SET coins = coins + ?, version = version + 1 WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ExecutorService executor;
+
+    private final int parallelism;
+
+    private final int chunkSize;
+
+    public TournamentSettlementService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                       @Value("${rowmatch.settlement.parallelism:4}") int parallelism,
+                                       @Value("${rowmatch.settlement.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = Executors.newFixedThreadPool(parallelism);
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    // one ordered scan ranks every group as it streams by, the writes run in parallel chunks behind it. when a chunk fails the
+    // others are still written, but the settlement throws so the tournament is not marked settled and the next run writes all
+    // chunks again.
+    public void settle(int tournamentId) {
+        RankingScan scan = new RankingScan();
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_RANKED_PARTICIPATIONS_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setInt(1, tournamentId);
+            // a cursor on MySQL only with useCursorFetch=true on the url, otherwise the whole tournament is read up front
+            statement.setFetchSize(chunkSize);
+
+            return statement;
+        }, scan);
+
+        List<Future<?>> writes = scan.finish();
+        int failedChunkCount = 0;
+        Throwable firstFailure = null;
+
+        for (Future<?> write : writes) {
+            try {
+                write.get();
+            } catch (InterruptedException e) {
+                writes.forEach(pendingWrite -> pendingWrite.cancel(true));
+                Thread.currentThread().interrupt();
+
+                throw new IllegalStateException("Settling tournament " + tournamentId + " was interrupted", e);
+            } catch (ExecutionException e) {
+                log.error("Could not settle a chunk of tournament {}", tournamentId, e.getCause());
+                failedChunkCount++;
+                firstFailure = firstFailure == null ? e.getCause() : firstFailure;
+            }
+        }
+
+        if (failedChunkCount > 0) {
+            throw new IllegalStateException("Could not settle " + failedChunkCount + " of " + writes.size() + " chunks of tournament " + tournamentId, firstFailure);
+        }
+    }
+
+    // each chunk marks its rewards claimed and credits them in one transaction, so an interrupted run loses nothing
+    // and running it again continues with the rewards that are still unclaimed
+    public int creditUnclaimedRewards(int tournamentId) {
+        int creditedCount = 0;
+        int lastParticipationId = 0;
+
+        while (true) {
+            List<UnclaimedReward> rewards = jdbcTemplate.query(FIND_UNCLAIMED_REWARDS_SQL,
+                    (resultSet, rowNum) -> new UnclaimedReward(resultSet.getInt("id"), resultSet.getInt("userId"), resultSet.getInt("reward")),
+                    tournamentId, lastParticipationId, chunkSize);
+
+            if (rewards.isEmpty()) {
+                return creditedCount;
+            }
+
+            Integer chunkCreditedCount = transactionTemplate.execute(status -> creditRewards(rewards));
+            creditedCount += chunkCreditedCount == null ? 0 : chunkCreditedCount;
+            lastParticipationId = rewards.get(rewards.size() - 1).participationId;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private int creditRewards(List<UnclaimedReward> rewards) {
+        List<Object[]> claims = new ArrayList<>(rewards.size());
+        for (UnclaimedReward reward : rewards) {
+            claims.add(new Object[]{reward.participationId});
+        }
+
+        // a reward claimed by hand since it was read is skipped, only rows this chunk marked are paid
+        int[] claimedCounts = jdbcTemplate.batchUpdate(MARK_REWARD_CLAIMED_SQL, claims);
+
+        List<UnclaimedReward> claimedRewards = new ArrayList<>(rewards.size());
+        for (int i = 0; i < rewards.size(); i++) {
+            if (claimedCounts[i] == 1) {
+                claimedRewards.add(rewards.get(i));
+            }
+        }
+
+        // ordered by user so concurrent writers lock user rows in the same order
+        claimedRewards.sort(Comparator.comparingInt(reward -> reward.userId));
+
+        List<Object[]> credits = new ArrayList<>(claimedRewards.size());
+        for (UnclaimedReward reward : claimedRewards) {
+            credits.add(new Object[]{reward.reward, reward.userId});
+        }
+
+        if (!credits.isEmpty()) {
+            jdbcTemplate.batchUpdate(CREDIT_REWARD_SQL, credits);
+        }
+
+        return credits.size();
+    }
+
+    private static class UnclaimedReward {
+
+        private final int participationId;
+
+        private final int userId;
+
+        private final int reward;
+
+        private UnclaimedReward(int participationId, int userId, int reward) {
+            this.participationId = participationId;
+            this.userId = userId;
+            this.reward = reward;
+        }
+    }
+
+    private class RankingScan implements RowCallbackHandler {
+
+        private final List<Future<?>> writes = new ArrayList<>();
+
+        // at most two chunks per worker wait in memory, the scan blocks until one of them is written
+        private final Semaphore pendingChunks = new Semaphore(parallelism * 2);
+
+        private List<Object[]> rows = new ArrayList<>(chunkSize);
+
+        private int groupId = -1;
+
+        private int rank;
+
+        @Override
+        public void processRow(ResultSet resultSet) throws SQLException {
+            int participationGroupId = resultSet.getInt("groupId");
+            if (participationGroupId != groupId) {
+                groupId = participationGroupId;
+                rank = 0;
+            }
+
+            rank++;
+            rows.add(new Object[]{rank, TournamentRewards.getRewardForRank(rank), resultSet.getInt("id")});
+
+            if (rows.size() == chunkSize) {
+                submitChunk();
+            }
+        }
+
+        private List<Future<?>> finish() {
+            if (!rows.isEmpty()) {
+                submitChunk();
+            }
+
+            return writes;
+        }
+
+        private void submitChunk() {
+            List<Object[]> chunk = rows;
+            rows = new ArrayList<>(chunkSize);
+
+            pendingChunks.acquireUninterruptibly();
+            try {
+                writes.add(executor.submit(() -> {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(SETTLE_PARTICIPATION_SQL, chunk));
+                    } finally {
+                        pendingChunks.release();
+                    }
+                }));
+            } catch (RuntimeException e) {
+                pendingChunks.release();
+
+                throw e;
+            }
+        }
+    }
+}
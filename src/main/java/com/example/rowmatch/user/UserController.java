@@ -1,9 +1,14 @@
 package com.example.rowmatch.user;
 
+import com.example.rowmatch.exception.LevelUpBatchTooLargeException;
 import com.example.rowmatch.exception.UserNotFoundException;
+import com.example.rowmatch.user.request.LevelUpBatchRequest;
+import com.example.rowmatch.user.response.LevelUpBatchResponse;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/users")
 public class UserController {
@@ -27,4 +32,11 @@ public class UserController {
 
         return ResponseEntity.ok().body(user);
     }
+
+    @PatchMapping(value="/level_up")
+    public ResponseEntity<LevelUpBatchResponse> levelUpBatch(@RequestBody LevelUpBatchRequest request) throws LevelUpBatchTooLargeException {
+        List<LevelUpBatchResponse.LevelUpResult> results = userService.levelUpBatch(request.levelUps);
+
+        return ResponseEntity.ok().body(new LevelUpBatchResponse(results));
+    }
 }
@@ -13,6 +13,13 @@ public class UserDto {
 
     private final Integer lastEnteredTournamentId;
 
+    public UserDto(int id, int level, int coins, Integer lastEnteredTournamentId) {
+        this.id = id;
+        this.level = level;
+        this.coins = coins;
+        this.lastEnteredTournamentId = lastEnteredTournamentId;
+    }
+
     public UserDto(UserEntity userEntity) {
         id = userEntity.getId();
         level = userEntity.getCurrentLevel();
@@ -12,7 +12,9 @@ import javax.persistence.*;
 public class UserEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // handed out in blocks from id_generators, which unlike an identity column lets Hibernate batch the inserts
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "users")
+    @TableGenerator(name = "users", table = "id_generators", pkColumnName = "name", valueColumnName = "nextValue", pkColumnValue = "users", allocationSize = 50)
     private int id;
 
     @Column(nullable = false)
@@ -24,6 +26,15 @@ public class UserEntity {
     @Column
     private Integer lastEnteredTournamentId;
 
+    // the highest client sequence number applied through the batch level up
+    @Column(nullable = false)
+    private long lastLevelUpSequence;
+
+    // catches updates of the same user that overlap across nodes
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     public UserEntity() {
         setCoins(5000);
         setCurrentLevel(1);
@@ -0,0 +1,166 @@
+package com.example.rowmatch.user;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@ManagedResource(objectName = "rowmatch:type=UserEventDispatcher")
+public class UserEventDispatcher {
+
+    public enum OverflowPolicy {
+        // the publishing request waits for a free queue slot
+        BLOCK,
+        // the publishing request handles the event itself, which slows it down as much as the synchronous mode would
+        CALLER_RUNS,
+        // the event is counted and given up
+        DROP
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(UserEventDispatcher.class);
+
+    private final TransactionTemplate requiresNewTransactionTemplate;
+
+    private final OverflowPolicy overflowPolicy;
+
+    // null in the synchronous mode
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong processedEvents = new AtomicLong();
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    private final AtomicLong lastLagMillis = new AtomicLong();
+
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    public UserEventDispatcher(PlatformTransactionManager transactionManager,
+                               @Value("${rowmatch.user-events.async:false}") boolean async,
+                               @Value("${rowmatch.user-events.workers:4}") int workers,
+                               @Value("${rowmatch.user-events.queue-capacity:10000}") int queueCapacity,
+                               @Value("${rowmatch.user-events.overflow-policy:caller-runs}") String overflowPolicy) {
+        this.requiresNewTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase().replace('-', '_'));
+        this.executor = async ? new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("user-events-"), this::handleOverflow) : null;
+    }
+
+    public boolean isAsync() {
+        return executor != null;
+    }
+
+    public void dispatch(Runnable handler) {
+        if (executor == null) {
+            runInline(handler);
+            return;
+        }
+
+        long enqueuedAt = System.currentTimeMillis();
+        executor.execute(() -> run(handler, enqueuedAt));
+    }
+
+    @ManagedAttribute
+    public int getQueueDepth() {
+        return executor != null ? executor.getQueue().size() : 0;
+    }
+
+    @ManagedAttribute
+    public long getProcessedEvents() {
+        return processedEvents.get();
+    }
+
+    @ManagedAttribute
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    // time from publishing to the start of handling, zero in the synchronous mode
+    @ManagedAttribute
+    public long getLastLagMillis() {
+        return lastLagMillis.get();
+    }
+
+    @ManagedAttribute
+    public long getMaxLagMillis() {
+        return maxLagMillis.get();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (executor == null) {
+            return;
+        }
+
+        // queued events are still handled, new ones are turned away by the overflow policy
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("{} user events were not handled before shutdown", executor.shutdownNow().size());
+        }
+    }
+
+    private void runInline(Runnable handler) {
+        runOutsideFinishedTransaction(handler);
+        processedEvents.incrementAndGet();
+    }
+
+    private void runOutsideFinishedTransaction(Runnable handler) {
+        // events are published after the commit, where the finished transaction is still bound to the thread and
+        // anything joining it would never be committed
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            requiresNewTransactionTemplate.executeWithoutResult(status -> handler.run());
+        } else {
+            handler.run();
+        }
+    }
+
+    private void run(Runnable handler, long enqueuedAt) {
+        long lag = System.currentTimeMillis() - enqueuedAt;
+        lastLagMillis.set(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+
+        try {
+            handler.run();
+            processedEvents.incrementAndGet();
+        } catch (RuntimeException e) {
+            log.error("Handling a user event failed", e);
+        }
+    }
+
+    private void handleOverflow(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            droppedEvents.incrementAndGet();
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    executor.getQueue().put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedEvents.incrementAndGet();
+                }
+                break;
+            case CALLER_RUNS:
+                // the overflowed event runs on the publishing thread, inside its after-commit callback
+                runOutsideFinishedTransaction(task);
+                break;
+            case DROP:
+                droppedEvents.incrementAndGet();
+                break;
+        }
+    }
+}
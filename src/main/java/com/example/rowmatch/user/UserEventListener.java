@@ -1,20 +1,24 @@
 package com.example.rowmatch.user;
 
 import com.example.rowmatch.tournament.TournamentService;
-import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 @Component
 public class UserEventListener {
 
     private final TournamentService tournamentService;
 
-    public UserEventListener(TournamentService tournamentService) {
+    private final UserEventDispatcher userEventDispatcher;
+
+    public UserEventListener(TournamentService tournamentService, UserEventDispatcher userEventDispatcher) {
         this.tournamentService = tournamentService;
+        this.userEventDispatcher = userEventDispatcher;
     }
 
-    @EventListener
+    // only once the level up is committed, a rolled back one never scores
+    @TransactionalEventListener(fallbackExecution = true)
     public void handleUserLevelledUpEvent(UserLevelledUpEvent event) {
-        tournamentService.incrementTournamentScore(event.tournamentId, event.userId);
+        userEventDispatcher.dispatch(() -> tournamentService.incrementTournamentScore(event.tournamentId, event.userId, event.levelCount));
     }
 }
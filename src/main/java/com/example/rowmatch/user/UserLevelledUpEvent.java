@@ -5,8 +5,11 @@ public class UserLevelledUpEvent {
 
     public int tournamentId;
 
-    public UserLevelledUpEvent(int userId, int tournamentId) {
+    public int levelCount;
+
+    public UserLevelledUpEvent(int userId, int tournamentId, int levelCount) {
         this.userId = userId;
         this.tournamentId = tournamentId;
+        this.levelCount = levelCount;
     }
 }
@@ -0,0 +1,132 @@
+package com.example.rowmatch.user;
+
+import com.example.rowmatch.exception.UserUpdateConflictException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// serializes the read-modify-write of a user's coins and level. within a node the updates of one user wait for each other
+// on a striped lock instead of a database row lock, across nodes the version column catches what still overlaps and the update is retried.
+@Component
+public class UserLocks {
+
+    public enum Mode {
+        // a node local lock per user, backed by the version check
+        STRIPED,
+        // the version check and retry alone
+        OPTIMISTIC,
+        // SELECT ... FOR UPDATE on the user row
+        PESSIMISTIC
+    }
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Mode mode;
+
+    private final ReentrantLock[] stripes;
+
+    private final long lockTimeoutMillis;
+
+    private final int maxAttempts;
+
+    public UserLocks(PlatformTransactionManager transactionManager,
+                     @Value("${rowmatch.user.locking:striped}") String mode,
+                     @Value("${rowmatch.user.lock-stripes:1024}") int stripeCount,
+                     @Value("${rowmatch.user.lock-timeout-ms:5000}") long lockTimeoutMillis,
+                     @Value("${rowmatch.user.max-update-attempts:5}") int maxAttempts) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.mode = Mode.valueOf(mode.trim().toUpperCase());
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.lockTimeoutMillis = lockTimeoutMillis;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public boolean isPessimistic() {
+        return mode == Mode.PESSIMISTIC;
+    }
+
+    // runs the update of the given users in its own transaction, holding their locks until it is committed
+    public <T> T update(Collection<Integer> userIds, Supplier<T> update) {
+        // a retry here could not roll back the caller's transaction, so its locks are held until that completes instead
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            lockUntilCompletion(userIds);
+            return update.get();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            List<ReentrantLock> locks = lock(userIds);
+            try {
+                return transactionTemplate.execute(status -> update.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw new UserUpdateConflictException();
+                }
+            } finally {
+                unlock(locks);
+            }
+        }
+    }
+
+    // for reads inside a transaction that go on to update the user, so they see the latest committed state
+    public void lockUntilCompletion(Collection<Integer> userIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("User locks can only be held until completion within a transaction");
+        }
+
+        List<ReentrantLock> locks = lock(userIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                unlock(locks);
+            }
+        });
+    }
+
+    // stripes are always taken in index order, so two updates of overlapping users cannot deadlock
+    private List<ReentrantLock> lock(Collection<Integer> userIds) {
+        if (mode != Mode.STRIPED) {
+            return List.of();
+        }
+
+        List<ReentrantLock> locks = new ArrayList<>();
+        userIds.stream().mapToInt(this::stripeOf).distinct().sorted().forEach(stripe -> {
+            try {
+                if (!stripes[stripe].tryLock(lockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    unlock(locks);
+                    throw new UserUpdateConflictException();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unlock(locks);
+                throw new UserUpdateConflictException();
+            }
+            locks.add(stripes[stripe]);
+        });
+
+        return locks;
+    }
+
+    private void unlock(List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private int stripeOf(int userId) {
+        return Math.floorMod(Integer.hashCode(userId) * 0x9E3779B9, stripes.length);
+    }
+}
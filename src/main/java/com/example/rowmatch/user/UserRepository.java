@@ -1,8 +1,31 @@
 package com.example.rowmatch.user;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<UserEntity, Integer> {
+
+    // the four columns a user is answered with, without building a managed entity
+    @Transactional(readOnly = true)
+    @Query("select new com.example.rowmatch.user.UserDto(u.id, u.currentLevel, u.coins, u.lastEnteredTournamentId) from UserEntity u where u.id = :id")
+    Optional<UserDto> findDtoById(@Param("id") int id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from UserEntity u where u.id = :id")
+    Optional<UserEntity> findByIdForUpdate(@Param("id") int id);
+
+    // in id order, so two batches locking overlapping users cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from UserEntity u where u.id in :ids order by u.id")
+    List<UserEntity> findAllByIdForUpdate(@Param("ids") Collection<Integer> ids);
 }
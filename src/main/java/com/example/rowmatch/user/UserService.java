@@ -1,9 +1,21 @@
 package com.example.rowmatch.user;
 
+import com.example.rowmatch.datasource.ReadRouting;
+import com.example.rowmatch.exception.LevelUpBatchTooLargeException;
 import com.example.rowmatch.exception.UserNotFoundException;
+import com.example.rowmatch.user.outbox.UserEventOutbox;
+import com.example.rowmatch.user.request.LevelUpBatchRequest.LevelUpItem;
+import com.example.rowmatch.user.response.LevelUpBatchResponse;
+import com.example.rowmatch.user.response.LevelUpBatchResponse.LevelUpResult;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
 @Service
 public class UserService {
 
@@ -11,11 +23,32 @@ public class UserService {
 
     private final ApplicationEventPublisher eventPublisher;
 
+    private final UserEventOutbox userEventOutbox;
+
+    private final UserLocks userLocks;
+
+    private final ReadRouting readRouting;
+
+    private final int maxLevelUpBatchSize;
+
+    private final int maxLevelsPerLevelUp;
+
+    private final int maxLevelsPerUserPerBatch;
+
     private static final int LEVELUP_COIN_REWARD = 25;
 
-    public UserService(UserRepository userRepository, ApplicationEventPublisher eventPublisher) {
+    public UserService(UserRepository userRepository, ApplicationEventPublisher eventPublisher, UserEventOutbox userEventOutbox, UserLocks userLocks, ReadRouting readRouting,
+                       @Value("${rowmatch.user.max-level-up-batch-size:500}") int maxLevelUpBatchSize,
+                       @Value("${rowmatch.user.max-levels-per-level-up:100}") int maxLevelsPerLevelUp,
+                       @Value("${rowmatch.user.max-levels-per-user-per-batch:1000}") int maxLevelsPerUserPerBatch) {
         this.userRepository = userRepository;
         this.eventPublisher = eventPublisher;
+        this.userEventOutbox = userEventOutbox;
+        this.userLocks = userLocks;
+        this.readRouting = readRouting;
+        this.maxLevelUpBatchSize = maxLevelUpBatchSize;
+        this.maxLevelsPerLevelUp = maxLevelsPerLevelUp;
+        this.maxLevelsPerUserPerBatch = maxLevelsPerUserPerBatch;
     }
 
     public UserDto create() {
@@ -24,49 +57,131 @@ public class UserService {
         return new UserDto(user);
     }
 
+    // the level-up event is held back until this commits, or written to the outbox in the same transaction
     public UserDto levelUp(int id) throws UserNotFoundException {
-        UserEntity user = getOrThrow(id);
+        return update(List.of(id), () -> {
+            UserEntity user = getForUpdateOrThrow(id);
 
-        updateProgress(user, user.getCurrentLevel() + 1);
-        incrementTournamentScore(user.getLastEnteredTournamentId(), user.getId());
+            updateProgress(user, 1);
+            incrementTournamentScore(user.getLastEnteredTournamentId(), user.getId(), 1);
 
-        return new UserDto(user);
+            return new UserDto(user);
+        });
+    }
+
+    // one read of all users and one write per user however many level ups the batch holds, with a single coalesced
+    // tournament score update per user. items are applied in sequence order per user, and only the highest applied sequence
+    // is kept: an item at or below it is reported as a duplicate whether or not it was ever applied, so a sequence the client
+    // skipped or had rejected is dropped for good once a higher one is applied.
+    public List<LevelUpResult> levelUpBatch(List<LevelUpItem> levelUps) {
+        if (levelUps.size() > maxLevelUpBatchSize) {
+            throw new LevelUpBatchTooLargeException();
+        }
+
+        Set<Integer> userIds = levelUps.stream().map(levelUp -> levelUp.userId).collect(Collectors.toSet());
+
+        return update(userIds, () -> applyLevelUps(levelUps, userIds));
     }
 
-    private void updateProgress(UserEntity user, int newLevel) {
-        user.setCoins(user.getCoins() + UserService.LEVELUP_COIN_REWARD);
-        user.setCurrentLevel(newLevel);
+    private List<LevelUpResult> applyLevelUps(List<LevelUpItem> levelUps, Set<Integer> userIds) {
+        List<UserEntity> found = userLocks.isPessimistic() ? userRepository.findAllByIdForUpdate(userIds) : userRepository.findAllById(userIds);
+        Map<Integer, UserEntity> users = found.stream().collect(Collectors.toMap(UserEntity::getId, Function.identity()));
+
+        Map<Integer, Long> lastSequences = new HashMap<>();
+        Map<Integer, Integer> gainedLevels = new LinkedHashMap<>();
+        Map<LevelUpItem, LevelUpBatchResponse.Status> statuses = new IdentityHashMap<>();
+
+        List<LevelUpItem> inSequenceOrder = new ArrayList<>(levelUps);
+        inSequenceOrder.sort(Comparator.comparingLong(levelUp -> levelUp.sequence));
+
+        for (LevelUpItem levelUp : inSequenceOrder) {
+            UserEntity user = users.get(levelUp.userId);
+            if (user == null) {
+                statuses.put(levelUp, LevelUpBatchResponse.Status.USER_NOT_FOUND);
+            } else if (levelUp.levelCount < 1 || levelUp.levelCount > maxLevelsPerLevelUp
+                    || gainedLevels.getOrDefault(user.getId(), 0) + levelUp.levelCount > maxLevelsPerUserPerBatch) {
+                statuses.put(levelUp, LevelUpBatchResponse.Status.INVALID);
+            } else if (levelUp.sequence <= lastSequences.getOrDefault(user.getId(), user.getLastLevelUpSequence())) {
+                statuses.put(levelUp, LevelUpBatchResponse.Status.DUPLICATE);
+            } else {
+                lastSequences.put(user.getId(), levelUp.sequence);
+                gainedLevels.merge(user.getId(), levelUp.levelCount, Integer::sum);
+                statuses.put(levelUp, LevelUpBatchResponse.Status.APPLIED);
+            }
+        }
+
+        for (Map.Entry<Integer, Integer> gained : gainedLevels.entrySet()) {
+            UserEntity user = users.get(gained.getKey());
+
+            user.setLastLevelUpSequence(lastSequences.get(user.getId()));
+            updateProgress(user, gained.getValue());
+            incrementTournamentScore(user.getLastEnteredTournamentId(), user.getId(), gained.getValue());
+        }
+
+        return levelUps.stream()
+                .map(levelUp -> new LevelUpResult(levelUp.userId, levelUp.sequence, statuses.get(levelUp), users.containsKey(levelUp.userId) ? new UserDto(users.get(levelUp.userId)) : null))
+                .collect(Collectors.toList());
+    }
+
+    private void updateProgress(UserEntity user, int levelCount) {
+        // fails the update rather than wrapping around
+        user.setCoins(Math.addExact(user.getCoins(), Math.multiplyExact(UserService.LEVELUP_COIN_REWARD, levelCount)));
+        user.setCurrentLevel(Math.addExact(user.getCurrentLevel(), levelCount));
 
         save(user);
     }
 
     public void updateAfterParticipation(int id, int tournamentId, int participationFee) {
-        UserEntity user = getEntityOrNull(id);
+        update(List.of(id), () -> {
+            UserEntity user = getForUpdateOrThrow(id);
 
-        user.setCoins(user.getCoins() - participationFee);
-        user.setLastEnteredTournamentId(tournamentId);
+            user.setCoins(user.getCoins() - participationFee);
+            user.setLastEnteredTournamentId(tournamentId);
 
-        save(user);
+            return save(user);
+        });
     }
 
     public UserDto updateAfterRewardClaim(int id, int reward) {
-        UserEntity user = getEntityOrNull(id);
+        return update(List.of(id), () -> {
+            UserEntity user = getForUpdateOrThrow(id);
 
-        user.setCoins(user.getCoins() + reward);
+            user.setCoins(user.getCoins() + reward);
 
-        return new UserDto(save(user));
+            return new UserDto(save(user));
+        });
     }
 
     public UserDto get(int id) throws UserNotFoundException {
-        UserEntity user = getOrThrow(id);
+        return readRouting.read(List.of(id), () -> userRepository.findDtoById(id)).orElseThrow(UserNotFoundException::new);
+    }
 
-        return new UserDto(user);
+    // locks the user until the caller's transaction completes before reading it, for a read the transaction goes on to update
+    public UserDto getForUpdate(int id) throws UserNotFoundException {
+        userLocks.lockUntilCompletion(List.of(id));
+
+        return new UserDto(getForUpdateOrThrow(id));
     }
 
-    private void incrementTournamentScore(Integer lastActiveTournamentId, int id) {
-        if (lastActiveTournamentId != null) {
-            eventPublisher.publishEvent(new UserLevelledUpEvent(id, lastActiveTournamentId));
+    private void incrementTournamentScore(Integer lastActiveTournamentId, int id, int levelCount) {
+        if (lastActiveTournamentId == null) {
+            return;
         }
+
+        if (userEventOutbox.isEnabled()) {
+            userEventOutbox.appendLevelUp(id, lastActiveTournamentId, levelCount);
+        } else {
+            eventPublisher.publishEvent(new UserLevelledUpEvent(id, lastActiveTournamentId, levelCount));
+        }
+    }
+
+    // every user write goes through here, so the user's reads right after it are answered by the primary
+    private <T> T update(Collection<Integer> ids, Supplier<T> update) {
+        return userLocks.update(ids, () -> {
+            readRouting.recordWrites(ids);
+
+            return update.get();
+        });
     }
 
     private UserEntity save(UserEntity user) {
@@ -77,6 +192,14 @@ public class UserService {
         return userRepository.findById(id).orElse(null);
     }
 
+    private UserEntity getForUpdateOrThrow(int id) throws UserNotFoundException {
+        if (!userLocks.isPessimistic()) {
+            return getOrThrow(id);
+        }
+
+        return userRepository.findByIdForUpdate(id).orElseThrow(UserNotFoundException::new);
+    }
+
     private UserEntity getOrThrow(int id) throws UserNotFoundException {
         UserEntity user = getEntityOrNull(id);
         if (user == null) {
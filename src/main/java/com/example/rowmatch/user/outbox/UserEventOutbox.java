@@ -0,0 +1,26 @@
+package com.example.rowmatch.user.outbox;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserEventOutbox {
+
+    private final UserEventOutboxRepository userEventOutboxRepository;
+
+    private final boolean enabled;
+
+    public UserEventOutbox(UserEventOutboxRepository userEventOutboxRepository, @Value("${rowmatch.user-events.outbox.enabled:false}") boolean enabled) {
+        this.userEventOutboxRepository = userEventOutboxRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // joins the caller's transaction, so the row exists exactly when the level up does
+    public void appendLevelUp(int userId, int tournamentId, int levelCount) {
+        userEventOutboxRepository.save(new UserEventOutboxEntity(userId, tournamentId, levelCount));
+    }
+}
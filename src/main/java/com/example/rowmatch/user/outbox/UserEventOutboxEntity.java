@@ -0,0 +1,40 @@
+package com.example.rowmatch.user.outbox;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "user_event_outbox")
+public class UserEventOutboxEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(nullable = false)
+    private int userId;
+
+    @Column(nullable = false)
+    private int tournamentId;
+
+    @Column(nullable = false)
+    private int levelCount;
+
+    @CreationTimestamp
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    public UserEventOutboxEntity(int userId, int tournamentId, int levelCount) {
+        this.userId = userId;
+        this.tournamentId = tournamentId;
+        this.levelCount = levelCount;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.rowmatch.user.outbox;
+
+import com.example.rowmatch.tournament.TournamentKeys;
+import com.example.rowmatch.tournament.leaderboard.TournamentLeaderboardService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@ManagedResource(objectName = "rowmatch:type=UserEventOutboxRelay")
+public class UserEventOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(UserEventOutboxRelay.class);
+
+    private static final String FIND_PENDING_SQL = "SELECT id, userId, tournamentId, levelCount FROM user_event_outbox ORDER BY id LIMIT ?";
+
+    // straight to the rows rather than through the score buffer, so the increment commits together with the removal of its events
+    private static final String INCREMENT_SCORE_SQL = "UPDATE tournament_participations SET userScore = userScore + ? WHERE tournamentId = ? AND userId = ?";
+
+    private static final String DELETE_SQL = "DELETE FROM user_event_outbox WHERE id = ?";
+
+    // read from the row rather than the node's view of the rotation, which may lag behind the other nodes by a refresh
+    private static final String ACCEPTS_SCORES_SQL = "SELECT COUNT(*) FROM tournaments WHERE id = ? AND isSettled = false AND (endedAt IS NULL OR endedAt > ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TournamentLeaderboardService tournamentLeaderboardService;
+
+    private final UserEventOutbox userEventOutbox;
+
+    private final int batchSize;
+
+    private final int maxBatchesPerRun;
+
+    private final Duration gracePeriod;
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    // resolved on the first relay, as the lock clause depends on the database behind the pool
+    private volatile String findPendingForUpdateSql;
+
+    public UserEventOutboxRelay(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, TournamentLeaderboardService tournamentLeaderboardService,
+                                UserEventOutbox userEventOutbox,
+                                @Value("${rowmatch.user-events.outbox.batch-size:500}") int batchSize,
+                                @Value("${rowmatch.user-events.outbox.max-batches-per-run:20}") int maxBatchesPerRun,
+                                @Value("${rowmatch.tournament.rotation-grace-period-ms:10000}") long gracePeriodMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.tournamentLeaderboardService = tournamentLeaderboardService;
+        this.userEventOutbox = userEventOutbox;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.gracePeriod = Duration.ofMillis(gracePeriodMs);
+    }
+
+    @Scheduled(fixedDelayString = "${rowmatch.user-events.outbox.relay-interval-ms:200}", initialDelayString = "${rowmatch.user-events.outbox.relay-interval-ms:200}")
+    public void relay() {
+        if (!userEventOutbox.isEnabled()) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                if (relayBatch() < batchSize) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            // the batch was rolled back and stays in the outbox for the next run
+            log.error("Relaying user events failed", e);
+        }
+    }
+
+    // claims rows no other node holds, applies one summed increment per participation and removes the rows, all in one transaction
+    public int relayBatch() {
+        Integer relayedCount = transactionTemplate.execute(status -> {
+            List<Object[]> relayedIds = new ArrayList<>();
+            // (tournamentId, userId) -> levels gained, sorted so nodes relaying at once lock participations in the same order
+            Map<Long, Integer> deltas = new TreeMap<>();
+            Map<Integer, Boolean> acceptsScores = new HashMap<>();
+            Timestamp endedAfter = Timestamp.from(Instant.now().minus(gracePeriod));
+            int[] droppedCount = new int[1];
+
+            // (tournamentId, userId, levelCount) of each row, the tournaments are looked up once the claim has been read
+            List<int[]> events = new ArrayList<>();
+
+            jdbcTemplate.query(getFindPendingForUpdateSql(), resultSet -> {
+                relayedIds.add(new Object[]{resultSet.getLong("id")});
+                events.add(new int[]{resultSet.getInt("tournamentId"), resultSet.getInt("userId"), resultSet.getInt("levelCount")});
+            }, batchSize);
+
+            for (int[] event : events) {
+                if (acceptsScores.computeIfAbsent(event[0], id -> acceptsScoresFor(id, endedAfter))) {
+                    deltas.merge(TournamentKeys.of(event[0], event[1]), event[2], Integer::sum);
+                } else {
+                    droppedCount[0]++;
+                }
+            }
+
+            if (!deltas.isEmpty()) {
+                List<Object[]> increments = new ArrayList<>(deltas.size());
+                deltas.forEach((key, delta) -> increments.add(new Object[]{delta, TournamentKeys.tournamentId(key), TournamentKeys.id(key)}));
+
+                tournamentLeaderboardService.incrementScores(deltas, () -> jdbcTemplate.batchUpdate(INCREMENT_SCORE_SQL, increments));
+            }
+
+            jdbcTemplate.batchUpdate(DELETE_SQL, relayedIds);
+
+            if (droppedCount[0] > 0) {
+                // counted once the removal is committed, a rolled back batch is relayed again
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        droppedEvents.addAndGet(droppedCount[0]);
+                        log.warn("Dropped {} user events of tournaments no longer taking scores: {}", droppedCount[0], rejectedTournamentIds(acceptsScores));
+                    }
+                });
+            }
+
+            return relayedIds.size();
+        });
+
+        return relayedCount != null ? relayedCount : 0;
+    }
+
+    // a tournament takes scores until its grace period is over, counted from the end recorded by the rotation. one that is
+    // not in the table at all takes none
+    private boolean acceptsScoresFor(int tournamentId, Timestamp endedAfter) {
+        Integer count = jdbcTemplate.queryForObject(ACCEPTS_SCORES_SQL, Integer.class, tournamentId, endedAfter);
+
+        return count != null && count > 0;
+    }
+
+    private static List<Integer> rejectedTournamentIds(Map<Integer, Boolean> acceptsScores) {
+        List<Integer> tournamentIds = new ArrayList<>();
+        acceptsScores.forEach((tournamentId, accepted) -> {
+            if (!accepted) {
+                tournamentIds.add(tournamentId);
+            }
+        });
+
+        return tournamentIds;
+    }
+
+    @ManagedAttribute
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    private String getFindPendingForUpdateSql() {
+        String sql = findPendingForUpdateSql;
+        if (sql == null) {
+            sql = FIND_PENDING_SQL + (supportsSkipLocked() ? " FOR UPDATE SKIP LOCKED" : " FOR UPDATE");
+            findPendingForUpdateSql = sql;
+        }
+
+        return sql;
+    }
+
+    // MySQL 8 skips rows another node has claimed, elsewhere (H2 in the tests) the relays queue up behind each other
+    private boolean supportsSkipLocked() {
+        try {
+            String productName = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(), DatabaseMetaData::getDatabaseProductName);
+
+            return "MySQL".equals(productName);
+        } catch (MetaDataAccessException e) {
+            return false;
+        }
+    }
+}
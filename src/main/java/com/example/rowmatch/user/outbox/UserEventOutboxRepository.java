@@ -0,0 +1,8 @@
+package com.example.rowmatch.user.outbox;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserEventOutboxRepository extends JpaRepository<UserEventOutboxEntity, Long> {
+}
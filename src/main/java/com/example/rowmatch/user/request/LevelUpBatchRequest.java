@@ -0,0 +1,26 @@
+package com.example.rowmatch.user.request;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LevelUpBatchRequest {
+    public List<LevelUpItem> levelUps = new ArrayList<>();
+
+    public static class LevelUpItem {
+        public int userId;
+
+        // increasing per user on the client, an item at or below the last applied one is a replay, even one that was never applied
+        public long sequence;
+
+        public int levelCount = 1;
+
+        public LevelUpItem() {
+        }
+
+        public LevelUpItem(int userId, long sequence, int levelCount) {
+            this.userId = userId;
+            this.sequence = sequence;
+            this.levelCount = levelCount;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.rowmatch.user.response;
+
+import com.example.rowmatch.user.UserDto;
+
+import java.util.List;
+
+public class LevelUpBatchResponse {
+    public List<LevelUpResult> results;
+
+    public LevelUpBatchResponse(List<LevelUpResult> results) {
+        this.results = results;
+    }
+
+    public enum Status {
+        APPLIED,
+        // at or below the user's last applied sequence
+        DUPLICATE,
+        // no level or more levels than one item or one user's share of the batch may carry
+        INVALID,
+        USER_NOT_FOUND
+    }
+
+    public static class LevelUpResult {
+        public int userId;
+
+        public long sequence;
+
+        public Status status;
+
+        // the user after the whole batch, null when the user does not exist
+        public UserDto user;
+
+        public LevelUpResult(int userId, long sequence, Status status, UserDto user) {
+            this.userId = userId;
+            this.sequence = sequence;
+            this.status = status;
+            this.user = user;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.ActiveTournament;
+import com.example.rowmatch.tournament.ActiveTournamentHolder;
+import com.example.rowmatch.tournament.TournamentEntity;
+import com.example.rowmatch.tournament.TournamentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+
+import static com.example.rowmatch.util.Generators.generateTournament;
+import static com.example.rowmatch.util.Generators.generateUpcomingTournament;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ActiveTournamentHolderTests {
+
+    @Mock
+    TournamentRepository tournamentRepository;
+
+    ActiveTournamentHolder activeTournamentHolder;
+
+    private static final long GRACE_PERIOD_MS = 60000;
+
+    @BeforeEach
+    void createHolder() {
+        activeTournamentHolder = new ActiveTournamentHolder(tournamentRepository, "0 0 0 * * ?", GRACE_PERIOD_MS);
+    }
+
+    @Test
+    void get_shouldLoadActiveTournamentOnlyOnce_WhenCalledRepeatedly() {
+        int tournamentId = 100;
+
+        TournamentEntity tournament = generateTournament(tournamentId, true);
+        tournament.setCreatedAt(Instant.parse("2022-02-01T00:00:00Z"));
+
+        doReturn(of(tournament)).when(tournamentRepository).getTournamentByIsActiveTrue();
+
+        activeTournamentHolder.get();
+        ActiveTournament actualTournament = activeTournamentHolder.get();
+
+        assertEquals(tournamentId, actualTournament.getId());
+        assertEquals(tournament.getCreatedAt(), actualTournament.getStartedAt());
+        assertTrue(actualTournament.getEndsAt().isAfter(actualTournament.getStartedAt()));
+
+        verify(tournamentRepository, times(1)).getTournamentByIsActiveTrue();
+    }
+
+    @Test
+    void get_shouldSwitchToUpcomingTournament_WhenItsStartHasPassed() {
+        int tournamentId = 100;
+        int nextTournamentId = 101;
+
+        doReturn(of(generateTournament(tournamentId, true))).when(tournamentRepository).getTournamentByIsActiveTrue();
+        doReturn(of(generateUpcomingTournament(nextTournamentId, Instant.now().minusSeconds(1)))).when(tournamentRepository).getTournamentByIsUpcomingTrue();
+
+        assertEquals(nextTournamentId, activeTournamentHolder.get().getId());
+        assertTrue(activeTournamentHolder.acceptsScoresFor(tournamentId));
+        assertTrue(activeTournamentHolder.acceptsScoresFor(nextTournamentId));
+    }
+
+    @Test
+    void get_shouldKeepActiveTournament_WhenUpcomingTournamentHasNotStarted() {
+        int tournamentId = 100;
+        int nextTournamentId = 101;
+
+        doReturn(of(generateTournament(tournamentId, true))).when(tournamentRepository).getTournamentByIsActiveTrue();
+        doReturn(of(generateUpcomingTournament(nextTournamentId, Instant.now().plusSeconds(60)))).when(tournamentRepository).getTournamentByIsUpcomingTrue();
+
+        assertEquals(tournamentId, activeTournamentHolder.get().getId());
+        assertFalse(activeTournamentHolder.acceptsScoresFor(nextTournamentId));
+    }
+
+    @Test
+    void acceptsScoresFor_shouldRejectPreviousTournament_WhenGracePeriodIsOver() {
+        int tournamentId = 100;
+        int nextTournamentId = 101;
+
+        activeTournamentHolder = new ActiveTournamentHolder(tournamentRepository, "0 0 0 * * ?", 0);
+
+        doReturn(of(generateTournament(tournamentId, true))).when(tournamentRepository).getTournamentByIsActiveTrue();
+
+        activeTournamentHolder.rotate(generateTournament(nextTournamentId, true));
+
+        assertEquals(nextTournamentId, activeTournamentHolder.get().getId());
+        assertFalse(activeTournamentHolder.acceptsScoresFor(tournamentId));
+        assertEquals(tournamentId, activeTournamentHolder.pollExpiredPrevious().getAsInt());
+        assertFalse(activeTournamentHolder.pollExpiredPrevious().isPresent());
+    }
+
+    @Test
+    void pollExpiredPrevious_shouldReturnEmpty_WhenPreviousIsInGracePeriod() {
+        doReturn(of(generateTournament(100, true))).when(tournamentRepository).getTournamentByIsActiveTrue();
+
+        activeTournamentHolder.rotate(generateTournament(101, true));
+
+        assertFalse(activeTournamentHolder.pollExpiredPrevious().isPresent());
+    }
+
+    @Test
+    void refresh_shouldNotReload_WhenActiveTournamentIsUnchanged() {
+        int tournamentId = 100;
+
+        doReturn(of(generateTournament(tournamentId, true))).when(tournamentRepository).getTournamentByIsActiveTrue();
+        doReturn(of(tournamentId)).when(tournamentRepository).findActiveTournamentId();
+
+        activeTournamentHolder.get();
+        activeTournamentHolder.refresh();
+
+        assertEquals(tournamentId, activeTournamentHolder.get().getId());
+
+        verify(tournamentRepository, times(1)).getTournamentByIsActiveTrue();
+    }
+
+    @Test
+    void refresh_shouldNotReload_WhenSwitchedBeforeRotationReachedDatabase() {
+        int tournamentId = 100;
+        int nextTournamentId = 101;
+
+        doReturn(of(generateTournament(tournamentId, true))).when(tournamentRepository).getTournamentByIsActiveTrue();
+        doReturn(of(generateUpcomingTournament(nextTournamentId, Instant.now().minusSeconds(1)))).when(tournamentRepository).getTournamentByIsUpcomingTrue();
+        doReturn(of(tournamentId)).when(tournamentRepository).findActiveTournamentId();
+        doReturn(of(nextTournamentId)).when(tournamentRepository).findUpcomingTournamentId();
+
+        activeTournamentHolder.get();
+        activeTournamentHolder.refresh();
+
+        assertEquals(nextTournamentId, activeTournamentHolder.get().getId());
+
+        verify(tournamentRepository, times(1)).getTournamentByIsActiveTrue();
+    }
+
+    @Test
+    void refresh_shouldReload_WhenAnotherNodeRotatedTournament() {
+        int tournamentId = 100;
+        int nextTournamentId = 101;
+
+        doReturn(of(generateTournament(tournamentId, true)), of(generateTournament(nextTournamentId, true))).when(tournamentRepository).getTournamentByIsActiveTrue();
+        doReturn(of(nextTournamentId)).when(tournamentRepository).findActiveTournamentId();
+
+        activeTournamentHolder.get();
+        activeTournamentHolder.refresh();
+
+        assertEquals(nextTournamentId, activeTournamentHolder.get().getId());
+        assertTrue(activeTournamentHolder.acceptsScoresFor(tournamentId));
+    }
+
+    @Test
+    void refresh_shouldClear_WhenNoTournamentIsActiveAnymore() {
+        doReturn(of(generateTournament(100, true)), empty()).when(tournamentRepository).getTournamentByIsActiveTrue();
+        doReturn(empty()).when(tournamentRepository).findActiveTournamentId();
+
+        activeTournamentHolder.get();
+        activeTournamentHolder.refresh();
+
+        assertNull(activeTournamentHolder.get());
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.leaderboard.FinishedLeaderboard;
+import com.example.rowmatch.tournament.leaderboard.FinishedLeaderboardCache;
+import com.example.rowmatch.tournament.participation.TournamentParticipationDto;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static com.example.rowmatch.util.Generators.generateParticipation;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class FinishedLeaderboardCacheTests {
+
+    private static final long TTL_MILLIS = 60000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final TournamentParticipationRepository tournamentParticipationRepository = mock(TournamentParticipationRepository.class);
+
+    @Test
+    void freeze_shouldEncodeLeaderboardWithStrongETag() {
+        FinishedLeaderboardCache cache = new FinishedLeaderboardCache(objectMapper, tournamentParticipationRepository, 10, TTL_MILLIS);
+
+        List<TournamentParticipationDto> participations = Collections.singletonList(new TournamentParticipationDto(generateParticipation(1, 25, 100, 11, false, 10)));
+
+        FinishedLeaderboard leaderboard = cache.freeze(25, participations);
+        String body = new String(leaderboard.getBody(), StandardCharsets.UTF_8);
+
+        assertTrue(body.contains("\"isTournamentOver\":true"));
+        assertTrue(body.contains("\"userScore\":10"));
+        assertTrue(leaderboard.getETag().startsWith("\""));
+        assertTrue(leaderboard.matches(leaderboard.getETag()));
+        assertTrue(leaderboard.matches("\"other\", " + leaderboard.getETag()));
+        assertFalse(leaderboard.matches("\"other\""));
+        assertFalse(leaderboard.matches(null));
+        assertSame(leaderboard, cache.get(25));
+    }
+
+    @Test
+    void freeze_shouldEvictOldestGroup_WhenCapacityIsExceeded() {
+        FinishedLeaderboardCache cache = new FinishedLeaderboardCache(objectMapper, tournamentParticipationRepository, 2, TTL_MILLIS);
+
+        cache.freeze(1, Collections.emptyList());
+        cache.freeze(2, Collections.emptyList());
+        cache.freeze(3, Collections.emptyList());
+
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(2));
+        assertNotNull(cache.get(3));
+    }
+
+    @Test
+    void freeze_shouldKeepCapacityOfLiveGroups_WhenGroupsAreEvictedAndFrozenAgain() {
+        FinishedLeaderboardCache cache = new FinishedLeaderboardCache(objectMapper, tournamentParticipationRepository, 2, TTL_MILLIS);
+
+        cache.freeze(1, Collections.emptyList());
+        cache.evict(1);
+        cache.freeze(1, Collections.emptyList());
+        cache.freeze(2, Collections.emptyList());
+
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(2));
+
+        cache.freeze(3, Collections.emptyList());
+
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(2));
+        assertNotNull(cache.get(3));
+    }
+
+    @Test
+    void get_shouldReturnNull_WhenUnsettledLeaderboardHasExpired() throws Exception {
+        FinishedLeaderboardCache cache = new FinishedLeaderboardCache(objectMapper, tournamentParticipationRepository, 10, 50);
+
+        cache.freezeUnsettled(1, Collections.emptyList());
+        assertNotNull(cache.get(1));
+
+        Thread.sleep(100);
+
+        assertNull(cache.get(1));
+        verify(tournamentParticipationRepository, never()).countClaimedRewardsByGroupId(anyInt());
+    }
+
+    @Test
+    void get_shouldKeepSettledLeaderboardWithoutEncodingItAgain_WhenNoRewardWasClaimedSinceItWasFrozen() throws Exception {
+        FinishedLeaderboardCache cache = new FinishedLeaderboardCache(objectMapper, tournamentParticipationRepository, 10, 50);
+
+        List<TournamentParticipationDto> participations = List.of(new TournamentParticipationDto(generateParticipation(1, 25, 100, 11, true, 10)),
+                new TournamentParticipationDto(generateParticipation(2, 25, 100, 12, false, 5)));
+        doReturn(1).when(tournamentParticipationRepository).countClaimedRewardsByGroupId(25);
+
+        FinishedLeaderboard leaderboard = cache.freeze(25, participations);
+
+        Thread.sleep(100);
+
+        assertSame(leaderboard, cache.get(25));
+        assertSame(leaderboard, cache.get(25));
+        verify(tournamentParticipationRepository, times(1)).countClaimedRewardsByGroupId(25);
+    }
+
+    @Test
+    void get_shouldReturnNull_WhenRewardOfSettledLeaderboardWasClaimedOnAnotherNode() throws Exception {
+        FinishedLeaderboardCache cache = new FinishedLeaderboardCache(objectMapper, tournamentParticipationRepository, 10, 50);
+
+        cache.freeze(25, List.of(new TournamentParticipationDto(generateParticipation(1, 25, 100, 11, false, 10))));
+        doReturn(1).when(tournamentParticipationRepository).countClaimedRewardsByGroupId(25);
+
+        Thread.sleep(100);
+
+        assertNull(cache.get(25));
+    }
+
+    @Test
+    void freeze_shouldKeepSettledGroupsAndCapacity_WhenAnotherGroupIsEvictedAndFrozenAgainRepeatedly() {
+        FinishedLeaderboardCache cache = new FinishedLeaderboardCache(objectMapper, tournamentParticipationRepository, 2, TTL_MILLIS);
+
+        // the records left behind pile up behind group 1, which never expires
+        cache.freeze(1, Collections.emptyList());
+        for (int i = 0; i < 100; i++) {
+            cache.evict(2);
+            cache.freeze(2, Collections.emptyList());
+        }
+
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(2));
+
+        cache.freeze(3, Collections.emptyList());
+
+        assertNotNull(cache.get(3));
+        assertEquals(1, (cache.get(1) != null ? 1 : 0) + (cache.get(2) != null ? 1 : 0));
+    }
+
+    @Test
+    void freezeUnsettled_shouldEncodeLikeFreeze() {
+        FinishedLeaderboardCache cache = new FinishedLeaderboardCache(objectMapper, tournamentParticipationRepository, 10, TTL_MILLIS);
+
+        FinishedLeaderboard unsettled = cache.freezeUnsettled(2, Collections.emptyList());
+
+        assertEquals(cache.freeze(1, Collections.emptyList()).getETag(), unsettled.getETag());
+        assertSame(unsettled, cache.get(2));
+    }
+}
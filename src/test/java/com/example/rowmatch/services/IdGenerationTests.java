@@ -0,0 +1,69 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.schema.IdGeneratorSeeder;
+import com.example.rowmatch.user.UserEntity;
+import com.example.rowmatch.user.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class IdGenerationTests {
+
+    private static final int USER_COUNT = 120;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    IdGeneratorSeeder idGeneratorSeeder;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void saveAll_shouldInsertUsersInBatches() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        List<UserEntity> users = new ArrayList<>();
+        for (int i = 0; i < USER_COUNT; i++) {
+            users.add(new UserEntity());
+        }
+
+        long preparedBefore = statistics.getPrepareStatementCount();
+        List<Integer> ids = userRepository.saveAll(users).stream().map(UserEntity::getId).collect(Collectors.toList());
+        long prepared = statistics.getPrepareStatementCount() - preparedBefore;
+
+        assertEquals(USER_COUNT, ids.stream().distinct().count());
+        // a statement per batch of 50 and a few for the id blocks, rather than one per user
+        assertTrue(prepared < USER_COUNT / 10, "prepared " + prepared + " statements");
+    }
+
+    @Test
+    void seed_shouldStartGeneratorAboveHighestExistingId() {
+        int highestId = 7_000_000;
+
+        jdbcTemplate.update("DELETE FROM id_generators WHERE name = 'users'");
+        jdbcTemplate.update("INSERT INTO users (id, coins, currentLevel, lastLevelUpSequence, version) VALUES (?, 0, 1, 0, 0)", highestId);
+
+        idGeneratorSeeder.seed();
+        idGeneratorSeeder.seed();
+
+        assertEquals(highestId + 1, jdbcTemplate.queryForObject("SELECT nextValue FROM id_generators WHERE name = 'users'", Long.class));
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.idempotency.IdempotencyCache;
+import com.example.rowmatch.idempotency.IdempotencyFilter;
+import com.example.rowmatch.idempotency.IdempotentResponseEntity;
+import com.example.rowmatch.idempotency.IdempotentResponseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyFilterTests {
+
+    private static final long TTL_MS = 60000;
+
+    private static final int MAX_ENTRIES = 2;
+
+    @Mock
+    IdempotentResponseRepository idempotentResponseRepository;
+
+    IdempotencyCache idempotencyCache;
+
+    IdempotencyFilter idempotencyFilter;
+
+    AtomicInteger handledRequests = new AtomicInteger();
+
+    int responseStatus = HttpServletResponse.SC_OK;
+
+    @BeforeEach
+    void setup() {
+        idempotencyCache = new IdempotencyCache(idempotentResponseRepository, TTL_MS, MAX_ENTRIES, false);
+        idempotencyFilter = new IdempotencyFilter(idempotencyCache, 1000);
+    }
+
+    @Test
+    void doFilter_shouldReplayStoredResponse_WhenKeyIsRepeated() throws Exception {
+        MockHttpServletResponse first = send("PATCH", "/users/1/level_up", "key-1");
+        MockHttpServletResponse retry = send("PATCH", "/users/1/level_up", "key-1");
+
+        assertEquals(1, handledRequests.get());
+        assertEquals(200, retry.getStatus());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals("application/json", retry.getContentType());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        verifyNoInteractions(idempotentResponseRepository);
+    }
+
+    @Test
+    void doFilter_shouldPassBodyToHandler_AndReplayIt_WhenBodyIsRepeated() throws Exception {
+        MockHttpServletResponse first = send("POST", "/users/level_up/batch", "key-1", "[1,2]");
+        MockHttpServletResponse retry = send("POST", "/users/level_up/batch", "key-1", "[1,2]");
+
+        assertEquals(1, handledRequests.get());
+        assertEquals("{\"handled\":1,\"body\":\"[1,2]\"}", first.getContentAsString());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void doFilter_shouldRejectRequest_WhenKeyIsReusedWithAnotherBody() throws Exception {
+        send("POST", "/users/level_up/batch", "key-1", "[1,2]");
+        MockHttpServletResponse reused = send("POST", "/users/level_up/batch", "key-1", "[3]");
+
+        assertEquals(1, handledRequests.get());
+        assertEquals(422, reused.getStatus());
+        assertNull(reused.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void doFilter_shouldStillAnswerRequest_WhenResponseCannotBePersisted() throws Exception {
+        idempotencyCache = new IdempotencyCache(idempotentResponseRepository, TTL_MS, MAX_ENTRIES, true);
+        idempotencyFilter = new IdempotencyFilter(idempotencyCache, 1000);
+
+        doReturn(Optional.empty()).when(idempotentResponseRepository).findById(anyString());
+        doThrow(new DataAccessResourceFailureException("connection refused")).when(idempotentResponseRepository).save(any(IdempotentResponseEntity.class));
+
+        MockHttpServletResponse response = send("PATCH", "/users/1/level_up", "key-1");
+
+        assertEquals(200, response.getStatus());
+        assertEquals("{\"handled\":1,\"body\":\"\"}", response.getContentAsString());
+        assertEquals(1, idempotencyCache.getFailedPersists());
+
+        // still answered from memory on this node
+        send("PATCH", "/users/1/level_up", "key-1");
+
+        assertEquals(1, handledRequests.get());
+    }
+
+    @Test
+    void doFilter_shouldLetOneWaiterTakeOverAndReplayItToTheOthers_WhenFirstAttemptFails() throws Exception {
+        int requestCount = 8;
+        CountDownLatch firstAttemptStarted = new CountDownLatch(1);
+        CountDownLatch waitersArrived = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(requestCount);
+        List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < requestCount; i++) {
+            responses.add(executor.submit(() -> {
+                MockHttpServletRequest request = new MockHttpServletRequest("PATCH", "/users/1/level_up");
+                request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-1");
+                MockHttpServletResponse response = new MockHttpServletResponse();
+
+                idempotencyFilter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+                    @Override
+                    protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                        int handled = handledRequests.incrementAndGet();
+                        if (handled == 1) {
+                            firstAttemptStarted.countDown();
+                            try {
+                                waitersArrived.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                            return;
+                        }
+
+                        resp.setStatus(HttpServletResponse.SC_OK);
+                        resp.getWriter().write("{\"handled\":" + handled + "}");
+                    }
+                }));
+
+                return response;
+            }));
+
+            if (i == 0) {
+                firstAttemptStarted.await();
+            }
+        }
+
+        // the others are parked on the first attempt by now
+        Thread.sleep(200);
+        waitersArrived.countDown();
+
+        int failed = 0;
+        int replayed = 0;
+        for (Future<MockHttpServletResponse> future : responses) {
+            MockHttpServletResponse response = future.get(10, TimeUnit.SECONDS);
+            if (response.getStatus() == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+                failed++;
+                continue;
+            }
+
+            assertEquals(200, response.getStatus());
+            assertEquals("{\"handled\":2}", response.getContentAsString());
+            replayed += "true".equals(response.getHeader(IdempotencyFilter.REPLAYED_HEADER)) ? 1 : 0;
+        }
+        executor.shutdown();
+
+        assertEquals(2, handledRequests.get());
+        assertEquals(1, failed);
+        assertEquals(requestCount - 2, replayed);
+    }
+
+    @Test
+    void doFilter_shouldHandleRequestAgain_WhenKeyIsMissingOrSentToAnotherEndpoint() throws Exception {
+        send("PATCH", "/users/1/level_up", null);
+        send("PATCH", "/users/1/level_up", null);
+        send("PATCH", "/users/1/level_up", "key-1");
+        send("PATCH", "/users/2/level_up", "key-1");
+
+        assertEquals(4, handledRequests.get());
+    }
+
+    @Test
+    void doFilter_shouldNotStoreResponse_WhenRequestFailed() throws Exception {
+        responseStatus = HttpServletResponse.SC_NOT_FOUND;
+        send("PUT", "/tournaments/participants/1", "key-1");
+
+        responseStatus = HttpServletResponse.SC_OK;
+        MockHttpServletResponse retry = send("PUT", "/tournaments/participants/1", "key-1");
+
+        assertEquals(2, handledRequests.get());
+        assertEquals(200, retry.getStatus());
+        assertEquals(1, idempotencyCache.size());
+    }
+
+    @Test
+    void put_shouldEvictOldestResponse_WhenMaxEntriesIsExceeded() throws Exception {
+        send("PATCH", "/users/1/level_up", "key-1");
+        send("PATCH", "/users/1/level_up", "key-2");
+        send("PATCH", "/users/1/level_up", "key-3");
+
+        assertEquals(MAX_ENTRIES, idempotencyCache.size());
+
+        send("PATCH", "/users/1/level_up", "key-1");
+        send("PATCH", "/users/1/level_up", "key-3");
+
+        assertEquals(4, handledRequests.get());
+    }
+
+    @Test
+    void purgeExpired_shouldRemoveResponsesOlderThanTtl() throws Exception {
+        idempotencyCache = new IdempotencyCache(idempotentResponseRepository, 50, MAX_ENTRIES, false);
+        idempotencyFilter = new IdempotencyFilter(idempotencyCache, 1000);
+
+        send("PATCH", "/users/1/level_up", "key-1");
+        Thread.sleep(100);
+        idempotencyCache.purgeExpired();
+
+        assertEquals(0, idempotencyCache.size());
+
+        send("PATCH", "/users/1/level_up", "key-1");
+
+        assertEquals(2, handledRequests.get());
+    }
+
+    private MockHttpServletResponse send(String method, String uri, String idempotencyKey) throws Exception {
+        return send(method, uri, idempotencyKey, "");
+    }
+
+    private MockHttpServletResponse send(String method, String uri, String idempotencyKey, String body) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        if (idempotencyKey != null) {
+            request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        idempotencyFilter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                int handled = handledRequests.incrementAndGet();
+                resp.setStatus(responseStatus);
+                resp.setContentType("application/json");
+                resp.getWriter().write("{\"handled\":" + handled + ",\"body\":\"" + StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8) + "\"}");
+            }
+        }));
+
+        return response;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.group.TournamentGroupEntity;
+import com.example.rowmatch.tournament.group.TournamentGroupRepository;
+import com.example.rowmatch.tournament.group.TournamentGroupService;
+import com.example.rowmatch.user.UserEntity;
+import com.example.rowmatch.user.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// opt-in: mvn test -Dtest=InsertBatchingBenchmarkTests -Drowmatch.benchmark.inserts=100000
+// and again with -Drowmatch.benchmark.jdbc-batch-size=1 for the unbatched inserts of the identity columns before
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "spring.jpa.properties.hibernate.jdbc.batch_size=${rowmatch.benchmark.jdbc-batch-size:50}"})
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "rowmatch.benchmark.inserts", matches = "\\d+")
+public class InsertBatchingBenchmarkTests {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final int PREVIOUS_TOURNAMENT_ID = 97001;
+    private static final int TOURNAMENT_ID = 97002;
+    private static final int GROUP_LEVEL_COUNT = 1000;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TournamentGroupRepository tournamentGroupRepository;
+
+    @Autowired
+    TournamentGroupService tournamentGroupService;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void insert_benchmark() {
+        int insertCount = Integer.parseInt(System.getProperty("rowmatch.benchmark.inserts"));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        long preparedBefore = statistics.getPrepareStatementCount();
+        long startedAt = System.nanoTime();
+
+        List<UserEntity> users = new ArrayList<>(CHUNK_SIZE);
+        for (int i = 0; i < insertCount; i++) {
+            users.add(new UserEntity());
+
+            if (users.size() == CHUNK_SIZE || i == insertCount - 1) {
+                userRepository.saveAll(users);
+                users.clear();
+            }
+        }
+
+        System.out.printf("created %d users in %d ms with %d statements%n", insertCount, (System.nanoTime() - startedAt) / 1_000_000,
+                statistics.getPrepareStatementCount() - preparedBefore);
+
+        List<TournamentGroupEntity> previousGroups = new ArrayList<>();
+        for (int groupLevel = 0; groupLevel < GROUP_LEVEL_COUNT; groupLevel++) {
+            previousGroups.add(new TournamentGroupEntity(PREVIOUS_TOURNAMENT_ID, groupLevel));
+        }
+        tournamentGroupRepository.saveAll(previousGroups);
+
+        preparedBefore = statistics.getPrepareStatementCount();
+        startedAt = System.nanoTime();
+
+        tournamentGroupService.prepareGroups(TOURNAMENT_ID, PREVIOUS_TOURNAMENT_ID);
+
+        System.out.printf("pre-created %d groups in %d ms with %d statements%n", GROUP_LEVEL_COUNT, (System.nanoTime() - startedAt) / 1_000_000,
+                statistics.getPrepareStatementCount() - preparedBefore);
+
+        assertEquals(GROUP_LEVEL_COUNT, tournamentGroupRepository.findDistinctGroupLevelsByTournamentId(TOURNAMENT_ID).size());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.participation.TournamentParticipationDto;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// opt-in: mvn test -Dtest=LeaderboardProjectionBenchmarkTests -Drowmatch.benchmark.leaderboard-loads=200
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "rowmatch.benchmark.leaderboard-loads", matches = "\\d+")
+public class LeaderboardProjectionBenchmarkTests {
+
+    private static final int TOURNAMENT_ID = 96001;
+    private static final int SMALL_GROUP_ID = 96_001_000;
+    private static final int LARGE_GROUP_ID = 96_001_001;
+    private static final int FIRST_PARTICIPATION_ID = 20_000_000;
+    private static final int INSERT_CHUNK_SIZE = 10_000;
+
+    @Autowired
+    TournamentParticipationRepository tournamentParticipationRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void loadGroupLeaderboard_benchmark() {
+        int loads = Integer.parseInt(System.getProperty("rowmatch.benchmark.leaderboard-loads"));
+
+        insertGroup(SMALL_GROUP_ID, 20, FIRST_PARTICIPATION_ID);
+        insertGroup(LARGE_GROUP_ID, 10_000, FIRST_PARTICIPATION_ID + 20);
+
+        for (int groupId : new int[]{SMALL_GROUP_ID, LARGE_GROUP_ID}) {
+            // the group read before this change, entities copied into DTOs
+            measure("entities", groupId, loads, id -> tournamentParticipationRepository.findAllByGroupIdOrderByUserScoreDesc(id).stream()
+                    .map(TournamentParticipationDto::new)
+                    .collect(Collectors.toList()));
+            measure("projection", groupId, loads, tournamentParticipationRepository::findLeaderboardByGroupId);
+        }
+    }
+
+    private void measure(String name, int groupId, int loads, IntFunction<List<TournamentParticipationDto>> load) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        int size = 0;
+        for (int i = 0; i < Math.max(1, loads / 10); i++) {
+            size = load.apply(groupId).size();
+        }
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < loads; i++) {
+            assertEquals(size, load.apply(groupId).size());
+        }
+        long micros = (System.nanoTime() - startedAt) / 1_000 / loads;
+        long allocated = (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / loads;
+
+        System.out.printf("%s: group of %d loaded in %d us, %d KB allocated per load%n", name, size, micros, allocated / 1024);
+    }
+
+    private void insertGroup(int groupId, int size, int firstId) {
+        Random random = new Random(groupId);
+
+        List<Object[]> participations = new ArrayList<>(INSERT_CHUNK_SIZE);
+        for (int i = 0; i < size; i++) {
+            participations.add(new Object[]{firstId + i, TOURNAMENT_ID, groupId, firstId + i, random.nextInt(1000)});
+
+            if (participations.size() == INSERT_CHUNK_SIZE || i == size - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO tournament_participations (id, tournamentId, groupId, userId, userScore, isRewardClaimed) VALUES (?, ?, ?, ?, ?, false)", participations);
+                participations.clear();
+            }
+        }
+    }
+}
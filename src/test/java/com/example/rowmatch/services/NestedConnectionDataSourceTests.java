@@ -0,0 +1,89 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.datasource.NestedConnectionDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NestedConnectionDataSourceTests {
+
+    @Mock
+    DataSource target;
+
+    @Mock
+    HikariDataSource nestedPool;
+
+    NestedConnectionDataSource dataSource;
+
+    @BeforeEach
+    void createDataSource() {
+        dataSource = new NestedConnectionDataSource(target, List.of(nestedPool));
+    }
+
+    @Test
+    void getConnection_shouldTakeFromNestedPool_WhileThreadHoldsConnection() throws SQLException {
+        doReturn(mock(Connection.class)).when(target).getConnection();
+        doReturn(mock(Connection.class)).when(nestedPool).getConnection();
+
+        Connection outer = dataSource.getConnection();
+        dataSource.getConnection().close();
+        outer.close();
+        dataSource.getConnection();
+
+        verify(target, times(2)).getConnection();
+        verify(nestedPool, times(1)).getConnection();
+    }
+
+    @Test
+    void getConnection_shouldTakeFromTarget_AfterCallerThrew() throws SQLException {
+        doReturn(mock(Connection.class)).when(target).getConnection();
+
+        assertThrows(IllegalStateException.class, () -> new JdbcTemplate(dataSource).execute((ConnectionCallback<Void>) connection -> {
+            throw new IllegalStateException("failed");
+        }));
+        dataSource.getConnection();
+
+        verify(target, times(2)).getConnection();
+        verifyNoInteractions(nestedPool);
+    }
+
+    @Test
+    void getConnection_shouldTakeFromTarget_AfterTargetFailedToGiveOne() throws SQLException {
+        doThrow(new SQLTransientConnectionException("timed out")).doReturn(mock(Connection.class)).when(target).getConnection();
+
+        assertThrows(SQLException.class, () -> dataSource.getConnection());
+        dataSource.getConnection();
+
+        verify(target, times(2)).getConnection();
+        verifyNoInteractions(nestedPool);
+    }
+
+    @Test
+    void getConnection_shouldTakeFromTarget_WhenHeldConnectionWasClosedPastItsProxy() throws SQLException {
+        Connection leaked = mock(Connection.class);
+        doReturn(leaked).doReturn(mock(Connection.class)).when(target).getConnection();
+
+        // a caller that threw before closing it, and the pool closing the connection later
+        dataSource.getConnection();
+        doReturn(true).when(leaked).isClosed();
+        dataSource.getConnection();
+
+        verify(target, times(2)).getConnection();
+        verifyNoInteractions(nestedPool);
+    }
+}
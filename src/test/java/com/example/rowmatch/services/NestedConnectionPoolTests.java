@@ -0,0 +1,84 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.user.UserEntity;
+import com.example.rowmatch.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// as many threads as the main pool has connections each hold one while their inserts need fresh id blocks, which Hibernate
+// fetches on a second connection. From a single pool none of them could get it before the connection timeout.
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.maximum-pool-size=" + NestedConnectionPoolTests.THREAD_COUNT,
+        "spring.datasource.hikari.connection-timeout=2000"
+})
+@ActiveProfiles("test")
+public class NestedConnectionPoolTests {
+
+    static final int THREAD_COUNT = 4;
+
+    // more than one id block of 50 per thread
+    private static final int USERS_PER_THREAD = 120;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void save_shouldFetchIdBlocks_WhenEveryPooledConnectionIsHeld() throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        CyclicBarrier allHoldConnections = new CyclicBarrier(THREAD_COUNT);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<List<Integer>>> futures = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                futures.add(executor.submit(() -> transactionTemplate.execute(status -> {
+                    userRepository.count();
+                    await(allHoldConnections);
+
+                    List<Integer> ids = new ArrayList<>();
+                    for (int j = 0; j < USERS_PER_THREAD; j++) {
+                        ids.add(userRepository.save(new UserEntity()).getId());
+                    }
+
+                    return ids;
+                })));
+            }
+
+            Set<Integer> ids = new HashSet<>();
+            for (Future<List<Integer>> future : futures) {
+                ids.addAll(future.get(30, TimeUnit.SECONDS));
+            }
+
+            assertEquals(THREAD_COUNT * USERS_PER_THREAD, ids.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
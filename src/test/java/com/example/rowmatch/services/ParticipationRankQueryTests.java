@@ -0,0 +1,84 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.participation.ParticipationRankDto;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class ParticipationRankQueryTests {
+
+    private static final int GROUP_COUNT = 3;
+
+    private static final int GROUP_SIZE = 20;
+
+    @Autowired
+    TournamentParticipationRepository tournamentParticipationRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void countRankedAhead_shouldCountHigherScoresAndEarlierTies() {
+        int tournamentId = -ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE / 1000);
+        int groupId = tournamentId * 10;
+        int firstId = -tournamentId * 1000;
+
+        List<Object[]> participations = List.of(
+                // higher score, an earlier tie, the participation itself, a lower score and a higher score in another group
+                new Object[]{firstId, tournamentId, groupId, firstId, 50},
+                new Object[]{firstId + 1, tournamentId, groupId, firstId + 1, 30},
+                new Object[]{firstId + 2, tournamentId, groupId, firstId + 2, 30},
+                new Object[]{firstId + 3, tournamentId, groupId, firstId + 3, 10},
+                new Object[]{firstId + 4, tournamentId, groupId - 1, firstId + 4, 90});
+        jdbcTemplate.batchUpdate("INSERT INTO tournament_participations (id, tournamentId, groupId, userId, userScore, isRewardClaimed) VALUES (?, ?, ?, ?, ?, false)", participations);
+
+        assertEquals(2, tournamentParticipationRepository.countRankedAhead(groupId, 30, firstId + 2));
+    }
+
+    @Test
+    void findRanksByTournamentIdAndUserIdIn_shouldRankLikeCountingEachParticipation() {
+        int tournamentId = -ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE / 1000);
+        Random random = new Random(tournamentId);
+        int firstId = -tournamentId * 1000;
+
+        List<Object[]> participations = new ArrayList<>();
+        for (int group = 0; group < GROUP_COUNT; group++) {
+            for (int i = 0; i < GROUP_SIZE; i++) {
+                int id = firstId + group * GROUP_SIZE + i;
+                // few distinct scores, so ties have to be broken by id, and a few rows already settled
+                Integer finalRank = i % 7 == 0 ? 100 + i : null;
+                participations.add(new Object[]{id, tournamentId, tournamentId * 10 - group, id, random.nextInt(5), false, finalRank});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO tournament_participations (id, tournamentId, groupId, userId, userScore, isRewardClaimed, finalRank) VALUES (?, ?, ?, ?, ?, ?, ?)", participations);
+
+        List<Integer> userIds = participations.stream().map(participation -> (Integer) participation[3]).filter(userId -> userId % 3 != 0).collect(Collectors.toList());
+
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (Object[] participation : participations) {
+            int userId = (Integer) participation[3];
+            if (userIds.contains(userId)) {
+                Integer finalRank = (Integer) participation[6];
+                expected.put(userId, finalRank != null ? finalRank
+                        : tournamentParticipationRepository.countRankedAhead((Integer) participation[2], (Integer) participation[4], (Integer) participation[0]) + 1);
+            }
+        }
+
+        Map<Integer, Integer> actual = tournamentParticipationRepository.findRanksByTournamentIdAndUserIdIn(tournamentId, userIds).stream()
+                .collect(Collectors.toMap(ParticipationRankDto::getUserId, ParticipationRankDto::getRank));
+
+        assertEquals(userIds.size(), actual.size());
+        assertEquals(expected, actual);
+    }
+}
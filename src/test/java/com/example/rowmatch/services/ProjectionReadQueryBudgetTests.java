@@ -0,0 +1,144 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import com.example.rowmatch.tournament.participation.TournamentParticipationService;
+import com.example.rowmatch.user.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.OptionalInt;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the rank, reward and user reads select only the columns they answer with. each is one statement, two when a rank has to
+// be counted, and none of them builds a managed entity to snapshot and dirty check.
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+public class ProjectionReadQueryBudgetTests {
+
+    private static final int REWARD = 1000;
+
+    @Autowired
+    TournamentParticipationService tournamentParticipationService;
+
+    @Autowired
+    TournamentParticipationRepository tournamentParticipationRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    // a tournament of its own, whose groups are never resident
+    int tournamentId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        tournamentId = -ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void getRankByTournamentIdAndUserId_shouldCountInOneStatementWithoutLoadingEntities() throws Exception {
+        insertParticipation(1, 20, false, null);
+        insertParticipation(2, 10, false, null);
+
+        statistics.clear();
+        int rank = tournamentParticipationService.getRankByTournamentIdAndUserId(tournamentId, 2);
+
+        assertEquals(2, rank);
+        assertStatements(1);
+    }
+
+    @Test
+    void getUnclaimedReward_shouldReadOneStatementWithoutLoadingEntities() throws Exception {
+        insertParticipation(1, 20, false, 1);
+
+        statistics.clear();
+        int reward = tournamentParticipationService.getUnclaimedReward(tournamentId, 1);
+
+        assertEquals(REWARD, reward);
+        assertStatements(1);
+    }
+
+    @Test
+    void isRewardClaimed_shouldReadOneStatementWithoutLoadingEntities() throws Exception {
+        insertParticipation(1, 20, true, 1);
+
+        statistics.clear();
+        boolean isRewardClaimed = tournamentParticipationService.isRewardClaimed(tournamentId, 1);
+
+        assertTrue(isRewardClaimed);
+        assertStatements(1);
+    }
+
+    @Test
+    void getUnclaimedRewardRank_shouldAnswerFromFinalRank_WhenTournamentIsSettled() throws Exception {
+        insertParticipation(1, 20, false, 1);
+
+        statistics.clear();
+        OptionalInt rank = tournamentParticipationService.getUnclaimedRewardRank(tournamentId, 1);
+
+        assertEquals(OptionalInt.of(1), rank);
+        assertStatements(1);
+    }
+
+    @Test
+    void getUnclaimedRewardRank_shouldCountRankInSecondStatement_WhenTournamentIsNotSettled() throws Exception {
+        insertParticipation(1, 20, false, null);
+        insertParticipation(2, 10, false, null);
+
+        statistics.clear();
+        OptionalInt rank = tournamentParticipationService.getUnclaimedRewardRank(tournamentId, 2);
+
+        assertEquals(OptionalInt.of(2), rank);
+        assertStatements(2);
+    }
+
+    @Test
+    void get_shouldReadUserInOneStatementWithoutLoadingEntities() {
+        int userId = userService.create().getId();
+
+        statistics.clear();
+        userService.get(userId);
+
+        assertStatements(1);
+    }
+
+    @Test
+    void findByTournamentIdAndUserId_shouldLoadEntity_WhichTheProjectionsAvoid() {
+        insertParticipation(1, 20, false, null);
+
+        statistics.clear();
+        tournamentParticipationRepository.findByTournamentIdAndUserId(tournamentId, 1);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityLoadCount());
+    }
+
+    private void assertStatements(int expectedStatementCount) {
+        assertEquals(expectedStatementCount, statistics.getPrepareStatementCount(), "statements");
+        assertEquals(0, statistics.getEntityLoadCount(), "entities loaded");
+    }
+
+    private void insertParticipation(int userId, int userScore, boolean isRewardClaimed, Integer finalRank) {
+        int id = -ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+
+        jdbcTemplate.update("INSERT INTO tournament_participations (id, tournamentId, groupId, userId, userScore, isRewardClaimed, finalRank, reward) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                id, tournamentId, tournamentId, userId, userScore, isRewardClaimed, finalRank, finalRank == null ? null : REWARD);
+    }
+}
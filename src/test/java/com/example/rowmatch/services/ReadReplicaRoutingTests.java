@@ -0,0 +1,114 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.exception.ParticipationNotFoundException;
+import com.example.rowmatch.tournament.TournamentService;
+import com.example.rowmatch.user.UserEntity;
+import com.example.rowmatch.user.UserRepository;
+import com.example.rowmatch.user.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// a second in-memory database with the same schema stands in for the replica. rows written only there, or only on the
+// primary, show where a read went.
+@SpringBootTest(properties = {
+        "rowmatch.datasource.replica-urls=" + ReadReplicaRoutingTests.REPLICA_URL,
+        "rowmatch.datasource.read-your-writes-ms=" + ReadReplicaRoutingTests.READ_YOUR_WRITES_MS
+})
+@ActiveProfiles("test")
+public class ReadReplicaRoutingTests {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replicadb;DB_CLOSE_DELAY=-1";
+
+    static final int READ_YOUR_WRITES_MS = 500;
+
+    private static final int PRIMARY_COINS = 5000;
+
+    private static final int REPLICA_COINS = 1;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    TournamentService tournamentService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private final JdbcTemplate replicaJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @BeforeEach
+    void copySchemaToReplica() {
+        if (!replicaJdbcTemplate.queryForList("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'USERS'", String.class).isEmpty()) {
+            return;
+        }
+
+        for (String statement : jdbcTemplate.queryForList("SCRIPT NODATA", String.class)) {
+            if (!statement.startsWith("--")) {
+                replicaJdbcTemplate.execute(statement);
+            }
+        }
+    }
+
+    @Test
+    void get_shouldReadFromReplica_WhenUserHasNotWrittenRecently() {
+        int userId = createUserOnBothDatabases();
+
+        assertEquals(REPLICA_COINS, userService.get(userId).getCoins());
+    }
+
+    @Test
+    void get_shouldReadFromPrimary_WhileUserHasWrittenRecently() throws Exception {
+        int userId = createUserOnBothDatabases();
+
+        userService.levelUp(userId);
+
+        assertEquals(PRIMARY_COINS + 25, userService.get(userId).getCoins());
+
+        Thread.sleep(READ_YOUR_WRITES_MS + 100);
+
+        assertEquals(REPLICA_COINS, userService.get(userId).getCoins());
+    }
+
+    @Test
+    void findById_shouldReadFromPrimary_WhenNotRoutedToReplica() {
+        int userId = createUserOnBothDatabases();
+
+        // Spring Data's own read-only transactions are not sent to a replica
+        assertEquals(PRIMARY_COINS, userRepository.findById(userId).orElseThrow().getCoins());
+    }
+
+    @Test
+    void getUserRank_shouldCountOnReplica_WhenGroupIsNotResident() {
+        int tournamentId = -ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+        int userId = createUserOnBothDatabases();
+
+        replicaJdbcTemplate.update("INSERT INTO tournament_participations (id, tournamentId, groupId, userId, userScore, isRewardClaimed) VALUES (?, ?, ?, ?, ?, false)",
+                userId, tournamentId, tournamentId, userId, 10);
+
+        assertEquals(1, tournamentService.getUserRank(tournamentId, userId));
+        assertEquals(List.of(userId), List.copyOf(tournamentService.getUserRanks(tournamentId, List.of(userId)).keySet()));
+        // the participation only exists on the replica
+        assertThrows(ParticipationNotFoundException.class, () -> tournamentService.getUserRank(tournamentId, createUserOnBothDatabases() + 1));
+    }
+
+    private int createUserOnBothDatabases() {
+        int userId = userRepository.save(new UserEntity()).getId();
+
+        replicaJdbcTemplate.update("INSERT INTO users (id, coins, currentLevel, lastLevelUpSequence, version) VALUES (?, ?, 1, 0, 0)", userId, REPLICA_COINS);
+
+        return userId;
+    }
+}
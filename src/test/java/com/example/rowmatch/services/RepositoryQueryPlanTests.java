@@ -0,0 +1,142 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.idempotency.IdempotentResponseRepository;
+import com.example.rowmatch.lease.JobLeaseRepository;
+import com.example.rowmatch.tournament.TournamentRepository;
+import com.example.rowmatch.tournament.group.TournamentGroupRepository;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import com.example.rowmatch.user.UserRepository;
+import com.example.rowmatch.util.CapturingStatementInspector;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// every repository query is explained by H2 and has to be answered through an index, so a query that starts scanning
+// a whole table - a new finder, a reordered condition or a dropped index - fails here instead of in production
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.example.rowmatch.util.CapturingStatementInspector")
+@ActiveProfiles("test")
+public class RepositoryQueryPlanTests {
+
+    interface RepositoryCall {
+        void run(RepositoryQueryPlanTests repositories);
+    }
+
+    @Autowired
+    TournamentParticipationRepository participationRepository;
+
+    @Autowired
+    TournamentGroupRepository groupRepository;
+
+    @Autowired
+    TournamentRepository tournamentRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    IdempotentResponseRepository idempotentResponseRepository;
+
+    @Autowired
+    JobLeaseRepository jobLeaseRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    static Stream<Arguments> repositoryCalls() {
+        return Stream.of(
+                call("participations.existsByTournamentIdAndUserId", r -> r.participationRepository.existsByTournamentIdAndUserId(1, 1)),
+                call("participations.countByTournamentIdAndGroupId", r -> r.participationRepository.countByTournamentIdAndGroupId(1, 1)),
+                call("participations.findAllByGroupIdOrderByUserScoreDesc", r -> r.participationRepository.findAllByGroupIdOrderByUserScoreDesc(1)),
+                call("participations.findLeaderboardByGroupId", r -> r.participationRepository.findLeaderboardByGroupId(1)),
+                call("participations.findByTournamentIdAndUserId", r -> r.participationRepository.findByTournamentIdAndUserId(1, 1)),
+                call("participations.findRanksByTournamentIdAndUserIdIn", r -> r.participationRepository.findRanksByTournamentIdAndUserIdIn(1, List.of(1, 2))),
+                call("participations.incrementUserScore", r -> r.participationRepository.incrementUserScore(1, 1, 1)),
+                call("participations.markRewardClaimed", r -> r.participationRepository.markRewardClaimed(1)),
+                call("participations.findDistinctGroupIdsByTournamentId", r -> r.participationRepository.findDistinctGroupIdsByTournamentId(1)),
+                call("participations.findRewardByTournamentIdAndUserId", r -> r.participationRepository.findRewardByTournamentIdAndUserId(1, 1)),
+                call("participations.countRankedAhead", r -> r.participationRepository.countRankedAhead(1, 1, 1)),
+                call("participations.countClaimedRewardsByGroupId", r -> r.participationRepository.countClaimedRewardsByGroupId(1)),
+                call("groups.findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc", r -> r.groupRepository.findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(1, 1)),
+                // a tournament nobody has asked about, so the query cache does not answer it
+                call("groups.findDistinctGroupLevelsByTournamentId", r -> r.groupRepository.findDistinctGroupLevelsByTournamentId(-ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE))),
+                call("groups.findFirstByTournamentIdAndGroupLevelAndParticipantCountLessThanOrderByIdAsc", r -> r.groupRepository.findFirstByTournamentIdAndGroupLevelAndParticipantCountLessThanOrderByIdAsc(1, 1, 5)),
+                call("tournaments.getTournamentByIsActiveTrue", r -> r.tournamentRepository.getTournamentByIsActiveTrue()),
+                call("tournaments.findActiveTournamentId", r -> r.tournamentRepository.findActiveTournamentId()),
+                call("tournaments.getTournamentByIsUpcomingTrue", r -> r.tournamentRepository.getTournamentByIsUpcomingTrue()),
+                call("tournaments.findUpcomingTournamentId", r -> r.tournamentRepository.findUpcomingTournamentId()),
+                call("tournaments.findTournamentIdsToSettle", r -> r.tournamentRepository.findTournamentIdsToSettle(Instant.EPOCH)),
+                call("tournaments.markSettled", r -> r.tournamentRepository.markSettled(-1)),
+                call("users.findDtoById", r -> r.userRepository.findDtoById(-1)),
+                call("users.findByIdForUpdate", r -> r.userRepository.findByIdForUpdate(-1)),
+                call("users.findAllByIdForUpdate", r -> r.userRepository.findAllByIdForUpdate(List.of(-1, -2))),
+                call("idempotentResponses.deleteStoredBefore", r -> r.idempotentResponseRepository.deleteStoredBefore(0)),
+                call("jobLeases.acquire", r -> r.jobLeaseRepository.acquire("query-plan", "query-plan", Instant.EPOCH, Instant.EPOCH)),
+                call("jobLeases.release", r -> r.jobLeaseRepository.release("query-plan", "query-plan", Instant.EPOCH))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryCalls")
+    void repositoryQuery_shouldNotScanWholeTable(String name, RepositoryCall call) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        CapturingStatementInspector.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            call.run(this);
+            status.setRollbackOnly();
+        });
+        List<String> statements = CapturingStatementInspector.getStatements();
+
+        assertFalse(statements.isEmpty(), name + " sent no statement");
+        for (String sql : statements) {
+            String plan = explain(sql);
+
+            assertFalse(plan.contains(".tableScan"), name + " scans a whole table:\n" + plan);
+        }
+    }
+
+    // the plan only depends on which columns are compared, so every parameter is left null
+    private String explain(String sql) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                int parameterCount = statement.getParameterMetaData().getParameterCount();
+                for (int i = 1; i <= parameterCount; i++) {
+                    statement.setNull(i, Types.NULL);
+                }
+
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        plan.append(resultSet.getString(1)).append('\n');
+                    }
+                }
+
+                return plan.toString();
+            }
+        });
+    }
+
+    private static Arguments call(String name, RepositoryCall call) {
+        return Arguments.of(name, call);
+    }
+}
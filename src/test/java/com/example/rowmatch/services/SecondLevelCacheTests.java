@@ -0,0 +1,140 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.cache.BoundedStorageAccess;
+import com.example.rowmatch.cache.SecondLevelCache;
+import com.example.rowmatch.tournament.TournamentEntity;
+import com.example.rowmatch.tournament.TournamentRepository;
+import com.example.rowmatch.tournament.group.TournamentGroupEntity;
+import com.example.rowmatch.tournament.group.TournamentGroupRepository;
+import com.example.rowmatch.tournament.group.TournamentGroupSlotClaimer;
+import com.example.rowmatch.user.UserEntity;
+import com.example.rowmatch.user.UserRepository;
+import com.example.rowmatch.user.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class SecondLevelCacheTests {
+
+    private static final int STARTING_COINS = 5000;
+
+    @Autowired
+    SecondLevelCache secondLevelCache;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TournamentRepository tournamentRepository;
+
+    @Autowired
+    TournamentGroupRepository tournamentGroupRepository;
+
+    @Autowired
+    TournamentGroupSlotClaimer tournamentGroupSlotClaimer;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void findById_shouldBeAnsweredByCache_AfterFirstLoad() {
+        int groupId = tournamentGroupRepository.save(new TournamentGroupEntity(96003, 1)).getId();
+        tournamentGroupRepository.findById(groupId);
+
+        long hitCount = secondLevelCache.getRegionStatistics("tournament_groups").getHitCount();
+        tournamentGroupRepository.findById(groupId);
+
+        assertEquals(hitCount + 1, secondLevelCache.getRegionStatistics("tournament_groups").getHitCount());
+        assertTrue(entityManagerFactory.getCache().contains(TournamentGroupEntity.class, groupId));
+        assertTrue(secondLevelCache.getRegionSizes().get("tournament_groups") > 0);
+    }
+
+    @Test
+    void findById_shouldNotCacheUsers() {
+        int userId = userService.create().getId();
+        userRepository.findById(userId);
+
+        assertFalse(entityManagerFactory.getCache().contains(UserEntity.class, userId));
+    }
+
+    @Test
+    void claimSlot_shouldEvictOnlyClaimedGroup() {
+        int groupId = tournamentGroupRepository.save(new TournamentGroupEntity(96001, 1)).getId();
+        int otherGroupId = tournamentGroupRepository.save(new TournamentGroupEntity(96001, 2)).getId();
+        tournamentGroupRepository.findById(groupId);
+        tournamentGroupRepository.findById(otherGroupId);
+        assertTrue(entityManagerFactory.getCache().contains(TournamentGroupEntity.class, groupId));
+
+        assertEquals(groupId, tournamentGroupSlotClaimer.claimSlot(96001, 1, 20));
+
+        assertFalse(entityManagerFactory.getCache().contains(TournamentGroupEntity.class, groupId));
+        assertTrue(entityManagerFactory.getCache().contains(TournamentGroupEntity.class, otherGroupId));
+        assertEquals(1, tournamentGroupRepository.findById(groupId).orElseThrow().getParticipantCount());
+    }
+
+    @Test
+    void get_shouldSeeUpdateFromAnotherNode() {
+        int coinsCreditedElsewhere = 100;
+        int userId = userService.create().getId();
+        userRepository.findById(userId);
+
+        jdbcTemplate.update("UPDATE users SET coins = coins + ?, version = version + 1 WHERE id = ?", coinsCreditedElsewhere, userId);
+
+        assertEquals(STARTING_COINS + coinsCreditedElsewhere, userService.get(userId).getCoins());
+    }
+
+    @Test
+    void markSettled_shouldInvalidateCachedTournament() {
+        // a finished tournament, a second active one would break every lookup of the active tournament in the shared database
+        TournamentEntity tournament = new TournamentEntity();
+        tournament.setActive(false);
+        int tournamentId = tournamentRepository.save(tournament).getId();
+        tournamentRepository.findById(tournamentId);
+
+        tournamentRepository.markSettled(tournamentId);
+
+        assertTrue(tournamentRepository.findById(tournamentId).orElseThrow().isSettled());
+    }
+
+    @Test
+    void storage_shouldDropLeastRecentlyUsedEntry_WhenFull() {
+        BoundedStorageAccess storage = new BoundedStorageAccess(2, 0);
+
+        storage.putIntoCache(1, "first", null);
+        storage.putIntoCache(2, "second", null);
+        storage.getFromCache(1, null);
+        storage.putIntoCache(3, "third", null);
+
+        assertEquals(2, storage.size());
+        assertTrue(storage.contains(1));
+        assertFalse(storage.contains(2));
+        assertTrue(storage.contains(3));
+    }
+
+    @Test
+    void storage_shouldDropEntry_WhenTimeToLiveIsOver() throws Exception {
+        BoundedStorageAccess storage = new BoundedStorageAccess(10, 50);
+
+        storage.putIntoCache(1, "first", null);
+        assertEquals("first", storage.getFromCache(1, null));
+
+        Thread.sleep(100);
+
+        assertNull(storage.getFromCache(1, null));
+        assertFalse(storage.contains(1));
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.rowmatch.services;
 
 import com.example.rowmatch.exception.*;
+import com.example.rowmatch.tournament.ActiveTournamentHolder;
 import com.example.rowmatch.tournament.TournamentEntity;
 import com.example.rowmatch.tournament.group.TournamentGroupEntity;
 import com.example.rowmatch.tournament.group.TournamentGroupRepository;
 import com.example.rowmatch.tournament.group.TournamentGroupService;
+import com.example.rowmatch.tournament.group.TournamentGroupSlotClaimer;
 import com.example.rowmatch.tournament.participation.TournamentParticipationService;
 import com.example.rowmatch.user.*;
 import org.junit.jupiter.api.Test;
@@ -15,11 +17,23 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
+import static com.example.rowmatch.util.Generators.generateActiveTournament;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.Mockito.*;
@@ -33,6 +47,15 @@ public class TournamentGroupServiceTests {
     @Mock
     TournamentParticipationService tournamentParticipationService;
 
+    @Mock
+    ActiveTournamentHolder activeTournamentHolder;
+
+    @Mock
+    TournamentGroupSlotClaimer tournamentGroupSlotClaimer;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
     @InjectMocks
     TournamentGroupService tournamentGroupService;
 
@@ -92,6 +115,183 @@ public class TournamentGroupServiceTests {
         verify(tournamentParticipationService, times(1)).getParticipationCountByTournamentIdAndGroupId(tournamentId, groupId);
     }
 
+    @Test
+    void getGroupIdForUserLevel_shouldNotQueryDatabase_WhenGroupOfLevelIsAlreadyOpen() {
+        int groupId = 2415;
+        int groupLevel = 1;
+        int tournamentId = 323;
+
+        TournamentGroupEntity nonFullGroup = new TournamentGroupEntity();
+        nonFullGroup.setId(groupId);
+
+        doReturn(of(nonFullGroup)).when(tournamentGroupRepository).findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(tournamentId, groupLevel);
+        doReturn(0).when(tournamentParticipationService).getParticipationCountByTournamentIdAndGroupId(tournamentId, groupId);
+
+        for (int i = 0; i < TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT; i++) {
+            assertEquals(groupId, tournamentGroupService.getGroupIdForUserLevel(150, tournamentId));
+        }
+
+        verify(tournamentGroupRepository, times(1)).findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(tournamentId, groupLevel);
+        verify(tournamentParticipationService, times(1)).getParticipationCountByTournamentIdAndGroupId(tournamentId, groupId);
+        verify(tournamentGroupRepository, never()).save(any(TournamentGroupEntity.class));
+    }
+
+    @Test
+    void getGroupIdForUserLevel_shouldOpenNewGroupExactlyWhenGroupFills() {
+        int tournamentId = 323;
+
+        doReturn(empty()).when(tournamentGroupRepository).findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(tournamentId, 1);
+        saveGroupsWithSequentialIds();
+
+        List<Integer> groupIds = new ArrayList<>();
+        for (int i = 0; i < TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT * 2 + 1; i++) {
+            groupIds.add(tournamentGroupService.getGroupIdForUserLevel(150, tournamentId));
+        }
+
+        assertEquals(TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT, Collections.frequency(groupIds, 1));
+        assertEquals(TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT, Collections.frequency(groupIds, 2));
+        assertEquals(1, Collections.frequency(groupIds, 3));
+
+        verify(tournamentGroupRepository, times(3)).save(any(TournamentGroupEntity.class));
+    }
+
+    @Test
+    void getGroupIdForUserLevel_shouldGiveSlotBack_WhenJoinIsRolledBack() {
+        int tournamentId = 323;
+
+        doReturn(empty()).when(tournamentGroupRepository).findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(tournamentId, 1);
+        saveGroupsWithSequentialIds();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            for (int i = 0; i < TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT; i++) {
+                assertEquals(1, tournamentGroupService.getGroupIdForUserLevel(150, tournamentId));
+            }
+
+            List<TransactionSynchronization> joins = TransactionSynchronizationManager.getSynchronizations();
+            joins.get(0).afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            joins.get(1).afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, tournamentGroupService.getGroupIdForUserLevel(150, tournamentId));
+        assertEquals(2, tournamentGroupService.getGroupIdForUserLevel(150, tournamentId));
+
+        verify(tournamentGroupRepository, times(2)).save(any(TournamentGroupEntity.class));
+    }
+
+    @Test
+    void getGroupIdForUserLevel_shouldCreateGroupInItsOwnTransaction() {
+        int tournamentId = 323;
+
+        doReturn(empty()).when(tournamentGroupRepository).findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(tournamentId, 9);
+        saveGroupsWithSequentialIds();
+
+        tournamentGroupService.getGroupIdForUserLevel(1000, tournamentId);
+
+        verify(transactionManager, times(1)).getTransaction(argThat(definition -> definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void prepareGroups_shouldOpenEmptyGroupPerLevelOfPreviousTournament() {
+        int tournamentId = 324;
+        int previousTournamentId = 323;
+
+        doReturn(Arrays.asList(1, 5)).when(tournamentGroupRepository).findDistinctGroupLevelsByTournamentId(previousTournamentId);
+        doAnswer(invocation -> {
+            List<TournamentGroupEntity> groups = invocation.getArgument(0);
+            for (int i = 0; i < groups.size(); i++) {
+                groups.get(i).setId(i + 1);
+            }
+
+            return groups;
+        }).when(tournamentGroupRepository).saveAll(anyList());
+
+        tournamentGroupService.prepareGroups(tournamentId, previousTournamentId);
+
+        assertEquals(1, tournamentGroupService.getGroupIdForUserLevel(150, tournamentId));
+        assertEquals(2, tournamentGroupService.getGroupIdForUserLevel(550, tournamentId));
+
+        verify(tournamentGroupRepository, times(1)).saveAll(argThat((List<TournamentGroupEntity> groups) -> groups.size() == 2 && groups.stream().allMatch(group -> group.getTournamentId() == tournamentId)));
+        verify(tournamentGroupRepository, never()).save(any(TournamentGroupEntity.class));
+        verify(tournamentGroupRepository, never()).findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(anyInt(), anyInt());
+    }
+
+    @Test
+    void getGroupIdForUserLevel_shouldNeverOverfillGroup_WhenJoinsAreConcurrent() throws Exception {
+        int tournamentId = 323;
+        int joinCount = TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT * 50;
+
+        doReturn(empty()).when(tournamentGroupRepository).findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(tournamentId, 1);
+        saveGroupsWithSequentialIds();
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<Integer>> joins = new ArrayList<>();
+        for (int i = 0; i < joinCount; i++) {
+            joins.add(executor.submit(() -> tournamentGroupService.getGroupIdForUserLevel(150, tournamentId)));
+        }
+
+        Map<Integer, Integer> participantCounts = new HashMap<>();
+        for (Future<Integer> join : joins) {
+            participantCounts.merge(join.get(), 1, Integer::sum);
+        }
+        executor.shutdown();
+
+        assertEquals(joinCount / TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT, participantCounts.size());
+        assertTrue(participantCounts.values().stream().allMatch(count -> count == TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT));
+    }
+
+    @Test
+    void loadOpenGroupsOfActiveTournament_shouldRestoreClaimedSlotsFromDatabase() {
+        int groupId = 2415;
+        int groupLevel = 1;
+        int tournamentId = 323;
+
+        TournamentGroupEntity almostFullGroup = new TournamentGroupEntity();
+        almostFullGroup.setId(groupId);
+
+        doReturn(generateActiveTournament(tournamentId)).when(activeTournamentHolder).get();
+        doReturn(Collections.singletonList(groupLevel)).when(tournamentGroupRepository).findDistinctGroupLevelsByTournamentId(tournamentId);
+        doReturn(of(almostFullGroup)).when(tournamentGroupRepository).findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(tournamentId, groupLevel);
+        doReturn(TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT - 1).when(tournamentParticipationService).getParticipationCountByTournamentIdAndGroupId(tournamentId, groupId);
+        saveGroupsWithSequentialIds();
+
+        tournamentGroupService.loadOpenGroupsOfActiveTournament();
+
+        assertEquals(groupId, tournamentGroupService.getGroupIdForUserLevel(150, tournamentId));
+        assertEquals(1, tournamentGroupService.getGroupIdForUserLevel(150, tournamentId));
+
+        verify(tournamentGroupRepository, times(1)).findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(tournamentId, groupLevel);
+    }
+
+    @Test
+    void getGroupIdForUserLevel_shouldClaimSlotInDatabase_WhenDatabaseClaimingIsEnabled() {
+        int groupId = 2415;
+        int groupLevel = 1;
+        int tournamentId = 323;
+
+        doReturn(true).when(tournamentGroupSlotClaimer).isEnabled();
+        doReturn(groupId).when(tournamentGroupSlotClaimer).claimSlot(tournamentId, groupLevel, TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT);
+
+        assertEquals(groupId, tournamentGroupService.getGroupIdForUserLevel(150, tournamentId));
+
+        verify(tournamentGroupRepository, never()).findFirstByTournamentIdAndGroupLevelOrderByCreatedAtDesc(anyInt(), anyInt());
+        verify(tournamentParticipationService, never()).getParticipationCountByTournamentIdAndGroupId(anyInt(), anyInt());
+    }
+
+    private void saveGroupsWithSequentialIds() {
+        AtomicInteger lastGroupId = new AtomicInteger();
+
+        doAnswer(invocation -> {
+            TournamentGroupEntity group = invocation.getArgument(0);
+            group.setId(lastGroupId.incrementAndGet());
+
+            return group;
+        }).when(tournamentGroupRepository).save(any(TournamentGroupEntity.class));
+    }
+
     private static Stream<Arguments> userLevelsToGroupLevel() {
         return Stream.of(
                 arguments(50, 0),
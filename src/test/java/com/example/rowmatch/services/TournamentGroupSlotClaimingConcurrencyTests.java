@@ -0,0 +1,150 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.exception.UserAlreadyJoinedTournamentException;
+import com.example.rowmatch.tournament.ActiveTournamentHolder;
+import com.example.rowmatch.tournament.TournamentService;
+import com.example.rowmatch.tournament.group.TournamentGroupEntity;
+import com.example.rowmatch.tournament.group.TournamentGroupRepository;
+import com.example.rowmatch.tournament.group.TournamentGroupService;
+import com.example.rowmatch.tournament.participation.TournamentParticipationEntity;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import com.example.rowmatch.user.UserEntity;
+import com.example.rowmatch.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "rowmatch.group-allocation.database-claiming=true")
+@ActiveProfiles("test")
+public class TournamentGroupSlotClaimingConcurrencyTests {
+
+    private static final int TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT = 20;
+    private static final int JOIN_COUNT = TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT * 25;
+    private static final int USER_LEVEL = 150;
+    private static final int PARTICIPATE_COUNT = 100;
+    private static final int PARTICIPATE_THREAD_COUNT = 8;
+
+    @Autowired
+    TournamentGroupService tournamentGroupService;
+
+    @Autowired
+    TournamentGroupRepository tournamentGroupRepository;
+
+    @Autowired
+    TournamentService tournamentService;
+
+    @Autowired
+    ActiveTournamentHolder activeTournamentHolder;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TournamentParticipationRepository tournamentParticipationRepository;
+
+    // run once per thread count, the per-invocation times in the report show how claiming scales
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4, 16})
+    void getGroupIdForUserLevel_shouldNeverOverfillGroup_WhenNodesClaimSlotsConcurrently(int threadCount) throws Exception {
+        int tournamentId = 80100 + threadCount;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> joins = new ArrayList<>();
+
+        for (int i = 0; i < JOIN_COUNT; i++) {
+            joins.add(executor.submit(() -> {
+                start.await();
+
+                return tournamentGroupService.getGroupIdForUserLevel(USER_LEVEL, tournamentId);
+            }));
+        }
+
+        start.countDown();
+        Map<Integer, Integer> assignedCounts = new HashMap<>();
+        for (Future<Integer> join : joins) {
+            assignedCounts.merge(join.get(1, TimeUnit.MINUTES), 1, Integer::sum);
+        }
+        executor.shutdown();
+
+        Map<Integer, Integer> storedCounts = tournamentGroupRepository.findAll().stream()
+                .filter(group -> group.getTournamentId() == tournamentId)
+                .collect(Collectors.toMap(TournamentGroupEntity::getId, TournamentGroupEntity::getParticipantCount));
+
+        assertEquals(assignedCounts, storedCounts);
+        assertTrue(storedCounts.values().stream().allMatch(count -> count <= TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT));
+        assertEquals(JOIN_COUNT, storedCounts.values().stream().mapToInt(Integer::intValue).sum());
+    }
+
+    // every claim commits on its own inside the join's transaction, and the joins that roll back give their slot back
+    @Test
+    void participate_shouldCountOnlyCommittedJoins_WhenJoinsRunConcurrentlyAndSomeRollBack() throws Exception {
+        tournamentService.rotate();
+        int tournamentId = activeTournamentHolder.get().getId();
+
+        List<Integer> userIds = new ArrayList<>();
+        for (int i = 0; i < PARTICIPATE_COUNT; i++) {
+            UserEntity user = new UserEntity();
+            user.setCurrentLevel(USER_LEVEL);
+            int userId = userRepository.save(user).getId();
+            userIds.add(userId);
+
+            // as if another node had inserted the join, the user row does not record it yet, so the insert is what fails
+            if (i % 5 == 0) {
+                tournamentParticipationRepository.save(new TournamentParticipationEntity(tournamentId, -tournamentId, userId));
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(PARTICIPATE_THREAD_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> joins = new ArrayList<>();
+
+        for (int userId : userIds) {
+            joins.add(executor.submit(() -> {
+                start.await();
+
+                try {
+                    tournamentService.participate(userId);
+                    return true;
+                } catch (UserAlreadyJoinedTournamentException e) {
+                    return false;
+                }
+            }));
+        }
+
+        start.countDown();
+        int joinedCount = 0;
+        for (Future<Boolean> join : joins) {
+            joinedCount += join.get(1, TimeUnit.MINUTES) ? 1 : 0;
+        }
+        executor.shutdown();
+
+        Map<Integer, Integer> storedCounts = tournamentGroupRepository.findAll().stream()
+                .filter(group -> group.getTournamentId() == tournamentId)
+                .collect(Collectors.toMap(TournamentGroupEntity::getId, TournamentGroupEntity::getParticipantCount));
+        Map<Integer, Integer> joinedCounts = new HashMap<>();
+        for (int userId : userIds) {
+            tournamentParticipationRepository.findByTournamentIdAndUserId(tournamentId, userId)
+                    .filter(participation -> participation.getGroupId() != -tournamentId)
+                    .ifPresent(participation -> joinedCounts.merge(participation.getGroupId(), 1, Integer::sum));
+        }
+        storedCounts.values().removeIf(count -> count == 0);
+
+        assertEquals(PARTICIPATE_COUNT - PARTICIPATE_COUNT / 5, joinedCount);
+        assertEquals(joinedCounts, storedCounts);
+        assertTrue(storedCounts.values().stream().allMatch(count -> count <= TOURNAMENT_GROUP_MAX_PARTICIPATOR_COUNT));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.RowMatchApplication;
+import com.example.rowmatch.lease.JobLeaseService;
+import com.example.rowmatch.tournament.TournamentEntity;
+import com.example.rowmatch.tournament.TournamentRepository;
+import com.example.rowmatch.tournament.TournamentService;
+import com.example.rowmatch.tournament.scheduled.TournamentJobs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// several application contexts against the one in-memory database stand in for the nodes of a cluster
+public class TournamentJobsClusterTests {
+
+    private static final int NODE_COUNT = 3;
+
+    private static final int CHECKS_PER_NODE = 5;
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    @BeforeEach
+    void startNodes() {
+        for (int i = 0; i < NODE_COUNT; i++) {
+            nodes.add(new SpringApplicationBuilder(RowMatchApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .profiles("test")
+                    .properties("rowmatch.node-id=node-" + i, "rowmatch.tournament.prepare-groups=false")
+                    .run());
+        }
+    }
+
+    @AfterEach
+    void stopNodes() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void rotateTournament_shouldRotateExactlyOnce_WhenEveryNodeRunsTheJobAtTheBoundary() throws Exception {
+        int upcomingTournamentId = makeUpcomingTournamentDue();
+
+        ExecutorService executor = Executors.newFixedThreadPool(NODE_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> checks = new ArrayList<>();
+
+        for (ConfigurableApplicationContext node : nodes) {
+            TournamentJobs tournamentJobs = node.getBean(TournamentJobs.class);
+
+            for (int i = 0; i < CHECKS_PER_NODE; i++) {
+                checks.add(executor.submit(() -> {
+                    start.await();
+                    tournamentJobs.rotateTournament();
+
+                    return null;
+                }));
+            }
+        }
+
+        start.countDown();
+        for (Future<?> check : checks) {
+            check.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        TournamentRepository tournamentRepository = nodes.get(0).getBean(TournamentRepository.class);
+
+        // a second active or upcoming tournament would make these lookups fail on a non-unique result
+        assertEquals(upcomingTournamentId, tournamentRepository.getTournamentByIsActiveTrue().orElseThrow().getId());
+        assertTrue(tournamentRepository.getTournamentByIsUpcomingTrue().orElseThrow().getStartsAt().isAfter(Instant.now()));
+    }
+
+    @Test
+    void rotateTournament_shouldBeTakenOverByAnotherNode_WhenLeaseHolderDies() throws Exception {
+        int upcomingTournamentId = makeUpcomingTournamentDue();
+
+        ConfigurableApplicationContext deadNode = nodes.remove(0);
+        assertTrue(deadNode.getBean(JobLeaseService.class).tryAcquire(TournamentJobs.ROTATION_LEASE, Duration.ofMillis(500)));
+        deadNode.close();
+
+        TournamentJobs survivingJobs = nodes.get(0).getBean(TournamentJobs.class);
+        TournamentRepository tournamentRepository = nodes.get(0).getBean(TournamentRepository.class);
+
+        survivingJobs.rotateTournament();
+
+        assertEquals(upcomingTournamentId, tournamentRepository.getTournamentByIsUpcomingTrue().orElseThrow().getId());
+
+        Thread.sleep(600);
+        survivingJobs.rotateTournament();
+
+        assertEquals(upcomingTournamentId, tournamentRepository.getTournamentByIsActiveTrue().orElseThrow().getId());
+    }
+
+    private int makeUpcomingTournamentDue() {
+        TournamentService tournamentService = nodes.get(0).getBean(TournamentService.class);
+        TournamentRepository tournamentRepository = nodes.get(0).getBean(TournamentRepository.class);
+
+        tournamentService.prepareNextTournament(null);
+
+        TournamentEntity upcoming = tournamentRepository.getTournamentByIsUpcomingTrue().orElseThrow();
+        upcoming.setStartsAt(Instant.now().minusSeconds(1));
+
+        return tournamentRepository.save(upcoming).getId();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.lease.JobLeaseService;
+import com.example.rowmatch.tournament.ActiveTournamentHolder;
+import com.example.rowmatch.tournament.TournamentService;
+import com.example.rowmatch.tournament.scheduled.TournamentJobs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TournamentJobsTests {
+
+    @Mock
+    TournamentService tournamentService;
+
+    @Mock
+    ActiveTournamentHolder activeTournamentHolder;
+
+    @Mock
+    JobLeaseService jobLeaseService;
+
+    @Test
+    void getSettlementDelay_shouldLeaveTimeForBufferedScoresToBeFlushed_WhenBufferIsEnabled() {
+        assertEquals(Duration.ofMillis(10000 + 5000), TournamentJobs.getSettlementDelay(10000, 5000, false, 1000, 200));
+        assertEquals(Duration.ofMillis(10000 + 5000 + 1000 + 200), TournamentJobs.getSettlementDelay(10000, 5000, true, 1000, 200));
+    }
+
+    @Test
+    void settleFinishedTournaments_shouldOnlySettleTournamentsEndedBeforeSettlementDelay() {
+        TournamentJobs tournamentJobs = new TournamentJobs(tournamentService, activeTournamentHolder, jobLeaseService, false, true, 10000, 5000, true, 1000, 200, 60000, 1800000);
+
+        doAnswer(invocation -> {
+            invocation.getArgument(2, Runnable.class).run();
+            return true;
+        }).when(jobLeaseService).runExclusively(eq(TournamentJobs.SETTLEMENT_LEASE), any(), any());
+        doReturn(List.of(7)).when(tournamentService).getTournamentIdsToSettle(Duration.ofMillis(16200));
+
+        tournamentJobs.settleFinishedTournaments();
+
+        verify(tournamentService, times(1)).settleTournament(7);
+    }
+
+    @Test
+    void settleFinishedTournaments_shouldLeaveFailedTournamentUnsettledAndSettleTheNextOne() {
+        TournamentJobs tournamentJobs = new TournamentJobs(tournamentService, activeTournamentHolder, jobLeaseService, true, true, 10000, 5000, true, 1000, 200, 60000, 1800000);
+
+        doAnswer(invocation -> {
+            invocation.getArgument(2, Runnable.class).run();
+            return true;
+        }).when(jobLeaseService).runExclusively(eq(TournamentJobs.SETTLEMENT_LEASE), any(), any());
+        doReturn(List.of(7, 8)).when(tournamentService).getTournamentIdsToSettle(any());
+        doThrow(new IllegalStateException()).when(tournamentService).settleTournament(7);
+
+        tournamentJobs.settleFinishedTournaments();
+
+        verify(tournamentService, times(1)).settleTournament(8);
+        verify(tournamentService, never()).creditUnclaimedRewards(7);
+        verify(tournamentService, times(1)).creditUnclaimedRewards(8);
+    }
+
+    @Test
+    void evictFinishedTournament_shouldEvictPreviousTournament_WhenItsGracePeriodIsOver() {
+        TournamentJobs tournamentJobs = new TournamentJobs(tournamentService, activeTournamentHolder, jobLeaseService, false, true, 10000, 5000, true, 1000, 200, 60000, 1800000);
+
+        doReturn(OptionalInt.of(7)).when(activeTournamentHolder).pollExpiredPrevious();
+
+        tournamentJobs.evictFinishedTournament();
+
+        verify(tournamentService, times(1)).evictTournament(7);
+    }
+}
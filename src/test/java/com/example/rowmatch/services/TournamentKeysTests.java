@@ -0,0 +1,22 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.TournamentKeys;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class TournamentKeysTests {
+
+    @ParameterizedTest
+    @CsvSource({"1, 1", "323, 0", "-5, 7", "7, -5", "2147483647, -2147483648", "-2147483648, 2147483647"})
+    void of_shouldUnpackToTheSameIds(int tournamentId, int id) {
+        long key = TournamentKeys.of(tournamentId, id);
+
+        assertEquals(tournamentId, TournamentKeys.tournamentId(key));
+        assertEquals(id, TournamentKeys.id(key));
+        assertNotEquals(key, TournamentKeys.of(tournamentId + 1, id));
+        assertNotEquals(key, TournamentKeys.of(tournamentId, id + 1));
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.TournamentKeys;
+import com.example.rowmatch.tournament.TournamentRepository;
+import com.example.rowmatch.tournament.leaderboard.FinishedLeaderboard;
+import com.example.rowmatch.tournament.leaderboard.FinishedLeaderboardCache;
+import com.example.rowmatch.tournament.leaderboard.TournamentLeaderboardService;
+import com.example.rowmatch.tournament.participation.TournamentParticipationDto;
+import com.example.rowmatch.tournament.participation.TournamentParticipationEntity;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import com.example.rowmatch.tournament.participation.TournamentScoreBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.example.rowmatch.util.Generators.generateParticipation;
+import static com.example.rowmatch.util.Generators.generateSettledTournament;
+import static com.example.rowmatch.util.Generators.generateTournament;
+import static java.util.Optional.of;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TournamentLeaderboardServiceTests {
+
+    @Mock
+    TournamentParticipationRepository tournamentParticipationRepository;
+
+    @Mock
+    TournamentRepository tournamentRepository;
+
+    @Mock
+    FinishedLeaderboardCache finishedLeaderboardCache;
+
+    @Mock
+    TournamentScoreBuffer tournamentScoreBuffer;
+
+    @InjectMocks
+    TournamentLeaderboardService tournamentLeaderboardService;
+
+    @BeforeEach
+    void runReadsWithoutFlushDirectly() {
+        lenient().doAnswer(invocation -> invocation.getArgument(0, Supplier.class).get()).when(tournamentScoreBuffer).withoutFlush(any());
+    }
+
+    @Test
+    void getLeaderboard_shouldLoadGroupOnlyOnce_WhenCalledRepeatedly() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity participation = generateParticipation(1, groupId, tournamentId, 11, false, 10);
+
+        doReturn(toDtos(participation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+
+        tournamentLeaderboardService.getLeaderboard(groupId);
+        List<TournamentParticipationDto> actualLeaderboard = tournamentLeaderboardService.getLeaderboard(groupId);
+
+        assertEquals(1, actualLeaderboard.size());
+        assertEquals(participation.getUserId(), actualLeaderboard.get(0).getUserId());
+
+        verify(tournamentParticipationRepository, times(1)).findLeaderboardByGroupId(groupId);
+    }
+
+    @Test
+    void getLeaderboard_shouldLoadGroupAgain_WhenWriteIsAppliedWhileItLoads() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity participation = generateParticipation(1, groupId, tournamentId, 11, false, 10);
+        TournamentParticipationEntity updatedParticipation = generateParticipation(1, groupId, tournamentId, 11, false, 12);
+
+        // the update is committed after the first load read the group, so only the second load has it
+        doAnswer(invocation -> {
+            tournamentLeaderboardService.update(updatedParticipation);
+
+            return toDtos(participation);
+        }).doReturn(toDtos(updatedParticipation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+
+        List<TournamentParticipationDto> actualLeaderboard = tournamentLeaderboardService.getLeaderboard(groupId);
+
+        assertEquals(12, actualLeaderboard.get(0).getUserScore());
+        assertEquals(12, tournamentLeaderboardService.getResidentParticipation(tournamentId, participation.getUserId()).getUserScore());
+        verify(tournamentParticipationRepository, times(2)).findLeaderboardByGroupId(groupId);
+    }
+
+    @Test
+    void getLeaderboard_shouldBreakScoreTiesByParticipationId() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity laterParticipation = generateParticipation(7, groupId, tournamentId, 11, false, 10);
+        TournamentParticipationEntity earlierParticipation = generateParticipation(3, groupId, tournamentId, 12, false, 10);
+
+        doReturn(toDtos(laterParticipation, earlierParticipation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+
+        List<TournamentParticipationDto> actualLeaderboard = tournamentLeaderboardService.getLeaderboard(groupId);
+
+        assertEquals(earlierParticipation.getId(), actualLeaderboard.get(0).getId());
+        assertEquals(laterParticipation.getId(), actualLeaderboard.get(1).getId());
+    }
+
+    @Test
+    void update_shouldReorderResidentGroup_WhenScoreChanges() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity firstParticipation = generateParticipation(1, groupId, tournamentId, 11, false, 10);
+        TournamentParticipationEntity secondParticipation = generateParticipation(2, groupId, tournamentId, 12, false, 5);
+
+        doReturn(toDtos(firstParticipation, secondParticipation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+
+        tournamentLeaderboardService.getLeaderboard(groupId);
+
+        tournamentLeaderboardService.update(generateParticipation(2, groupId, tournamentId, 12, false, 11));
+        tournamentLeaderboardService.update(generateParticipation(3, groupId, tournamentId, 13, false, 0));
+
+        List<TournamentParticipationDto> actualLeaderboard = tournamentLeaderboardService.getLeaderboard(groupId);
+
+        assertEquals(3, actualLeaderboard.size());
+        assertEquals(2, actualLeaderboard.get(0).getId());
+        assertEquals(11, actualLeaderboard.get(0).getUserScore());
+        assertEquals(1, actualLeaderboard.get(1).getId());
+        assertEquals(3, actualLeaderboard.get(2).getId());
+
+        verify(tournamentParticipationRepository, times(1)).findLeaderboardByGroupId(groupId);
+    }
+
+    @Test
+    void update_shouldNotLoadGroup_WhenGroupIsNotResident() {
+        tournamentLeaderboardService.update(generateParticipation(1, 25, 100, 11, false, 10));
+
+        verify(tournamentParticipationRepository, never()).findLeaderboardByGroupId(anyInt());
+    }
+
+    @Test
+    void incrementScores_shouldRaiseResidentEntryByDelta_WithoutReadingRowBack() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity firstParticipation = generateParticipation(1, groupId, tournamentId, 11, false, 10);
+        TournamentParticipationEntity secondParticipation = generateParticipation(2, groupId, tournamentId, 12, false, 5);
+
+        doReturn(toDtos(firstParticipation, secondParticipation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+
+        tournamentLeaderboardService.getLeaderboard(groupId);
+
+        int updatedCount = tournamentLeaderboardService.incrementScores(Map.of(TournamentKeys.of(tournamentId, 12), 7), () -> 1);
+
+        List<TournamentParticipationDto> actualLeaderboard = tournamentLeaderboardService.getLeaderboard(groupId);
+
+        assertEquals(1, updatedCount);
+        assertEquals(2, actualLeaderboard.get(0).getId());
+        assertEquals(12, actualLeaderboard.get(0).getUserScore());
+
+        verify(tournamentParticipationRepository, times(1)).findLeaderboardByGroupId(groupId);
+        verify(tournamentParticipationRepository, never()).findByTournamentIdAndUserId(anyInt(), anyInt());
+    }
+
+    @Test
+    void incrementScores_shouldOnlyRunWrite_WhenGroupIsNotResident() {
+        int updatedCount = tournamentLeaderboardService.incrementScores(Map.of(TournamentKeys.of(100, 11), 1), () -> 1);
+
+        assertEquals(1, updatedCount);
+
+        verifyNoInteractions(tournamentParticipationRepository);
+    }
+
+    @Test
+    void evictTournament_shouldReloadGroupsOfTournamentFromDatabase() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity participation = generateParticipation(1, groupId, tournamentId, 11, false, 10);
+
+        doReturn(toDtos(participation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+
+        tournamentLeaderboardService.getLeaderboard(groupId);
+        tournamentLeaderboardService.evictTournament(tournamentId);
+        tournamentLeaderboardService.getLeaderboard(groupId);
+
+        verify(tournamentParticipationRepository, times(2)).findLeaderboardByGroupId(groupId);
+    }
+
+    @Test
+    void getRank_shouldReturnRankWithinResidentGroup() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity firstParticipation = generateParticipation(1, groupId, tournamentId, 11, false, 10);
+        TournamentParticipationEntity secondParticipation = generateParticipation(2, groupId, tournamentId, 12, false, 5);
+
+        doReturn(toDtos(firstParticipation, secondParticipation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+
+        assertFalse(tournamentLeaderboardService.getRank(tournamentId, 12).isPresent());
+
+        tournamentLeaderboardService.getLeaderboard(groupId);
+
+        assertEquals(2, tournamentLeaderboardService.getRank(tournamentId, 12).getAsInt());
+        assertEquals(1, tournamentLeaderboardService.getRank(tournamentId, 11).getAsInt());
+        assertFalse(tournamentLeaderboardService.getRank(tournamentId * 2, 11).isPresent());
+    }
+
+    @Test
+    void getFinishedLeaderboard_shouldReturnFrozenLeaderboardWithoutQuerying_WhenGroupIsFrozen() {
+        int groupId = 25;
+
+        FinishedLeaderboard frozenLeaderboard = new FinishedLeaderboard(new byte[0], "\"etag\"");
+
+        doReturn(frozenLeaderboard).when(finishedLeaderboardCache).get(groupId);
+
+        assertSame(frozenLeaderboard, tournamentLeaderboardService.getFinishedLeaderboard(groupId));
+
+        verify(tournamentParticipationRepository, never()).findLeaderboardByGroupId(anyInt());
+        verify(tournamentRepository, never()).findById(anyInt());
+    }
+
+    @Test
+    void getFinishedLeaderboard_shouldFreezeGroup_WhenTournamentIsSettled() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity participation = generateParticipation(1, groupId, tournamentId, 11, false, 10);
+        FinishedLeaderboard frozenLeaderboard = new FinishedLeaderboard(new byte[0], "\"etag\"");
+
+        doReturn(toDtos(participation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+        doReturn(of(generateSettledTournament(tournamentId))).when(tournamentRepository).findById(tournamentId);
+        doReturn(frozenLeaderboard).when(finishedLeaderboardCache).freeze(eq(groupId), anyList());
+
+        assertSame(frozenLeaderboard, tournamentLeaderboardService.getFinishedLeaderboard(groupId));
+    }
+
+    @Test
+    void getFinishedLeaderboard_shouldFreezeUntilExpiry_WhenTournamentIsNotSettled() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity participation = generateParticipation(1, groupId, tournamentId, 11, false, 10);
+        FinishedLeaderboard renderedLeaderboard = new FinishedLeaderboard(new byte[0], "\"etag\"");
+
+        doReturn(toDtos(participation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+        doReturn(of(generateTournament(tournamentId, false))).when(tournamentRepository).findById(tournamentId);
+        doReturn(renderedLeaderboard).when(finishedLeaderboardCache).freezeUnsettled(eq(groupId), anyList());
+
+        assertSame(renderedLeaderboard, tournamentLeaderboardService.getFinishedLeaderboard(groupId));
+
+        verify(finishedLeaderboardCache, never()).freeze(anyInt(), anyList());
+    }
+
+    @Test
+    void getFinishedLeaderboard_shouldReturnNull_WhenGroupIsResident() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity participation = generateParticipation(1, groupId, tournamentId, 11, false, 10);
+
+        doReturn(toDtos(participation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+
+        tournamentLeaderboardService.getLeaderboard(groupId);
+
+        assertNull(tournamentLeaderboardService.getFinishedLeaderboard(groupId));
+
+        verify(tournamentRepository, never()).findById(anyInt());
+        verify(finishedLeaderboardCache, never()).freeze(anyInt(), anyList());
+    }
+
+    @Test
+    void getLeaderboard_shouldIncludePendingBufferedScores_WhenLoadingGroup() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity firstParticipation = generateParticipation(1, groupId, tournamentId, 11, false, 10);
+        TournamentParticipationEntity secondParticipation = generateParticipation(2, groupId, tournamentId, 12, false, 5);
+
+        doReturn(toDtos(firstParticipation, secondParticipation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+        doReturn(0L).when(tournamentScoreBuffer).getPendingDelta(1);
+        doReturn(7L).when(tournamentScoreBuffer).getPendingDelta(2);
+
+        List<TournamentParticipationDto> actualLeaderboard = tournamentLeaderboardService.getLeaderboard(groupId);
+
+        assertEquals(2, actualLeaderboard.get(0).getId());
+        assertEquals(12, actualLeaderboard.get(0).getUserScore());
+    }
+
+    @Test
+    void bufferScoreIncrement_shouldBufferDeltaAndUpdateResidentGroup() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity firstParticipation = generateParticipation(1, groupId, tournamentId, 11, false, 10);
+        TournamentParticipationEntity secondParticipation = generateParticipation(2, groupId, tournamentId, 12, false, 10);
+
+        doReturn(toDtos(firstParticipation, secondParticipation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+
+        tournamentLeaderboardService.getLeaderboard(groupId);
+
+        TournamentParticipationDto participation = tournamentLeaderboardService.getResidentParticipation(tournamentId, 12);
+        tournamentLeaderboardService.bufferScoreIncrement(participation, 1);
+
+        List<TournamentParticipationDto> actualLeaderboard = tournamentLeaderboardService.getLeaderboard(groupId);
+
+        assertEquals(2, actualLeaderboard.get(0).getId());
+        assertEquals(11, actualLeaderboard.get(0).getUserScore());
+
+        verify(tournamentScoreBuffer, times(1)).add(2, 1);
+    }
+
+    @Test
+    void getLeaderboardIncluding_shouldRankJoinedParticipationWithoutStoringIt_WhenGroupIsResident() {
+        int groupId = 25;
+        int tournamentId = 100;
+
+        TournamentParticipationEntity participation = generateParticipation(1, groupId, tournamentId, 11, false, 0);
+
+        doReturn(toDtos(participation)).when(tournamentParticipationRepository).findLeaderboardByGroupId(groupId);
+
+        tournamentLeaderboardService.getLeaderboard(groupId);
+
+        List<TournamentParticipationDto> actualLeaderboard = tournamentLeaderboardService.getLeaderboardIncluding(new TournamentParticipationDto(generateParticipation(2, groupId, tournamentId, 12, false, 0)));
+
+        assertEquals(2, actualLeaderboard.size());
+        assertEquals(1, actualLeaderboard.get(0).getId());
+        assertEquals(2, actualLeaderboard.get(1).getId());
+        assertEquals(1, tournamentLeaderboardService.getLeaderboard(groupId).size());
+
+        verify(tournamentParticipationRepository, times(1)).findLeaderboardByGroupId(groupId);
+    }
+
+    private static List<TournamentParticipationDto> toDtos(TournamentParticipationEntity... participations) {
+        return Arrays.stream(participations).map(TournamentParticipationDto::new).collect(Collectors.toList());
+    }
+}
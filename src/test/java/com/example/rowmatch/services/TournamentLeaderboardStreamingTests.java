@@ -0,0 +1,202 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.leaderboard.TournamentLeaderboardStreamer;
+import com.example.rowmatch.tournament.participation.TournamentParticipationDto;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import com.example.rowmatch.tournament.response.GetLeaderboardResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// a fetch size well below the row count, so the cursor is read in several round trips
+@SpringBootTest(properties = "rowmatch.leaderboard.stream-fetch-size=7")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class TournamentLeaderboardStreamingTests {
+
+    private static final int GROUP_COUNT = 3;
+
+    private static final int GROUP_SIZE = 20;
+
+    @Autowired
+    TournamentLeaderboardStreamer tournamentLeaderboardStreamer;
+
+    @Autowired
+    TournamentParticipationRepository tournamentParticipationRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void write_shouldWriteSameJsonAsGroupLeaderboards_InGroupAndRankingOrder() throws Exception {
+        int tournamentId = -ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE / 1000);
+        List<Integer> groupIds = insertParticipations(tournamentId);
+
+        List<TournamentParticipationDto> expected = new ArrayList<>();
+        for (int groupId : groupIds) {
+            expected.addAll(tournamentParticipationRepository.findLeaderboardByGroupId(groupId));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tournamentLeaderboardStreamer.write(tournamentId, true, out);
+
+        JsonNode actual = objectMapper.readTree(out.toByteArray());
+
+        assertEquals(GROUP_COUNT * GROUP_SIZE, actual.get("participations").size());
+        assertEquals(objectMapper.valueToTree(new GetLeaderboardResponse(expected, true)), actual);
+    }
+
+    @Test
+    void write_shouldGiveUp_WhenStreamRunsPastItsTimeout() {
+        int tournamentId = -ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE / 1000);
+        insertParticipations(tournamentId);
+
+        // already past its deadline when the first row arrives
+        TournamentLeaderboardStreamer expiredStreamer = new TournamentLeaderboardStreamer(jdbcTemplate, objectMapper, 7, -1);
+
+        try {
+            assertThrows(QueryTimeoutException.class, () -> expiredStreamer.write(tournamentId, true, new ByteArrayOutputStream()));
+        } finally {
+            expiredStreamer.shutdown();
+        }
+    }
+
+    @Test
+    void write_shouldGiveUp_WhenWriteToClientBlocksPastItsTimeout() {
+        int tournamentId = -ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE / 1000);
+        insertParticipations(tournamentId);
+
+        TournamentLeaderboardStreamer streamer = new TournamentLeaderboardStreamer(jdbcTemplate, objectMapper, 7, 500);
+        CountDownLatch clientReading = new CountDownLatch(1);
+        // a client that stopped reading
+        OutputStream blockedClient = new OutputStream() {
+            @Override
+            public void write(int b) {
+                awaitUninterruptibly(clientReading);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                awaitUninterruptibly(clientReading);
+            }
+        };
+
+        try {
+            long startedAt = System.currentTimeMillis();
+
+            assertThrows(QueryTimeoutException.class, () -> streamer.write(tournamentId, true, blockedClient));
+            assertTrue(System.currentTimeMillis() - startedAt < 5000);
+        } finally {
+            clientReading.countDown();
+            streamer.shutdown();
+        }
+    }
+
+    @Test
+    void getTournamentLeaderboard_shouldStreamJson() throws Exception {
+        int tournamentId = -ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE / 1000);
+        insertFinishedTournament(tournamentId);
+        insertParticipations(tournamentId);
+
+        MvcResult started = mockMvc.perform(get("/tournaments/{id}/leaderboard", tournamentId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.participations.length()").value(GROUP_COUNT * GROUP_SIZE))
+                .andExpect(jsonPath("$.participations[0].tournamentId").value(tournamentId))
+                .andExpect(jsonPath("$.isTournamentOver").value(true));
+    }
+
+    @Test
+    void getTournamentLeaderboard_shouldStreamEmptyLeaderboard_WhenTournamentHasNoParticipations() throws Exception {
+        int tournamentId = -ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE / 1000);
+        insertFinishedTournament(tournamentId);
+
+        MvcResult started = mockMvc.perform(get("/tournaments/{id}/leaderboard", tournamentId)).andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"participations\":[],\"isTournamentOver\":true}", true));
+    }
+
+    @Test
+    void getTournamentLeaderboard_shouldReturnNotFound_WhenTournamentDoesNotExist() throws Exception {
+        int tournamentId = -ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE / 1000);
+
+        mockMvc.perform(get("/tournaments/{id}/leaderboard", tournamentId))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isNotFound());
+    }
+
+    private void insertFinishedTournament(int tournamentId) {
+        jdbcTemplate.update("INSERT INTO tournaments (id, isActive, isUpcoming, isSettled, endedAt) VALUES (?, false, false, true, CURRENT_TIMESTAMP)", tournamentId);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // like a socket write, which an interrupt does not end
+            }
+        }
+    }
+
+    private List<Integer> insertParticipations(int tournamentId) {
+        Random random = new Random(tournamentId);
+        int firstId = -tournamentId * 1000;
+
+        List<Integer> groupIds = new ArrayList<>();
+        List<Object[]> participations = new ArrayList<>();
+        for (int group = 0; group < GROUP_COUNT; group++) {
+            int groupId = tournamentId * 10 - group;
+            groupIds.add(groupId);
+
+            for (int i = 0; i < GROUP_SIZE; i++) {
+                int id = firstId + group * GROUP_SIZE + i;
+                // few distinct scores, so ties have to be broken by id
+                participations.add(new Object[]{id, tournamentId, groupId, id, random.nextInt(5), random.nextBoolean()});
+            }
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO tournament_participations (id, tournamentId, groupId, userId, userScore, isRewardClaimed) VALUES (?, ?, ?, ?, ?, ?)", participations);
+
+        groupIds.sort(null);
+
+        return groupIds;
+    }
+}
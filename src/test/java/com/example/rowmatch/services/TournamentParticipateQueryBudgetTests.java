@@ -0,0 +1,117 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.exception.UserAlreadyJoinedTournamentException;
+import com.example.rowmatch.tournament.TournamentService;
+import com.example.rowmatch.tournament.participation.TournamentParticipationEntity;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import com.example.rowmatch.tournament.response.GetLeaderboardResponse;
+import com.example.rowmatch.user.UserEntity;
+import com.example.rowmatch.user.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+public class TournamentParticipateQueryBudgetTests {
+
+    // user read, participation insert, user update
+    private static final int RESIDENT_GROUP_STATEMENT_BUDGET = 3;
+
+    // plus the previous participation and the group the user is placed in
+    private static final int COLD_GROUP_STATEMENT_BUDGET = 5;
+
+    private static final int USER_LEVEL = 950;
+
+    @Autowired
+    TournamentService tournamentService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TournamentParticipationRepository tournamentParticipationRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void startTournament() {
+        tournamentService.rotate();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void participate_shouldStayWithinStatementBudget_WhenGroupIsResident() throws Exception {
+        int firstUserId = createEligibleUser(null);
+        int secondUserId = createEligibleUser(null);
+
+        GetLeaderboardResponse firstLeaderboard = tournamentService.participate(firstUserId);
+        tournamentService.getGroupLeaderboard(firstLeaderboard.participations.get(0).getGroupId());
+
+        statistics.clear();
+        GetLeaderboardResponse secondLeaderboard = tournamentService.participate(secondUserId);
+
+        assertTrue(statistics.getPrepareStatementCount() <= RESIDENT_GROUP_STATEMENT_BUDGET, "statements: " + statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getSuccessfulTransactionCount());
+        assertEquals(2, secondLeaderboard.participations.size());
+        assertEquals(1000 * 4, userRepository.findById(secondUserId).orElseThrow().getCoins());
+    }
+
+    @Test
+    void participate_shouldStayWithinStatementBudget_WhenGroupIsNotResidentAndPreviousRewardIsClaimed() throws Exception {
+        int previousTournamentId = 90001;
+        int warmUpUserId = createEligibleUser(null);
+        int userId = createEligibleUser(previousTournamentId);
+
+        TournamentParticipationEntity previousParticipation = new TournamentParticipationEntity(previousTournamentId, previousTournamentId, userId);
+        previousParticipation.setRewardClaimed(true);
+        tournamentParticipationRepository.save(previousParticipation);
+
+        tournamentService.participate(warmUpUserId);
+
+        statistics.clear();
+        GetLeaderboardResponse leaderboard = tournamentService.participate(userId);
+
+        assertTrue(statistics.getPrepareStatementCount() <= COLD_GROUP_STATEMENT_BUDGET, "statements: " + statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getSuccessfulTransactionCount());
+        assertEquals(2, leaderboard.participations.size());
+    }
+
+    @Test
+    void participate_shouldRejectSecondJoinWithoutChargingAgain_WhenParticipationAlreadyInserted() throws Exception {
+        int userId = createEligibleUser(null);
+
+        GetLeaderboardResponse leaderboard = tournamentService.participate(userId);
+        int tournamentId = leaderboard.participations.get(0).getTournamentId();
+
+        // as if another node had inserted it, the user row does not record the join yet
+        UserEntity user = userRepository.findById(userId).orElseThrow();
+        user.setLastEnteredTournamentId(null);
+        userRepository.save(user);
+
+        assertThrows(UserAlreadyJoinedTournamentException.class, () -> tournamentService.participate(userId));
+
+        assertEquals(1000 * 4, userRepository.findById(userId).orElseThrow().getCoins());
+        assertTrue(tournamentParticipationRepository.findByTournamentIdAndUserId(tournamentId, userId).isPresent());
+    }
+
+    private int createEligibleUser(Integer lastEnteredTournamentId) {
+        UserEntity user = new UserEntity();
+        user.setCurrentLevel(USER_LEVEL);
+        user.setLastEnteredTournamentId(lastEnteredTournamentId);
+
+        return userRepository.save(user).getId();
+    }
+}
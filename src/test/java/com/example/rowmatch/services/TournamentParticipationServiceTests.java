@@ -2,20 +2,33 @@ package com.example.rowmatch.services;
 
 import com.example.rowmatch.exception.GroupNotFoundException;
 import com.example.rowmatch.exception.ParticipationNotFoundException;
+import com.example.rowmatch.exception.RewardAlreadyClaimedException;
+import com.example.rowmatch.exception.UserAlreadyJoinedTournamentException;
+import com.example.rowmatch.tournament.TournamentKeys;
 import com.example.rowmatch.tournament.group.TournamentGroupService;
+import com.example.rowmatch.tournament.leaderboard.TournamentLeaderboardService;
+import com.example.rowmatch.tournament.participation.ParticipationRankDto;
+import com.example.rowmatch.tournament.participation.ParticipationRewardDto;
 import com.example.rowmatch.tournament.participation.TournamentParticipationDto;
 import com.example.rowmatch.tournament.participation.TournamentParticipationEntity;
 import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
 import com.example.rowmatch.tournament.participation.TournamentParticipationService;
+import com.example.rowmatch.tournament.participation.TournamentScoreBuffer;
 import com.example.rowmatch.user.UserService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.function.Supplier;
 
 import static com.example.rowmatch.util.Generators.*;
 import static java.util.Optional.empty;
@@ -34,6 +47,12 @@ public class TournamentParticipationServiceTests {
     @Mock
     TournamentGroupService tournamentGroupService;
 
+    @Mock
+    TournamentLeaderboardService tournamentLeaderboardService;
+
+    @Mock
+    TournamentScoreBuffer tournamentScoreBuffer;
+
     @Mock
     UserService userService;
 
@@ -48,13 +67,28 @@ public class TournamentParticipationServiceTests {
         int groupId = 99;
         int tournamentId = 323;
 
-        doAnswer(returnsFirstArg()).when(tournamentParticipationRepository).save(argThat((TournamentParticipationEntity participation) -> participation.getTournamentId() == tournamentId && participation.getUserId() == userId && participation.getGroupId() == groupId));
+        doAnswer(returnsFirstArg()).when(tournamentParticipationRepository).saveAndFlush(argThat((TournamentParticipationEntity participation) -> participation.getTournamentId() == tournamentId && participation.getUserId() == userId && participation.getGroupId() == groupId));
         doNothing().when(userService).updateAfterParticipation(userId, tournamentId, TOURNAMENT_PARTICIPATION_FEE);
 
         tournamentParticipationService.participate(tournamentId, groupId, userId);
 
-        verify(tournamentParticipationRepository, times(1)).save(argThat((TournamentParticipationEntity participation) -> participation.getTournamentId() == tournamentId && participation.getUserId() == userId && participation.getGroupId() == groupId));
+        verify(tournamentParticipationRepository, times(1)).saveAndFlush(argThat((TournamentParticipationEntity participation) -> participation.getTournamentId() == tournamentId && participation.getUserId() == userId && participation.getGroupId() == groupId));
         verify(userService, times(1)).updateAfterParticipation(userId, tournamentId, TOURNAMENT_PARTICIPATION_FEE);
+        verify(tournamentLeaderboardService, times(1)).update(argThat((TournamentParticipationEntity participation) -> participation.getTournamentId() == tournamentId && participation.getUserId() == userId && participation.getGroupId() == groupId));
+    }
+
+    @Test
+    void participate_shouldThrowUserAlreadyJoinedTournamentException_WhenParticipationAlreadyExists() {
+        int userId = 123;
+        int groupId = 99;
+        int tournamentId = 323;
+
+        doThrow(new DataIntegrityViolationException("uk_participations_tournament_user")).when(tournamentParticipationRepository).saveAndFlush(any(TournamentParticipationEntity.class));
+
+        assertThrows(UserAlreadyJoinedTournamentException.class, () -> tournamentParticipationService.participate(tournamentId, groupId, userId));
+
+        verify(userService, never()).updateAfterParticipation(anyInt(), anyInt(), anyInt());
+        verify(tournamentLeaderboardService, never()).update(any(TournamentParticipationEntity.class));
     }
 
     @Test
@@ -62,60 +96,76 @@ public class TournamentParticipationServiceTests {
         int userId = 123;
         int tournamentId = 323;
 
-        doReturn(empty()).when(tournamentParticipationRepository).findByTournamentIdAndUserId(tournamentId, userId);
+        doAnswer(runsWrite()).when(tournamentLeaderboardService).incrementScores(eq(Map.of(TournamentKeys.of(tournamentId, userId), 1)), any());
+        doReturn(0).when(tournamentParticipationRepository).incrementUserScore(tournamentId, userId, 1);
 
-        assertThrows(ParticipationNotFoundException.class, () -> tournamentParticipationService.incrementTournamentScore(tournamentId, userId));
+        assertThrows(ParticipationNotFoundException.class, () -> tournamentParticipationService.incrementTournamentScore(tournamentId, userId, 1));
 
-        verify(tournamentParticipationRepository, times(1)).findByTournamentIdAndUserId(tournamentId, userId);
+        verify(tournamentParticipationRepository, times(1)).incrementUserScore(tournamentId, userId, 1);
         verify(tournamentParticipationRepository, never()).save(any(TournamentParticipationEntity.class));
     }
 
     @Test
-    void incrementTournamentScore_shouldIncrementTournamentScoreBy1_WhenParticipationExists() throws ParticipationNotFoundException {
+    void incrementTournamentScore_shouldIncrementTournamentScoreBy1Atomically_WhenParticipationExists() throws ParticipationNotFoundException {
         int userId = 123;
-        int groupId = 321;
         int tournamentId = 323;
-        int userScore = 888;
 
-        TournamentParticipationEntity participationToBeUpdated = spy(generateParticipation(312, groupId, tournamentId, userId, false, userScore));
+        doAnswer(runsWrite()).when(tournamentLeaderboardService).incrementScores(eq(Map.of(TournamentKeys.of(tournamentId, userId), 1)), any());
+        doReturn(1).when(tournamentParticipationRepository).incrementUserScore(tournamentId, userId, 1);
 
-        doReturn(of(participationToBeUpdated)).when(tournamentParticipationRepository).findByTournamentIdAndUserId(tournamentId, userId);
+        tournamentParticipationService.incrementTournamentScore(tournamentId, userId, 1);
 
-        tournamentParticipationService.incrementTournamentScore(tournamentId, userId);
+        verify(tournamentParticipationRepository, times(1)).incrementUserScore(tournamentId, userId, 1);
+        verify(tournamentParticipationRepository, never()).save(any(TournamentParticipationEntity.class));
+        verify(tournamentParticipationRepository, never()).findByTournamentIdAndUserId(anyInt(), anyInt());
+    }
 
-        verify(tournamentParticipationRepository, times(1)).findByTournamentIdAndUserId(tournamentId, userId);
-        verify(participationToBeUpdated, times(1)).setUserScore(userScore + 1);
-        verify(tournamentParticipationRepository, times(1)).save(argThat((TournamentParticipationEntity participation) -> participation.getTournamentId() == tournamentId && participation.getUserId() == userId && participation.getGroupId() == groupId));
+    @Test
+    void incrementTournamentScore_shouldBufferIncrementWithoutQuerying_WhenBufferIsEnabledAndGroupIsResident() throws ParticipationNotFoundException {
+        int userId = 123;
+        int tournamentId = 323;
+
+        TournamentParticipationDto participation = new TournamentParticipationDto(generateParticipation(312, 321, tournamentId, userId, false, 888));
+
+        doReturn(true).when(tournamentScoreBuffer).isEnabled();
+        doReturn(participation).when(tournamentLeaderboardService).getResidentParticipation(tournamentId, userId);
+
+        tournamentParticipationService.incrementTournamentScore(tournamentId, userId, 1);
+
+        verify(tournamentLeaderboardService, times(1)).bufferScoreIncrement(participation, 1);
+        verify(tournamentParticipationRepository, never()).findByTournamentIdAndUserId(anyInt(), anyInt());
+        verify(tournamentParticipationRepository, never()).save(any(TournamentParticipationEntity.class));
     }
 
     @Test
-    void getParticipationCountByTournamentIdAndGroupId_shouldReturnTheCount() {
-        int expectedCount = 333;
-        int groupId = 321;
+    void incrementTournamentScore_shouldBufferIncrementOfLoadedParticipation_WhenBufferIsEnabledAndGroupIsNotResident() throws ParticipationNotFoundException {
+        int userId = 123;
         int tournamentId = 323;
 
-        doReturn(expectedCount).when(tournamentParticipationRepository).countByTournamentIdAndGroupId(tournamentId, groupId);
+        TournamentParticipationEntity participation = generateParticipation(312, 321, tournamentId, userId, false, 888);
 
-        int actualCount = tournamentParticipationService.getParticipationCountByTournamentIdAndGroupId(tournamentId, groupId);
+        doReturn(true).when(tournamentScoreBuffer).isEnabled();
+        doReturn(of(participation)).when(tournamentParticipationRepository).findByTournamentIdAndUserId(tournamentId, userId);
 
-        assertEquals(expectedCount, actualCount);
+        tournamentParticipationService.incrementTournamentScore(tournamentId, userId, 1);
 
-        verify(tournamentParticipationRepository, times(1)).countByTournamentIdAndGroupId(tournamentId, groupId);
+        verify(tournamentLeaderboardService, times(1)).bufferScoreIncrement(argThat(buffered -> buffered.getId() == participation.getId()), eq(1));
+        verify(tournamentParticipationRepository, never()).save(any(TournamentParticipationEntity.class));
     }
 
     @Test
-    void existsByTournamentIdAndUserId_shouldReturnExistenceInfo() {
-        boolean expectedExists = false;
-        int userId = 321;
+    void getParticipationCountByTournamentIdAndGroupId_shouldReturnTheCount() {
+        int expectedCount = 333;
+        int groupId = 321;
         int tournamentId = 323;
 
-        doReturn(expectedExists).when(tournamentParticipationRepository).existsByTournamentIdAndUserId(tournamentId, userId);
+        doReturn(expectedCount).when(tournamentParticipationRepository).countByTournamentIdAndGroupId(tournamentId, groupId);
 
-        boolean actualExists = tournamentParticipationService.existsByTournamentIdAndUserId(tournamentId, userId);
+        int actualCount = tournamentParticipationService.getParticipationCountByTournamentIdAndGroupId(tournamentId, groupId);
 
-        assertEquals(expectedExists, actualExists);
+        assertEquals(expectedCount, actualCount);
 
-        verify(tournamentParticipationRepository, times(1)).existsByTournamentIdAndUserId(tournamentId, userId);
+        verify(tournamentParticipationRepository, times(1)).countByTournamentIdAndGroupId(tournamentId, groupId);
     }
 
     @Test
@@ -128,9 +178,9 @@ public class TournamentParticipationServiceTests {
         TournamentParticipationEntity firstParticipation = generateParticipation(123, groupId, 421, 3812, false, firstParticipationScore);
         TournamentParticipationEntity secondParticipation = generateParticipation(123, groupId, 421, 3812, false, secondParticipationScore);
 
-        List<TournamentParticipationEntity> expectedParticipations = Arrays.asList(firstParticipation, secondParticipation);
+        List<TournamentParticipationDto> expectedParticipations = Arrays.asList(new TournamentParticipationDto(firstParticipation), new TournamentParticipationDto(secondParticipation));
 
-        doReturn(expectedParticipations).when(tournamentParticipationRepository).findAllByGroupIdOrderByUserScoreDesc(groupId);
+        doReturn(expectedParticipations).when(tournamentLeaderboardService).getLeaderboard(groupId);
 
         List<TournamentParticipationDto> actualParticipations = tournamentParticipationService.findAllByGroupIdOrderByUserScoreDesc(groupId);
 
@@ -138,7 +188,8 @@ public class TournamentParticipationServiceTests {
         assertEquals(expectedParticipations.get(0).getUserScore(), actualParticipations.get(0).getUserScore());
         assertEquals(expectedParticipations.get(1).getUserScore(), actualParticipations.get(1).getUserScore());
 
-        verify(tournamentParticipationRepository, times(1)).findAllByGroupIdOrderByUserScoreDesc(groupId);
+        verify(tournamentLeaderboardService, times(1)).getLeaderboard(groupId);
+        verify(tournamentParticipationRepository, never()).findAllByGroupIdOrderByUserScoreDesc(anyInt());
     }
 
     @Test
@@ -146,11 +197,11 @@ public class TournamentParticipationServiceTests {
         int userId = 123;
         int tournamentId = 323;
 
-        doReturn(empty()).when(tournamentParticipationRepository).findByTournamentIdAndUserId(tournamentId, userId);
+        doReturn(empty()).when(tournamentParticipationRepository).findRewardByTournamentIdAndUserId(tournamentId, userId);
 
         assertThrows(ParticipationNotFoundException.class, () -> tournamentParticipationService.isRewardClaimed(tournamentId, userId));
 
-        verify(tournamentParticipationRepository, times(1)).findByTournamentIdAndUserId(tournamentId, userId);
+        verify(tournamentParticipationRepository, times(1)).findRewardByTournamentIdAndUserId(tournamentId, userId);
     }
 
     @Test
@@ -159,16 +210,85 @@ public class TournamentParticipationServiceTests {
         int tournamentId = 323;
         boolean expectedIsRewardClaimed = true;
 
-        TournamentParticipationEntity participation = spy(generateParticipation(312, 42142, tournamentId, userId, expectedIsRewardClaimed, 321));
-
-        doReturn(of(participation)).when(tournamentParticipationRepository).findByTournamentIdAndUserId(tournamentId, userId);
+        doReturn(of(new ParticipationRewardDto(312, 42142, 321, expectedIsRewardClaimed, null, null))).when(tournamentParticipationRepository).findRewardByTournamentIdAndUserId(tournamentId, userId);
 
         boolean actualIsRewardClaimed =  tournamentParticipationService.isRewardClaimed(tournamentId, userId);
 
         assertEquals(expectedIsRewardClaimed, actualIsRewardClaimed);
 
-        verify(tournamentParticipationRepository, times(1)).findByTournamentIdAndUserId(tournamentId, userId);
-        verify(participation, times(1)).isRewardClaimed();
+        verify(tournamentParticipationRepository, times(1)).findRewardByTournamentIdAndUserId(tournamentId, userId);
+        verify(tournamentParticipationRepository, never()).findByTournamentIdAndUserId(anyInt(), anyInt());
+    }
+
+    @Test
+    void getUnclaimedRewardRank_shouldReturnEmptyWithoutCountingRank_WhenRewardIsClaimed() throws ParticipationNotFoundException {
+        int userId = 123;
+        int tournamentId = 323;
+
+        doReturn(of(new ParticipationRewardDto(312, 42142, 321, true, null, null))).when(tournamentParticipationRepository).findRewardByTournamentIdAndUserId(tournamentId, userId);
+
+        OptionalInt actualRank = tournamentParticipationService.getUnclaimedRewardRank(tournamentId, userId);
+
+        assertFalse(actualRank.isPresent());
+
+        verify(tournamentLeaderboardService, never()).getRank(anyInt(), anyInt());
+        verify(tournamentParticipationRepository, never()).countRankedAhead(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void getUnclaimedRewardRank_shouldReturnRankFromSingleLookup_WhenRewardIsNotClaimed() throws ParticipationNotFoundException {
+        int userId = 123;
+        int groupId = 42142;
+        int tournamentId = 323;
+        int participationId = 312;
+        int userScore = 321;
+
+        doReturn(of(new ParticipationRewardDto(participationId, groupId, userScore, false, null, null))).when(tournamentParticipationRepository).findRewardByTournamentIdAndUserId(tournamentId, userId);
+        doReturn(OptionalInt.empty()).when(tournamentLeaderboardService).getRank(tournamentId, userId);
+        doReturn(4).when(tournamentParticipationRepository).countRankedAhead(groupId, userScore, participationId);
+
+        OptionalInt actualRank = tournamentParticipationService.getUnclaimedRewardRank(tournamentId, userId);
+
+        assertEquals(5, actualRank.getAsInt());
+
+        verify(tournamentParticipationRepository, times(1)).findRewardByTournamentIdAndUserId(tournamentId, userId);
+        verify(tournamentParticipationRepository, never()).findByTournamentIdAndUserId(anyInt(), anyInt());
+    }
+
+    @Test
+    void getUnclaimedReward_shouldThrowRewardAlreadyClaimedException_WhenRewardIsClaimed() {
+        int userId = 123;
+        int tournamentId = 323;
+
+        doReturn(of(new ParticipationRewardDto(312, 42142, 321, true, null, null))).when(tournamentParticipationRepository).findRewardByTournamentIdAndUserId(tournamentId, userId);
+
+        assertThrows(RewardAlreadyClaimedException.class, () -> tournamentParticipationService.getUnclaimedReward(tournamentId, userId));
+    }
+
+    @Test
+    void getUnclaimedReward_shouldReturnSettledRewardWithoutRanking_WhenTournamentIsSettled() throws ParticipationNotFoundException, RewardAlreadyClaimedException {
+        int userId = 123;
+        int tournamentId = 323;
+
+        doReturn(of(new ParticipationRewardDto(312, 42142, 321, false, 2, 5000))).when(tournamentParticipationRepository).findRewardByTournamentIdAndUserId(tournamentId, userId);
+
+        assertEquals(5000, tournamentParticipationService.getUnclaimedReward(tournamentId, userId));
+
+        verify(tournamentParticipationRepository, never()).countRankedAhead(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void getUnclaimedReward_shouldRewardCountedRank_WhenTournamentIsNotSettled() throws ParticipationNotFoundException, RewardAlreadyClaimedException {
+        int userId = 123;
+        int groupId = 42142;
+        int tournamentId = 323;
+        int participationId = 312;
+        int userScore = 321;
+
+        doReturn(of(new ParticipationRewardDto(participationId, groupId, userScore, false, null, null))).when(tournamentParticipationRepository).findRewardByTournamentIdAndUserId(tournamentId, userId);
+        doReturn(10).when(tournamentParticipationRepository).countRankedAhead(groupId, userScore, participationId);
+
+        assertEquals(0, tournamentParticipationService.getUnclaimedReward(tournamentId, userId));
     }
 
     @Test
@@ -181,24 +301,39 @@ public class TournamentParticipationServiceTests {
         assertThrows(ParticipationNotFoundException.class, () -> tournamentParticipationService.claimReward(tournamentId, userId));
 
         verify(tournamentParticipationRepository, times(1)).findByTournamentIdAndUserId(tournamentId, userId);
-        verify(tournamentParticipationRepository, never()).save(any(TournamentParticipationEntity.class));
+        verify(tournamentParticipationRepository, never()).markRewardClaimed(anyInt());
     }
 
     @Test
-    void claimReward_shouldClaimRewardAndSaveParticipation_WhenParticipationExists() throws ParticipationNotFoundException {
+    void claimReward_shouldMarkRewardClaimedAndUpdateLeaderboard_WhenParticipationExists() throws ParticipationNotFoundException, RewardAlreadyClaimedException {
         int userId = 123;
         int tournamentId = 323;
+        int participationId = 312;
 
-        TournamentParticipationEntity participationToBeClaimed = spy(generateParticipation(312, 42142, tournamentId, userId, false, 321));
+        TournamentParticipationEntity participationToBeClaimed = generateParticipation(participationId, 42142, tournamentId, userId, false, 321);
 
         doReturn(of(participationToBeClaimed)).when(tournamentParticipationRepository).findByTournamentIdAndUserId(tournamentId, userId);
-        doAnswer(returnsFirstArg()).when(tournamentParticipationRepository).save(argThat((TournamentParticipationEntity participation) -> participation.getTournamentId() == tournamentId && participation.getUserId() == userId));
+        doReturn(1).when(tournamentParticipationRepository).markRewardClaimed(participationId);
 
         tournamentParticipationService.claimReward(tournamentId, userId);
 
         verify(tournamentParticipationRepository, times(1)).findByTournamentIdAndUserId(tournamentId, userId);
-        verify(participationToBeClaimed, times(1)).setRewardClaimed(true);
-        verify(tournamentParticipationRepository, times(1)).save(argThat((TournamentParticipationEntity participation) -> participation.getTournamentId() == tournamentId && participation.getUserId() == userId));
+        verify(tournamentParticipationRepository, times(1)).markRewardClaimed(participationId);
+        verify(tournamentLeaderboardService, times(1)).update(argThat(TournamentParticipationEntity::isRewardClaimed));
+    }
+
+    @Test
+    void claimReward_shouldThrowRewardAlreadyClaimedException_WhenRewardWasClaimedConcurrently() {
+        int userId = 123;
+        int tournamentId = 323;
+        int participationId = 312;
+
+        doReturn(of(generateParticipation(participationId, 42142, tournamentId, userId, false, 321))).when(tournamentParticipationRepository).findByTournamentIdAndUserId(tournamentId, userId);
+        doReturn(0).when(tournamentParticipationRepository).markRewardClaimed(participationId);
+
+        assertThrows(RewardAlreadyClaimedException.class, () -> tournamentParticipationService.claimReward(tournamentId, userId));
+
+        verify(tournamentLeaderboardService, never()).update(any());
     }
 
     @Test
@@ -206,33 +341,85 @@ public class TournamentParticipationServiceTests {
         int userId = 123;
         int tournamentId = 323;
 
-        doReturn(empty()).when(tournamentParticipationRepository).findByTournamentIdAndUserId(tournamentId, userId);
+        doReturn(OptionalInt.empty()).when(tournamentLeaderboardService).getRank(tournamentId, userId);
+        doReturn(List.of()).when(tournamentParticipationRepository).findRanksByTournamentIdAndUserIdIn(tournamentId, List.of(userId));
 
         assertThrows(ParticipationNotFoundException.class, () -> tournamentParticipationService.getRankByTournamentIdAndUserId(tournamentId, userId));
 
-        verify(tournamentParticipationRepository, times(1)).findByTournamentIdAndUserId(tournamentId, userId);
+        verify(tournamentParticipationRepository, times(1)).findRanksByTournamentIdAndUserIdIn(tournamentId, List.of(userId));
         verify(tournamentParticipationRepository, never()).findAllByGroupIdOrderByUserScoreDesc(anyInt());
     }
 
     @Test
-    void getRankByTournamentIdAndUserId_shouldReturnIndexOfParticipationInLeaderboardPlus1_WhenParticipationsExistInGroup() throws ParticipationNotFoundException, GroupNotFoundException {
+    void getRankByTournamentIdAndUserId_shouldReturnResidentRank_WhenGroupIsResident() throws ParticipationNotFoundException, GroupNotFoundException {
         int userId = 123;
-        int groupId = 22;
         int tournamentId = 323;
+        int rank = 4;
+
+        doReturn(OptionalInt.of(rank)).when(tournamentLeaderboardService).getRank(tournamentId, userId);
+
+        int actualRank = tournamentParticipationService.getRankByTournamentIdAndUserId(tournamentId, userId);
+
+        assertEquals(rank, actualRank);
 
-        TournamentParticipationEntity firstParticipation = generateParticipation(userId, groupId, 421, 3812, false, 360);
-        TournamentParticipationEntity secondParticipation = generateParticipation(123, groupId, 421, 3812, false, 125);
+        verify(tournamentParticipationRepository, never()).findByTournamentIdAndUserId(anyInt(), anyInt());
+        verify(tournamentParticipationRepository, never()).countRankedAhead(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void getRankByTournamentIdAndUserId_shouldReturnCountOfParticipationsRankedAheadPlus1_WhenGroupIsNotResident() throws ParticipationNotFoundException, GroupNotFoundException {
+        int userId = 123;
+        int tournamentId = 323;
 
-        List<TournamentParticipationEntity> participations = Arrays.asList(firstParticipation, secondParticipation);
+        doReturn(OptionalInt.empty()).when(tournamentLeaderboardService).getRank(tournamentId, userId);
+        doReturn(List.of(new ParticipationRankDto(userId, null, 2))).when(tournamentParticipationRepository).findRanksByTournamentIdAndUserIdIn(tournamentId, List.of(userId));
 
-        doReturn(of(firstParticipation)).when(tournamentParticipationRepository).findByTournamentIdAndUserId(tournamentId, userId);
-        doReturn(participations).when(tournamentParticipationRepository).findAllByGroupIdOrderByUserScoreDesc(groupId);
+        int actualRank = tournamentParticipationService.getRankByTournamentIdAndUserId(tournamentId, userId);
 
-        int index = tournamentParticipationService.getRankByTournamentIdAndUserId(tournamentId, userId);
+        assertEquals(3, actualRank);
 
-        assertEquals(participations.indexOf(firstParticipation) + 1, index);
+        verify(tournamentParticipationRepository, times(1)).findRanksByTournamentIdAndUserIdIn(tournamentId, List.of(userId));
+        verify(tournamentParticipationRepository, never()).findByTournamentIdAndUserId(anyInt(), anyInt());
+        verify(tournamentParticipationRepository, never()).countRankedAhead(anyInt(), anyInt(), anyInt());
+    }
 
-        verify(tournamentParticipationRepository, times(1)).findByTournamentIdAndUserId(tournamentId, userId);
-        verify(tournamentParticipationRepository, times(1)).findAllByGroupIdOrderByUserScoreDesc(groupId);
+    @Test
+    void getRankByTournamentIdAndUserId_shouldReturnFinalRankWithoutCounting_WhenTournamentIsSettled() throws ParticipationNotFoundException, GroupNotFoundException {
+        int userId = 123;
+        int tournamentId = 323;
+
+        doReturn(OptionalInt.empty()).when(tournamentLeaderboardService).getRank(tournamentId, userId);
+        doReturn(List.of(new ParticipationRankDto(userId, 7, 0))).when(tournamentParticipationRepository).findRanksByTournamentIdAndUserIdIn(tournamentId, List.of(userId));
+
+        assertEquals(7, tournamentParticipationService.getRankByTournamentIdAndUserId(tournamentId, userId));
+
+        verify(tournamentParticipationRepository, never()).countRankedAhead(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void getRanksByTournamentIdAndUserIds_shouldQueryOnlyNonResidentUsers() {
+        int tournamentId = 323;
+        int residentUserId = 1;
+        int nonResidentUserId = 2;
+        int unknownUserId = 3;
+        List<Integer> userIds = Arrays.asList(residentUserId, nonResidentUserId, unknownUserId);
+
+        doReturn(Collections.singletonMap(residentUserId, 7)).when(tournamentLeaderboardService).getRanks(tournamentId, userIds);
+        doReturn(Collections.singletonList(new ParticipationRankDto(nonResidentUserId, null, 0))).when(tournamentParticipationRepository).findRanksByTournamentIdAndUserIdIn(tournamentId, Arrays.asList(nonResidentUserId, unknownUserId));
+
+        Map<Integer, Integer> actualRanks = tournamentParticipationService.getRanksByTournamentIdAndUserIds(tournamentId, userIds);
+
+        assertEquals(2, actualRanks.size());
+        assertEquals(7, actualRanks.get(residentUserId));
+        assertEquals(1, actualRanks.get(nonResidentUserId));
+        assertFalse(actualRanks.containsKey(unknownUserId));
+
+        verify(tournamentParticipationRepository, times(1)).findRanksByTournamentIdAndUserIdIn(tournamentId, Arrays.asList(nonResidentUserId, unknownUserId));
+        verify(tournamentParticipationRepository, never()).countRankedAhead(anyInt(), anyInt(), anyInt());
+    }
+
+    // the leaderboard mock still runs the database write it wraps
+    private static Answer<Object> runsWrite() {
+        return invocation -> invocation.<Supplier<?>>getArgument(1).get();
     }
 }
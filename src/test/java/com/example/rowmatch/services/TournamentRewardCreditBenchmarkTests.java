@@ -0,0 +1,76 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.settlement.TournamentSettlementService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// opt-in: mvn test -Dtest=TournamentRewardCreditBenchmarkTests -Drowmatch.benchmark.participations=1000000
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "rowmatch.benchmark.participations", matches = "\\d+")
+public class TournamentRewardCreditBenchmarkTests {
+
+    private static final int TOURNAMENT_ID = 95001;
+    private static final int GROUP_SIZE = 20;
+    private static final int REWARDED_PER_GROUP = 10;
+    private static final int FIRST_USER_ID = 10_000_000;
+    private static final int INSERT_CHUNK_SIZE = 10_000;
+
+    @Autowired
+    TournamentSettlementService tournamentSettlementService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void creditUnclaimedRewards_benchmark() {
+        int participationCount = Integer.parseInt(System.getProperty("rowmatch.benchmark.participations"));
+
+        insertParticipants(participationCount);
+
+        long settleStartedAt = System.nanoTime();
+        tournamentSettlementService.settle(TOURNAMENT_ID);
+        long settleMillis = (System.nanoTime() - settleStartedAt) / 1_000_000;
+
+        long creditStartedAt = System.nanoTime();
+        int creditedCount = tournamentSettlementService.creditUnclaimedRewards(TOURNAMENT_ID);
+        long creditMillis = (System.nanoTime() - creditStartedAt) / 1_000_000;
+
+        System.out.printf("%d participations: settled ranks in %d ms, credited %d rewards in %d ms%n", participationCount, settleMillis, creditedCount, creditMillis);
+
+        assertEquals(participationCount / GROUP_SIZE * REWARDED_PER_GROUP, creditedCount);
+        assertEquals(0, tournamentSettlementService.creditUnclaimedRewards(TOURNAMENT_ID));
+    }
+
+    private void insertParticipants(int participationCount) {
+        Random random = new Random(participationCount);
+
+        List<Object[]> users = new ArrayList<>(INSERT_CHUNK_SIZE);
+        List<Object[]> participations = new ArrayList<>(INSERT_CHUNK_SIZE);
+
+        for (int i = 0; i < participationCount; i++) {
+            int userId = FIRST_USER_ID + i;
+
+            users.add(new Object[]{userId, 0, 100});
+            participations.add(new Object[]{userId, TOURNAMENT_ID, TOURNAMENT_ID * GROUP_SIZE + i / GROUP_SIZE, userId, random.nextInt(1000)});
+
+            if (users.size() == INSERT_CHUNK_SIZE || i == participationCount - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO users (id, coins, currentLevel, lastLevelUpSequence, version) VALUES (?, ?, ?, 0, 0)", users);
+                jdbcTemplate.batchUpdate("INSERT INTO tournament_participations (id, tournamentId, groupId, userId, userScore, isRewardClaimed) VALUES (?, ?, ?, ?, ?, false)", participations);
+
+                users.clear();
+                participations.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.participation.TournamentScoreBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TournamentScoreBufferTests {
+
+    @Mock
+    JdbcTemplate jdbcTemplate;
+
+    @Mock
+    TransactionTemplate transactionTemplate;
+
+    TournamentScoreBuffer tournamentScoreBuffer;
+
+    @BeforeEach
+    void setUp() {
+        tournamentScoreBuffer = new TournamentScoreBuffer(jdbcTemplate, transactionTemplate, true, 60000, 3);
+
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldWriteCoalescedDeltasInOneBatch() {
+        tournamentScoreBuffer.add(7, 1);
+        tournamentScoreBuffer.add(3, 1);
+        tournamentScoreBuffer.add(7, 1);
+
+        tournamentScoreBuffer.flush();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), rows.capture());
+
+        assertEquals(2, rows.getValue().size());
+        assertArrayEquals(new Object[]{1L, 3}, rows.getValue().get(0));
+        assertArrayEquals(new Object[]{2L, 7}, rows.getValue().get(1));
+        assertEquals(0, tournamentScoreBuffer.getPendingDelta(7));
+    }
+
+    @Test
+    void flush_shouldKeepDeltas_WhenBatchFails() {
+        doThrow(new IllegalStateException()).when(transactionTemplate).executeWithoutResult(any());
+
+        tournamentScoreBuffer.add(7, 2);
+
+        assertThrows(IllegalStateException.class, () -> tournamentScoreBuffer.flush());
+
+        assertEquals(2, tournamentScoreBuffer.getPendingDelta(7));
+    }
+
+    @Test
+    void flushIfStale_shouldNotFlush_WhenPendingDeltasAreFreshAndFew() {
+        tournamentScoreBuffer.add(7, 1);
+
+        tournamentScoreBuffer.flushIfStale();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void flushIfStale_shouldFlush_WhenTooManyParticipationsArePending() {
+        tournamentScoreBuffer.add(1, 1);
+        tournamentScoreBuffer.add(2, 1);
+        tournamentScoreBuffer.add(3, 1);
+
+        tournamentScoreBuffer.flushIfStale();
+
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+    }
+}
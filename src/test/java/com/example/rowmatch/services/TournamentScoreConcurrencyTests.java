@@ -0,0 +1,79 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.exception.ParticipationNotFoundException;
+import com.example.rowmatch.tournament.participation.TournamentParticipationDto;
+import com.example.rowmatch.tournament.participation.TournamentParticipationEntity;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import com.example.rowmatch.tournament.participation.TournamentParticipationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class TournamentScoreConcurrencyTests {
+
+    private static final int THREAD_COUNT = 16;
+    private static final int INCREMENTS_PER_PARTICIPATION = 1000;
+
+    @Autowired
+    TournamentParticipationService tournamentParticipationService;
+
+    @Autowired
+    TournamentParticipationRepository tournamentParticipationRepository;
+
+    @Test
+    void incrementTournamentScore_shouldNotLoseIncrements_WhenCalledConcurrently() throws Exception {
+        int tournamentId = 80001;
+        int groupId = 80001;
+        int firstUserId = 80001;
+        int secondUserId = 80002;
+
+        tournamentParticipationRepository.save(new TournamentParticipationEntity(tournamentId, groupId, firstUserId));
+        tournamentParticipationRepository.save(new TournamentParticipationEntity(tournamentId, groupId, secondUserId));
+
+        // make the group resident so the in-memory leaderboard is raced as well
+        tournamentParticipationService.findAllByGroupIdOrderByUserScoreDesc(groupId);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> increments = new ArrayList<>();
+
+        for (int i = 0; i < INCREMENTS_PER_PARTICIPATION; i++) {
+            for (int userId : new int[]{firstUserId, secondUserId}) {
+                increments.add(executor.submit(() -> {
+                    start.await();
+                    tournamentParticipationService.incrementTournamentScore(tournamentId, userId, 1);
+
+                    return null;
+                }));
+            }
+        }
+
+        start.countDown();
+        for (Future<?> increment : increments) {
+            increment.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertEquals(INCREMENTS_PER_PARTICIPATION, getScoreFromDatabase(tournamentId, firstUserId));
+        assertEquals(INCREMENTS_PER_PARTICIPATION, getScoreFromDatabase(tournamentId, secondUserId));
+
+        for (TournamentParticipationDto participation : tournamentParticipationService.findAllByGroupIdOrderByUserScoreDesc(groupId)) {
+            assertEquals(INCREMENTS_PER_PARTICIPATION, participation.getUserScore());
+        }
+    }
+
+    private int getScoreFromDatabase(int tournamentId, int userId) {
+        return tournamentParticipationRepository.findByTournamentIdAndUserId(tournamentId, userId)
+                .orElseThrow(ParticipationNotFoundException::new)
+                .getUserScore();
+    }
+}
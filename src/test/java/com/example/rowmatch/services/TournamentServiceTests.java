@@ -1,35 +1,44 @@
 package com.example.rowmatch.services;
 
+import com.example.rowmatch.datasource.ReadRouting;
 import com.example.rowmatch.exception.*;
+import com.example.rowmatch.tournament.ActiveTournament;
+import com.example.rowmatch.tournament.ActiveTournamentHolder;
 import com.example.rowmatch.tournament.TournamentEntity;
 import com.example.rowmatch.tournament.TournamentRepository;
 import com.example.rowmatch.tournament.TournamentService;
 import com.example.rowmatch.tournament.group.TournamentGroupService;
+import com.example.rowmatch.tournament.leaderboard.TournamentLeaderboardService;
+import com.example.rowmatch.tournament.leaderboard.TournamentLeaderboardStreamer;
 import com.example.rowmatch.tournament.participation.TournamentParticipationDto;
 import com.example.rowmatch.tournament.participation.TournamentParticipationEntity;
 import com.example.rowmatch.tournament.participation.TournamentParticipationService;
 import com.example.rowmatch.tournament.response.GetLeaderboardResponse;
+import com.example.rowmatch.tournament.settlement.TournamentSettlementService;
 import com.example.rowmatch.user.*;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
-import org.junit.jupiter.params.provider.Arguments;
-import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.OptionalInt;
 import java.util.Random;
-import java.util.stream.Stream;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.example.rowmatch.util.Generators.*;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
 import static org.junit.jupiter.api.Assertions.*;
-import static org.junit.jupiter.params.provider.Arguments.arguments;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
@@ -43,12 +52,28 @@ public class TournamentServiceTests {
     @Mock
     TournamentRepository tournamentRepository;
 
+    @Mock
+    ActiveTournamentHolder activeTournamentHolder;
+
     @Mock
     TournamentGroupService tournamentGroupService;
 
     @Mock
     TournamentParticipationService tournamentParticipationService;
 
+    @Mock
+    TournamentLeaderboardService tournamentLeaderboardService;
+
+    @Mock
+    TournamentSettlementService tournamentSettlementService;
+
+    @Mock
+    TournamentLeaderboardStreamer tournamentLeaderboardStreamer;
+
+    // without replicas, so reads run directly
+    @Spy
+    ReadRouting readRouting = new ReadRouting(null, List.of(), 2000, 1000);
+
     @InjectMocks
     TournamentService tournamentService;
 
@@ -63,48 +88,126 @@ public class TournamentServiceTests {
     private static final int TOURNAMENT_LAST_REWARD_RANK = 10;
 
     @Test
-    void create_shouldCreateAndSaveTournament() {
-        doAnswer(returnsFirstArg()).when(tournamentRepository).save(argThat(TournamentEntity::isActive));
+    void prepareNextTournament_shouldCreateUpcomingTournamentStartingWhenActiveEnds() {
+        int tournamentId = 100;
+        int finishedTournamentId = 99;
+
+        TournamentEntity currentTournament = generateTournament(tournamentId, true);
+        ActiveTournament activeTournament = generateActiveTournament(tournamentId);
+
+        doReturn(empty()).when(tournamentRepository).getTournamentByIsUpcomingTrue();
+        doReturn(of(currentTournament)).when(tournamentRepository).getTournamentByIsActiveTrue();
+        doReturn(activeTournament).when(activeTournamentHolder).toActiveTournament(currentTournament);
+        doAnswer(invocation -> {
+            TournamentEntity tournament = invocation.getArgument(0);
+            tournament.setId(tournamentId + 1);
 
-        tournamentService.create();
+            return tournament;
+        }).when(tournamentRepository).save(any(TournamentEntity.class));
 
-        verify(tournamentRepository, times(1)).save(argThat(TournamentEntity::isActive));
+        tournamentService.prepareNextTournament(finishedTournamentId);
+
+        verify(tournamentRepository, times(1)).save(argThat((TournamentEntity tournament) -> !tournament.isActive() && tournament.isUpcoming() && activeTournament.getEndsAt().equals(tournament.getStartsAt())));
+        verify(tournamentGroupService, times(1)).prepareGroups(tournamentId + 1, finishedTournamentId);
+        verify(activeTournamentHolder, times(1)).setUpcoming(argThat(tournament -> tournament.getId() == tournamentId + 1));
     }
 
     @Test
-    void participate_shouldThrowNoActiveTournamentException_WhenThereIsNoActiveTournament() throws ParticipationNotFoundException, UserNotFoundException, GroupNotFoundException {
+    void prepareNextTournament_shouldReturn_WhenUpcomingTournamentExists() {
+        doReturn(of(TournamentEntity.upcoming(Instant.now()))).when(tournamentRepository).getTournamentByIsUpcomingTrue();
+
+        tournamentService.prepareNextTournament(null);
+
+        verify(tournamentRepository, never()).save(any(TournamentEntity.class));
+        verify(activeTournamentHolder, never()).setUpcoming(any());
+    }
+
+    @Test
+    void prepareNextTournament_shouldStartNow_WhenActiveTournamentHasAlreadyEnded() {
+        Instant preparedAt = Instant.now();
+
+        doReturn(empty()).when(tournamentRepository).getTournamentByIsUpcomingTrue();
         doReturn(empty()).when(tournamentRepository).getTournamentByIsActiveTrue();
+        doReturn(preparedAt.minusSeconds(3600)).when(activeTournamentHolder).getNextRotation();
+        doAnswer(returnsFirstArg()).when(tournamentRepository).save(any(TournamentEntity.class));
+
+        tournamentService.prepareNextTournament(null);
+
+        verify(tournamentRepository, times(1)).save(argThat((TournamentEntity tournament) -> tournament.isUpcoming() && !tournament.getStartsAt().isBefore(preparedAt)));
+        verify(tournamentGroupService, never()).prepareGroups(anyInt(), anyInt());
+    }
+
+    @Test
+    void isRotationDue_shouldReturnTrue_WhenUpcomingTournamentHasStarted() {
+        doReturn(of(TournamentEntity.upcoming(Instant.now().minusSeconds(1)))).when(tournamentRepository).getTournamentByIsUpcomingTrue();
+
+        assertTrue(tournamentService.isRotationDue());
+    }
+
+    @Test
+    void isRotationDue_shouldReturnFalse_WhenUpcomingTournamentHasNotStarted() {
+        doReturn(of(TournamentEntity.upcoming(Instant.now().plusSeconds(60)))).when(tournamentRepository).getTournamentByIsUpcomingTrue();
+
+        assertFalse(tournamentService.isRotationDue());
+    }
+
+    @Test
+    void participate_shouldThrowNoActiveTournamentException_WhenThereIsNoActiveTournament() throws ParticipationNotFoundException, UserNotFoundException, GroupNotFoundException {
+        doReturn(null).when(activeTournamentHolder).get();
 
         assertThrows(NoActiveTournamentException.class, () -> tournamentService.participate(1231));
 
-        verify(tournamentRepository, times(1)).getTournamentByIsActiveTrue();
-        verify(tournamentParticipationService, never()).existsByTournamentIdAndUserId(anyInt(), anyInt());
-        verify(userService, never()).get(anyInt());
-        verify(tournamentParticipationService, never()).getRankByTournamentIdAndUserId(anyInt(), anyInt());
-        verify(tournamentParticipationService, never()).isRewardClaimed(anyInt(), anyInt());
+        verify(activeTournamentHolder, times(1)).get();
+        verify(userService, never()).getForUpdate(anyInt());
+        verify(tournamentParticipationService, never()).getUnclaimedRewardRank(anyInt(), anyInt());
         verify(tournamentParticipationService, never()).participate(anyInt(), anyInt(), anyInt());
-        verify(tournamentParticipationService, never()).findAllByGroupIdOrderByUserScoreDesc(anyInt());
+        verify(tournamentLeaderboardService, never()).getLeaderboardIncluding(any());
     }
 
     @Test
     void participate_shouldThrowUserAlreadyJoinedTournamentException_WhenUserHasAlreadyJoinedActiveTournament() throws ParticipationNotFoundException, UserNotFoundException, GroupNotFoundException {
         int userId = 1;
         int tournamentId = 100;
+        int coins = TOURNAMENT_MINIMUM_ENTRY_COINS * 2;
+        int level = TOURNAMENT_MINIMUM_ENTRY_LEVEL + 2;
 
-        TournamentEntity tournament = generateTournament(tournamentId, false);
+        UserDto user = generateUserDto(userId, coins, level, tournamentId);
+        ActiveTournament tournament = generateActiveTournament(tournamentId);
 
-        doReturn(of(tournament)).when(tournamentRepository).getTournamentByIsActiveTrue();
-        doReturn(true).when(tournamentParticipationService).existsByTournamentIdAndUserId(tournamentId, userId);
+        doReturn(tournament).when(activeTournamentHolder).get();
+        doReturn(user).when(userService).getForUpdate(userId);
 
         assertThrows(UserAlreadyJoinedTournamentException.class, () -> tournamentService.participate(userId));
 
-        verify(tournamentRepository, times(1)).getTournamentByIsActiveTrue();
-        verify(tournamentParticipationService, times(1)).existsByTournamentIdAndUserId(tournamentId, userId);
-        verify(userService, never()).get(anyInt());
-        verify(tournamentParticipationService, never()).getRankByTournamentIdAndUserId(anyInt(), anyInt());
-        verify(tournamentParticipationService, never()).isRewardClaimed(anyInt(), anyInt());
+        verify(activeTournamentHolder, times(1)).get();
+        verify(userService, times(1)).getForUpdate(userId);
+        verify(tournamentParticipationService, never()).getUnclaimedRewardRank(anyInt(), anyInt());
+        verify(tournamentGroupService, never()).getGroupIdForUserLevel(anyInt(), anyInt());
         verify(tournamentParticipationService, never()).participate(anyInt(), anyInt(), anyInt());
-        verify(tournamentParticipationService, never()).findAllByGroupIdOrderByUserScoreDesc(anyInt());
+        verify(tournamentLeaderboardService, never()).getLeaderboardIncluding(any());
+    }
+
+    @Test
+    void participate_shouldThrowUserAlreadyJoinedTournamentException_WhenParticipationInsertConflicts() throws ParticipationNotFoundException, UserNotFoundException, GroupNotFoundException {
+        int userId = 1;
+        int groupId = 25;
+        int tournamentId = 100;
+        int coins = TOURNAMENT_MINIMUM_ENTRY_COINS * 2;
+        int level = TOURNAMENT_MINIMUM_ENTRY_LEVEL + 2;
+
+        UserDto user = generateUserDto(userId, coins, level, null);
+        ActiveTournament tournament = generateActiveTournament(tournamentId);
+
+        doReturn(tournament).when(activeTournamentHolder).get();
+        doReturn(user).when(userService).getForUpdate(userId);
+        doReturn(groupId).when(tournamentGroupService).getGroupIdForUserLevel(user.getLevel(), tournamentId);
+        doThrow(new UserAlreadyJoinedTournamentException()).when(tournamentParticipationService).participate(tournamentId, groupId, userId);
+
+        assertThrows(UserAlreadyJoinedTournamentException.class, () -> tournamentService.participate(userId));
+
+        verify(userService, times(1)).getForUpdate(userId);
+        verify(tournamentParticipationService, times(1)).participate(tournamentId, groupId, userId);
+        verify(tournamentLeaderboardService, never()).getLeaderboardIncluding(any());
     }
 
     @Test
@@ -116,21 +219,18 @@ public class TournamentServiceTests {
         Integer lastEnteredTournamentId = null;
 
         UserDto user = generateUserDto(userId, coins, level, lastEnteredTournamentId);
-        TournamentEntity tournament = generateTournament(tournamentId, false);
+        ActiveTournament tournament = generateActiveTournament(tournamentId);
 
-        doReturn(of(tournament)).when(tournamentRepository).getTournamentByIsActiveTrue();
-        doReturn(false).when(tournamentParticipationService).existsByTournamentIdAndUserId(tournamentId, userId);
-        doReturn(user).when(userService).get(userId);
+        doReturn(tournament).when(activeTournamentHolder).get();
+        doReturn(user).when(userService).getForUpdate(userId);
 
         assertThrows(RankTooLowForTournamentException.class, () -> tournamentService.participate(userId));
 
-        verify(tournamentRepository, times(1)).getTournamentByIsActiveTrue();
-        verify(tournamentParticipationService, times(1)).existsByTournamentIdAndUserId(tournamentId, userId);
-        verify(userService, times(1)).get(userId);
-        verify(tournamentParticipationService, never()).getRankByTournamentIdAndUserId(anyInt(), anyInt());
-        verify(tournamentParticipationService, never()).isRewardClaimed(anyInt(), anyInt());
+        verify(activeTournamentHolder, times(1)).get();
+        verify(userService, times(1)).getForUpdate(userId);
+        verify(tournamentParticipationService, never()).getUnclaimedRewardRank(anyInt(), anyInt());
         verify(tournamentParticipationService, never()).participate(anyInt(), anyInt(), anyInt());
-        verify(tournamentParticipationService, never()).findAllByGroupIdOrderByUserScoreDesc(anyInt());
+        verify(tournamentLeaderboardService, never()).getLeaderboardIncluding(any());
     }
 
     @Test
@@ -142,21 +242,18 @@ public class TournamentServiceTests {
         Integer lastEnteredTournamentId = null;
 
         UserDto user = generateUserDto(userId, coins, level, lastEnteredTournamentId);
-        TournamentEntity tournament = generateTournament(tournamentId, false);
+        ActiveTournament tournament = generateActiveTournament(tournamentId);
 
-        doReturn(of(tournament)).when(tournamentRepository).getTournamentByIsActiveTrue();
-        doReturn(false).when(tournamentParticipationService).existsByTournamentIdAndUserId(tournamentId, userId);
-        doReturn(user).when(userService).get(userId);
+        doReturn(tournament).when(activeTournamentHolder).get();
+        doReturn(user).when(userService).getForUpdate(userId);
 
         assertThrows(NotEnoughCoinsForTournamentException.class, () -> tournamentService.participate(userId));
 
-        verify(tournamentRepository, times(1)).getTournamentByIsActiveTrue();
-        verify(tournamentParticipationService, times(1)).existsByTournamentIdAndUserId(tournamentId, userId);
-        verify(userService, times(1)).get(userId);
-        verify(tournamentParticipationService, never()).getRankByTournamentIdAndUserId(anyInt(), anyInt());
-        verify(tournamentParticipationService, never()).isRewardClaimed(anyInt(), anyInt());
+        verify(activeTournamentHolder, times(1)).get();
+        verify(userService, times(1)).getForUpdate(userId);
+        verify(tournamentParticipationService, never()).getUnclaimedRewardRank(anyInt(), anyInt());
         verify(tournamentParticipationService, never()).participate(anyInt(), anyInt(), anyInt());
-        verify(tournamentParticipationService, never()).findAllByGroupIdOrderByUserScoreDesc(anyInt());
+        verify(tournamentLeaderboardService, never()).getLeaderboardIncluding(any());
     }
 
     @Test
@@ -169,23 +266,19 @@ public class TournamentServiceTests {
         int lastEnteredTournamentId = 282;
 
         UserDto user = generateUserDto(userId, coins, level, lastEnteredTournamentId);
-        TournamentEntity tournament = generateTournament(tournamentId, false);
+        ActiveTournament tournament = generateActiveTournament(tournamentId);
 
-        doReturn(of(tournament)).when(tournamentRepository).getTournamentByIsActiveTrue();
-        doReturn(false).when(tournamentParticipationService).existsByTournamentIdAndUserId(tournamentId, userId);
-        doReturn(user).when(userService).get(userId);
-        doReturn(lastEnteredTournamentRank).when(tournamentParticipationService).getRankByTournamentIdAndUserId(lastEnteredTournamentId, userId);
-        doReturn(false).when(tournamentParticipationService).isRewardClaimed(lastEnteredTournamentId, userId);
+        doReturn(tournament).when(activeTournamentHolder).get();
+        doReturn(user).when(userService).getForUpdate(userId);
+        doReturn(OptionalInt.of(lastEnteredTournamentRank)).when(tournamentParticipationService).getUnclaimedRewardRank(lastEnteredTournamentId, userId);
 
         assertThrows(LastEarnedRewardNotClaimedException.class, () -> tournamentService.participate(userId));
 
-        verify(tournamentRepository, times(1)).getTournamentByIsActiveTrue();
-        verify(tournamentParticipationService, times(1)).existsByTournamentIdAndUserId(tournamentId, userId);
-        verify(userService, times(1)).get(userId);
-        verify(tournamentParticipationService, times(1)).getRankByTournamentIdAndUserId(lastEnteredTournamentId, userId);
-        verify(tournamentParticipationService, times(1)).isRewardClaimed(lastEnteredTournamentId, userId);
+        verify(activeTournamentHolder, times(1)).get();
+        verify(userService, times(1)).getForUpdate(userId);
+        verify(tournamentParticipationService, times(1)).getUnclaimedRewardRank(lastEnteredTournamentId, userId);
         verify(tournamentParticipationService, never()).participate(anyInt(), anyInt(), anyInt());
-        verify(tournamentParticipationService, never()).findAllByGroupIdOrderByUserScoreDesc(anyInt());
+        verify(tournamentLeaderboardService, never()).getLeaderboardIncluding(any());
     }
 
     @Test
@@ -201,15 +294,14 @@ public class TournamentServiceTests {
         Integer lastEnteredTournamentId = null;
 
         UserDto user = generateUserDto(userId, coins, level, lastEnteredTournamentId);
-        TournamentEntity tournament = generateTournament(tournamentId, false);
+        ActiveTournament tournament = generateActiveTournament(tournamentId);
         TournamentParticipationEntity participation = generateParticipation(participationId, groupId, tournamentId, userId, isRewardClaimed, userScore);
 
-        doReturn(of(tournament)).when(tournamentRepository).getTournamentByIsActiveTrue();
-        doReturn(false).when(tournamentParticipationService).existsByTournamentIdAndUserId(tournamentId, userId);
-        doReturn(user).when(userService).get(userId);
+        doReturn(tournament).when(activeTournamentHolder).get();
+        doReturn(user).when(userService).getForUpdate(userId);
         doReturn(groupId).when(tournamentGroupService).getGroupIdForUserLevel(user.getLevel(), tournamentId);
-        doNothing().when(tournamentParticipationService).participate(tournamentId, groupId, userId);
-        doReturn(Collections.singletonList(new TournamentParticipationDto(participation))).when(tournamentParticipationService).findAllByGroupIdOrderByUserScoreDesc(groupId);
+        doReturn(new TournamentParticipationDto(participation)).when(tournamentParticipationService).participate(tournamentId, groupId, userId);
+        doReturn(Collections.singletonList(new TournamentParticipationDto(participation))).when(tournamentLeaderboardService).getLeaderboardIncluding(argThat(joined -> joined.getId() == participationId));
 
         GetLeaderboardResponse actualLeaderboard = tournamentService.participate(userId);
 
@@ -220,13 +312,12 @@ public class TournamentServiceTests {
         assertEquals(isRewardClaimed, actualLeaderboard.participations.get(0).isRewardClaimed());
         assertEquals(userScore, actualLeaderboard.participations.get(0).getUserScore());
 
-        verify(tournamentRepository, times(1)).getTournamentByIsActiveTrue();
-        verify(tournamentParticipationService, times(1)).existsByTournamentIdAndUserId(tournamentId, userId);
-        verify(userService, times(1)).get(userId);
-        verify(tournamentParticipationService, never()).getRankByTournamentIdAndUserId(anyInt(), anyInt());
-        verify(tournamentParticipationService, never()).isRewardClaimed(anyInt(), anyInt());
+        verify(activeTournamentHolder, times(1)).get();
+        verify(userService, times(1)).getForUpdate(userId);
+        verify(tournamentParticipationService, never()).getUnclaimedRewardRank(anyInt(), anyInt());
         verify(tournamentParticipationService, times(1)).participate(tournamentId, groupId, userId);
-        verify(tournamentParticipationService, times(1)).findAllByGroupIdOrderByUserScoreDesc(groupId);
+        verify(tournamentLeaderboardService, times(1)).getLeaderboardIncluding(argThat(joined -> joined.getId() == participationId));
+        verify(tournamentParticipationService, never()).findAllByGroupIdOrderByUserScoreDesc(anyInt());
     }
 
     @Test
@@ -242,16 +333,15 @@ public class TournamentServiceTests {
         int lastEnteredTournamentId = 323;
 
         UserDto user = generateUserDto(userId, coins, level, lastEnteredTournamentId);
-        TournamentEntity tournament = generateTournament(tournamentId, false);
+        ActiveTournament tournament = generateActiveTournament(tournamentId);
         TournamentParticipationEntity participation = generateParticipation(participationId, groupId, tournamentId, userId, isRewardClaimed, userScore);
 
-        doReturn(of(tournament)).when(tournamentRepository).getTournamentByIsActiveTrue();
-        doReturn(false).when(tournamentParticipationService).existsByTournamentIdAndUserId(tournamentId, userId);
-        doReturn(user).when(userService).get(userId);
-        doReturn(TOURNAMENT_LAST_REWARD_RANK * 2).when(tournamentParticipationService).getRankByTournamentIdAndUserId(lastEnteredTournamentId, userId);
+        doReturn(tournament).when(activeTournamentHolder).get();
+        doReturn(user).when(userService).getForUpdate(userId);
+        doReturn(OptionalInt.of(TOURNAMENT_LAST_REWARD_RANK * 2)).when(tournamentParticipationService).getUnclaimedRewardRank(lastEnteredTournamentId, userId);
         doReturn(groupId).when(tournamentGroupService).getGroupIdForUserLevel(user.getLevel(), tournamentId);
-        doNothing().when(tournamentParticipationService).participate(tournamentId, groupId, userId);
-        doReturn(Collections.singletonList(new TournamentParticipationDto(participation))).when(tournamentParticipationService).findAllByGroupIdOrderByUserScoreDesc(groupId);
+        doReturn(new TournamentParticipationDto(participation)).when(tournamentParticipationService).participate(tournamentId, groupId, userId);
+        doReturn(Collections.singletonList(new TournamentParticipationDto(participation))).when(tournamentLeaderboardService).getLeaderboardIncluding(argThat(joined -> joined.getId() == participationId));
 
         GetLeaderboardResponse actualLeaderboard = tournamentService.participate(userId);
 
@@ -262,13 +352,12 @@ public class TournamentServiceTests {
         assertEquals(isRewardClaimed, actualLeaderboard.participations.get(0).isRewardClaimed());
         assertEquals(userScore, actualLeaderboard.participations.get(0).getUserScore());
 
-        verify(tournamentRepository, times(1)).getTournamentByIsActiveTrue();
-        verify(tournamentParticipationService, times(1)).existsByTournamentIdAndUserId(tournamentId, userId);
-        verify(userService, times(1)).get(userId);
-        verify(tournamentParticipationService, times(1)).getRankByTournamentIdAndUserId(lastEnteredTournamentId, userId);
-        verify(tournamentParticipationService, never()).isRewardClaimed(anyInt(), anyInt());
+        verify(activeTournamentHolder, times(1)).get();
+        verify(userService, times(1)).getForUpdate(userId);
+        verify(tournamentParticipationService, times(1)).getUnclaimedRewardRank(lastEnteredTournamentId, userId);
         verify(tournamentParticipationService, times(1)).participate(tournamentId, groupId, userId);
-        verify(tournamentParticipationService, times(1)).findAllByGroupIdOrderByUserScoreDesc(groupId);
+        verify(tournamentLeaderboardService, times(1)).getLeaderboardIncluding(argThat(joined -> joined.getId() == participationId));
+        verify(tournamentParticipationService, never()).findAllByGroupIdOrderByUserScoreDesc(anyInt());
     }
 
     @Test
@@ -287,11 +376,40 @@ public class TournamentServiceTests {
     }
 
     @Test
-    void isActive_shouldReturnIsActiveFalse_WhenTournamentIsNull() {
+    void getUserRanks_shouldThrowRankBatchTooLargeException_WhenTooManyUsersAreRequested() {
+        List<Integer> userIds = IntStream.rangeClosed(1, 101).boxed().collect(Collectors.toList());
+
+        assertThrows(RankBatchTooLargeException.class, () -> tournamentService.getUserRanks(332, userIds));
+
+        verify(tournamentParticipationService, never()).getRanksByTournamentIdAndUserIds(anyInt(), any());
+    }
+
+    @Test
+    void writeTournamentLeaderboard_shouldStreamLeaderboardOfTournament() {
+        int tournamentId = 332;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        tournamentService.writeTournamentLeaderboard(tournamentId, true, out);
+
+        verify(tournamentLeaderboardStreamer, times(1)).write(tournamentId, true, out);
+        verify(tournamentParticipationService, never()).findAllByGroupIdOrderByUserScoreDesc(anyInt());
+    }
+
+    @Test
+    void isTournamentOver_shouldThrowTournamentNotFoundException_WhenTournamentDoesNotExist() {
         int tournamentId = 332;
 
         doReturn(empty()).when(tournamentRepository).findById(tournamentId);
 
+        assertThrows(TournamentNotFoundException.class, () -> tournamentService.isTournamentOver(tournamentId));
+    }
+
+    @Test
+    void isActive_shouldReturnIsActiveFalse_WhenTournamentIsNull() {
+        int tournamentId = 332;
+
+        doReturn(null).when(activeTournamentHolder).get();
+
         boolean actualIsActive = tournamentService.isActive(tournamentId);
 
         assertFalse(actualIsActive);
@@ -301,9 +419,9 @@ public class TournamentServiceTests {
     void isActive_shouldReturnIsActiveFalse_WhenTournamentIsNotActive() {
         int tournamentId = 332;
 
-        TournamentEntity tournament = generateTournament(tournamentId, false);
+        ActiveTournament tournament = generateActiveTournament(tournamentId + 1);
 
-        doReturn(of(tournament)).when(tournamentRepository).findById(tournamentId);
+        doReturn(tournament).when(activeTournamentHolder).get();
 
         boolean actualIsActive = tournamentService.isActive(tournamentId);
 
@@ -314,9 +432,9 @@ public class TournamentServiceTests {
     void isActive_shouldReturnIsActiveTrue_WhenTournamentIsNotNullAndIsActive() {
         int tournamentId = 332;
 
-        TournamentEntity tournament = generateTournament(tournamentId, true);
+        ActiveTournament tournament = generateActiveTournament(tournamentId);
 
-        doReturn(of(tournament)).when(tournamentRepository).findById(tournamentId);
+        doReturn(tournament).when(activeTournamentHolder).get();
 
         boolean actualIsActive = tournamentService.isActive(tournamentId);
 
@@ -324,163 +442,199 @@ public class TournamentServiceTests {
     }
 
     @Test
-    void deactivatePreviousTournament_shouldReturn_WhenActiveTournamentDoesNotExist() {
+    void rotate_shouldActivateNewTournament_WhenNothingWasPrepared() {
         doReturn(empty()).when(tournamentRepository).getTournamentByIsActiveTrue();
+        doReturn(empty()).when(tournamentRepository).getTournamentByIsUpcomingTrue();
+        doAnswer(returnsFirstArg()).when(tournamentRepository).save(any(TournamentEntity.class));
 
-        tournamentService.deactivatePreviousTournament();
+        OptionalInt actualTournamentId = tournamentService.rotate();
 
-        verify(tournamentRepository, times(1)).getTournamentByIsActiveTrue();
+        assertFalse(actualTournamentId.isPresent());
+
+        verify(tournamentRepository, times(1)).save(argThat((TournamentEntity tournament) -> tournament.isActive() && !tournament.isUpcoming()));
+        verify(activeTournamentHolder, times(1)).rotate(argThat(TournamentEntity::isActive));
+        verify(tournamentSettlementService, never()).settle(anyInt());
+    }
+
+    @Test
+    void rotate_shouldHandOverToPreparedTournament_WhenActiveTournamentExists() {
+        int tournamentId = 9421;
+        int nextTournamentId = 9422;
+
+        TournamentEntity nextTournament = TournamentEntity.upcoming(Instant.now());
+        nextTournament.setId(nextTournamentId);
+
+        doReturn(of(generateTournament(tournamentId, true))).when(tournamentRepository).getTournamentByIsActiveTrue();
+        doReturn(of(nextTournament)).when(tournamentRepository).getTournamentByIsUpcomingTrue();
+        doAnswer(returnsFirstArg()).when(tournamentRepository).save(any(TournamentEntity.class));
+
+        OptionalInt actualTournamentId = tournamentService.rotate();
+
+        assertEquals(tournamentId, actualTournamentId.getAsInt());
+
+        verify(tournamentRepository, times(1)).save(argThat((TournamentEntity tournament) -> !tournament.isActive() && tournament.getEndedAt() != null && tournament.getId() == tournamentId));
+        verify(tournamentRepository, times(1)).save(argThat((TournamentEntity tournament) -> tournament.isActive() && !tournament.isUpcoming() && tournament.getId() == nextTournamentId));
+        verify(activeTournamentHolder, times(1)).rotate(nextTournament);
+        verify(tournamentSettlementService, never()).settle(anyInt());
+    }
+
+    @Test
+    void settleTournament_shouldSettleAndMarkTournamentSettled() {
+        int tournamentId = 9421;
+
+        tournamentService.settleTournament(tournamentId);
+
+        verify(tournamentParticipationService, times(1)).flushPendingTournamentScores();
+        verify(tournamentSettlementService, times(1)).settle(tournamentId);
+        verify(tournamentRepository, times(1)).markSettled(tournamentId);
         verify(tournamentRepository, never()).save(any(TournamentEntity.class));
+        verify(tournamentLeaderboardService, times(1)).freezeTournament(tournamentId);
     }
 
     @Test
-    void deactivatePreviousTournament_shouldDeactivatePrevious_WhenActiveTournamentExists() {
+    void settleTournament_shouldLeaveTournamentUnsettled_WhenSettlementFails() {
         int tournamentId = 9421;
 
-        doReturn(of(generateTournament(9421, true))).when(tournamentRepository).getTournamentByIsActiveTrue();
-        doAnswer(returnsFirstArg()).when(tournamentRepository).save(argThat((TournamentEntity tournament) -> !tournament.isActive() && tournament.getId() == tournamentId));
+        doThrow(new IllegalStateException()).when(tournamentSettlementService).settle(tournamentId);
 
-        tournamentService.deactivatePreviousTournament();
+        assertThrows(IllegalStateException.class, () -> tournamentService.settleTournament(tournamentId));
 
-        verify(tournamentRepository, times(1)).getTournamentByIsActiveTrue();
-        verify(tournamentRepository, times(1)).save(argThat((TournamentEntity tournament) -> !tournament.isActive() && tournament.getId() == tournamentId));
+        verify(tournamentRepository, never()).markSettled(tournamentId);
+        verify(tournamentLeaderboardService, never()).freezeTournament(tournamentId);
     }
 
     @Test
-    void incrementTournamentScore_shouldReturn_WhenTournamentIsNotFound() throws ParticipationNotFoundException {
+    void evictTournament_shouldFlushBufferedScoresAndEvictGroupsAndLeaderboards() {
+        int tournamentId = 9421;
+
+        tournamentService.evictTournament(tournamentId);
+
+        verify(tournamentParticipationService, times(1)).flushPendingTournamentScores();
+        verify(tournamentGroupService, times(1)).evictTournament(tournamentId);
+        verify(tournamentLeaderboardService, times(1)).evictTournament(tournamentId);
+    }
+
+    @Test
+    void creditUnclaimedRewards_shouldCreditRewardsAndRefreezeLeaderboards() {
+        int tournamentId = 9421;
+
+        tournamentService.creditUnclaimedRewards(tournamentId);
+
+        verify(tournamentSettlementService, times(1)).creditUnclaimedRewards(tournamentId);
+        verify(tournamentLeaderboardService, times(1)).freezeTournament(tournamentId);
+    }
+
+    @Test
+    void incrementTournamentScore_shouldReturn_WhenTournamentDoesNotAcceptScores() throws ParticipationNotFoundException {
         int userId = 12;
         int tournamentId = 332;
 
-        doReturn(empty()).when(tournamentRepository).findById(tournamentId);
+        doReturn(false).when(activeTournamentHolder).acceptsScoresFor(tournamentId);
 
-        tournamentService.incrementTournamentScore(tournamentId, userId);
+        tournamentService.incrementTournamentScore(tournamentId, userId, 1);
 
-        verify(tournamentRepository, times(1)).findById(tournamentId);
-        verify(tournamentParticipationService, never()).incrementTournamentScore(anyInt(), anyInt());
+        verify(activeTournamentHolder, times(1)).acceptsScoresFor(tournamentId);
+        verify(tournamentParticipationService, never()).incrementTournamentScore(anyInt(), anyInt(), anyInt());
     }
 
     @Test
-    void incrementTournamentScore_shouldReturn_WhenTournamentIsNotActive() throws ParticipationNotFoundException {
+    void incrementTournamentScore_shouldIncrementTournamentScore_WhenTournamentAcceptsScores() throws ParticipationNotFoundException {
         int userId = 12;
         int tournamentId = 332;
 
-        TournamentEntity tournament = generateTournament(tournamentId, false);
-
-        doReturn(of(tournament)).when(tournamentRepository).findById(tournamentId);
+        doReturn(true).when(activeTournamentHolder).acceptsScoresFor(tournamentId);
+        doNothing().when(tournamentParticipationService).incrementTournamentScore(tournamentId, userId, 1);
 
-        tournamentService.incrementTournamentScore(tournamentId, userId);
+        tournamentService.incrementTournamentScore(tournamentId, userId, 1);
 
-        verify(tournamentRepository, times(1)).findById(tournamentId);
-        verify(tournamentParticipationService, never()).incrementTournamentScore(anyInt(), anyInt());
+        verify(activeTournamentHolder, times(1)).acceptsScoresFor(tournamentId);
+        verify(tournamentParticipationService, times(1)).incrementTournamentScore(tournamentId, userId, 1);
     }
 
     @Test
-    void incrementTournamentScore_shouldIncrementTournamentScore_WhenTournamentExistsAndActive() throws ParticipationNotFoundException {
+    void claimReward_shouldThrowOngoingTournamentClaimedException_WhenClaimedTournamentIsActive() throws ParticipationNotFoundException, RewardAlreadyClaimedException {
         int userId = 12;
         int tournamentId = 332;
 
-        TournamentEntity tournament = generateTournament(tournamentId, true);
+        ActiveTournament tournament = generateActiveTournament(tournamentId);
 
-        doReturn(of(tournament)).when(tournamentRepository).findById(tournamentId);
-        doNothing().when(tournamentParticipationService).incrementTournamentScore(tournamentId, userId);
+        doReturn(tournament).when(activeTournamentHolder).get();
 
-        tournamentService.incrementTournamentScore(tournamentId, userId);
+        assertThrows(OngoingTournamentClaimedException.class, () -> tournamentService.claimReward(tournamentId, userId));
 
-        verify(tournamentRepository, times(1)).findById(tournamentId);
-        verify(tournamentParticipationService, times(1)).incrementTournamentScore(tournamentId, userId);
+        verify(activeTournamentHolder, times(1)).get();
+        verify(tournamentParticipationService, never()).getUnclaimedReward(anyInt(), anyInt());
+        verify(tournamentParticipationService, never()).claimReward(anyInt(), anyInt());
+        verify(userService, never()).updateAfterRewardClaim(anyInt(), anyInt());
     }
 
     @Test
-    void claimReward_shouldThrowOngoingTournamentClaimedException_WhenClaimedTournamentIsActive() throws ParticipationNotFoundException, GroupNotFoundException {
+    void claimReward_shouldThrowOngoingTournamentClaimedException_WhenClaimedTournamentIsInGracePeriod() throws ParticipationNotFoundException, RewardAlreadyClaimedException {
         int userId = 12;
         int tournamentId = 332;
 
-        TournamentEntity tournament = generateTournament(tournamentId, true);
-
-        doReturn(of(tournament)).when(tournamentRepository).findById(tournamentId);
+        doReturn(generateActiveTournament(tournamentId + 1)).when(activeTournamentHolder).get();
+        doReturn(true).when(activeTournamentHolder).acceptsScoresFor(tournamentId);
 
         assertThrows(OngoingTournamentClaimedException.class, () -> tournamentService.claimReward(tournamentId, userId));
 
-        verify(tournamentRepository, times(1)).findById(tournamentId);
-        verify(tournamentParticipationService, never()).isRewardClaimed(anyInt(), anyInt());
-        verify(tournamentParticipationService, never()).getRankByTournamentIdAndUserId(anyInt(), anyInt());
-        verify(tournamentParticipationService, never()).claimReward(anyInt(), anyInt());
+        verify(tournamentParticipationService, never()).getUnclaimedReward(anyInt(), anyInt());
         verify(userService, never()).updateAfterRewardClaim(anyInt(), anyInt());
     }
 
     @Test
-    void claimReward_shouldThrowRewardAlreadyClaimedException_WhenTournamentIsAlreadyClaimed() throws ParticipationNotFoundException, GroupNotFoundException {
+    void claimReward_shouldThrowRewardAlreadyClaimedException_WhenTournamentIsAlreadyClaimed() throws ParticipationNotFoundException, RewardAlreadyClaimedException {
         int userId = 12;
         int tournamentId = 332;
 
-        TournamentEntity tournament = generateTournament(tournamentId, false);
+        ActiveTournament tournament = generateActiveTournament(tournamentId + 1);
 
-        doReturn(of(tournament)).when(tournamentRepository).findById(tournamentId);
-        doReturn(true).when(tournamentParticipationService).isRewardClaimed(tournamentId, userId);
+        doReturn(tournament).when(activeTournamentHolder).get();
+        doThrow(new RewardAlreadyClaimedException()).when(tournamentParticipationService).getUnclaimedReward(tournamentId, userId);
 
         assertThrows(RewardAlreadyClaimedException.class, () -> tournamentService.claimReward(tournamentId, userId));
 
-        verify(tournamentRepository, times(1)).findById(tournamentId);
-        verify(tournamentParticipationService, times(1)).isRewardClaimed(tournamentId, userId);
-        verify(tournamentParticipationService, never()).getRankByTournamentIdAndUserId(anyInt(), anyInt());
+        verify(activeTournamentHolder, times(1)).get();
+        verify(tournamentParticipationService, times(1)).getUnclaimedReward(tournamentId, userId);
         verify(tournamentParticipationService, never()).claimReward(anyInt(), anyInt());
         verify(userService, never()).updateAfterRewardClaim(anyInt(), anyInt());
     }
 
     @Test
-    void claimReward_shouldThrowNoRewardEarnedException_WhenTournamentIsInactiveAndNotClaimed() throws ParticipationNotFoundException, RewardAlreadyClaimedException, OngoingTournamentClaimedException, NoRewardEarnedException, GroupNotFoundException {
+    void claimReward_shouldThrowNoRewardEarnedException_WhenTournamentIsInactiveAndNotClaimed() throws ParticipationNotFoundException, RewardAlreadyClaimedException {
         int userId = 12;
         int tournamentId = 332;
 
-        TournamentEntity tournament = generateTournament(tournamentId, false);
+        ActiveTournament tournament = generateActiveTournament(tournamentId + 1);
 
-        doReturn(of(tournament)).when(tournamentRepository).findById(tournamentId);
-        doReturn(false).when(tournamentParticipationService).isRewardClaimed(tournamentId, userId);
-        doReturn(TOURNAMENT_LAST_REWARD_RANK * 2).when(tournamentParticipationService).getRankByTournamentIdAndUserId(tournamentId, userId);
+        doReturn(tournament).when(activeTournamentHolder).get();
+        doReturn(0).when(tournamentParticipationService).getUnclaimedReward(tournamentId, userId);
 
         assertThrows(NoRewardEarnedException.class, () -> tournamentService.claimReward(tournamentId, userId));
 
-        verify(tournamentRepository, times(1)).findById(tournamentId);
-        verify(tournamentParticipationService, times(1)).isRewardClaimed(tournamentId, userId);
-        verify(tournamentParticipationService, times(1)).getRankByTournamentIdAndUserId(tournamentId, userId);
+        verify(activeTournamentHolder, times(1)).get();
+        verify(tournamentParticipationService, times(1)).getUnclaimedReward(tournamentId, userId);
         verify(tournamentParticipationService, never()).claimReward(anyInt(), anyInt());
         verify(userService, never()).updateAfterRewardClaim(anyInt(), anyInt());
     }
 
     @ParameterizedTest
-    @MethodSource("ranksToRewards")
-    void claimReward_shouldClaimReward_WhenTournamentIsInactiveAndNotClaimed(int rank, int reward) throws ParticipationNotFoundException, RewardAlreadyClaimedException, OngoingTournamentClaimedException, NoRewardEarnedException, GroupNotFoundException {
+    @ValueSource(ints = {TOURNAMENT_FIRST_RANK_REWARD, TOURNAMENT_SECOND_RANK_REWARD, TOURNAMENT_THIRD_RANK_REWARD, TOURNAMENT_NON_PODIUM_REWARD})
+    void claimReward_shouldClaimReward_WhenTournamentIsInactiveAndNotClaimed(int reward) throws ParticipationNotFoundException, RewardAlreadyClaimedException, OngoingTournamentClaimedException, NoRewardEarnedException, GroupNotFoundException {
         int userId = 12;
         int tournamentId = 332;
 
-        TournamentEntity tournament = generateTournament(tournamentId, false);
+        ActiveTournament tournament = generateActiveTournament(tournamentId + 1);
 
-        doReturn(of(tournament)).when(tournamentRepository).findById(tournamentId);
-        doReturn(false).when(tournamentParticipationService).isRewardClaimed(tournamentId, userId);
-        doReturn(rank).when(tournamentParticipationService).getRankByTournamentIdAndUserId(tournamentId, userId);
+        doReturn(tournament).when(activeTournamentHolder).get();
+        doReturn(reward).when(tournamentParticipationService).getUnclaimedReward(tournamentId, userId);
         doNothing().when(tournamentParticipationService).claimReward(tournamentId, userId);
 
         tournamentService.claimReward(tournamentId, userId);
 
-        verify(tournamentRepository, times(1)).findById(tournamentId);
-        verify(tournamentParticipationService, times(1)).isRewardClaimed(tournamentId, userId);
-        verify(tournamentParticipationService, times(1)).getRankByTournamentIdAndUserId(tournamentId, userId);
+        verify(activeTournamentHolder, times(1)).get();
+        verify(tournamentParticipationService, times(1)).getUnclaimedReward(tournamentId, userId);
         verify(tournamentParticipationService, times(1)).claimReward(tournamentId, userId);
         verify(userService, times(1)).updateAfterRewardClaim(userId, reward);
     }
-
-    private static Stream<Arguments> ranksToRewards() {
-        return Stream.of(
-                arguments(1, TOURNAMENT_FIRST_RANK_REWARD),
-                arguments(2, TOURNAMENT_SECOND_RANK_REWARD),
-                arguments(3, TOURNAMENT_THIRD_RANK_REWARD),
-                arguments(4, TOURNAMENT_NON_PODIUM_REWARD),
-                arguments(5, TOURNAMENT_NON_PODIUM_REWARD),
-                arguments(6, TOURNAMENT_NON_PODIUM_REWARD),
-                arguments(7, TOURNAMENT_NON_PODIUM_REWARD),
-                arguments(8, TOURNAMENT_NON_PODIUM_REWARD),
-                arguments(9, TOURNAMENT_NON_PODIUM_REWARD),
-                arguments(10, TOURNAMENT_NON_PODIUM_REWARD)
-        );
-    }
 }
@@ -0,0 +1,211 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.settlement.TournamentRewards;
+import com.example.rowmatch.tournament.settlement.TournamentSettlementService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TournamentSettlementServiceTests {
+
+    @Mock
+    JdbcTemplate jdbcTemplate;
+
+    @Mock
+    TransactionTemplate transactionTemplate;
+
+    TournamentSettlementService tournamentSettlementService;
+
+    private static final int TOURNAMENT_FIRST_RANK_REWARD = 10000;
+    private static final int TOURNAMENT_SECOND_RANK_REWARD = 5000;
+    private static final int TOURNAMENT_THIRD_RANK_REWARD = 3000;
+    private static final int TOURNAMENT_NON_PODIUM_REWARD = 1000;
+
+    @BeforeEach
+    void setUp() {
+        tournamentSettlementService = new TournamentSettlementService(jdbcTemplate, transactionTemplate, 2, 2);
+
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null)).when(transactionTemplate).execute(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        tournamentSettlementService.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void settle_shouldPersistFinalRankAndRewardOfEveryParticipation_RestartingRankPerGroup() {
+        int tournamentId = 100;
+
+        doAnswer(rankedParticipations(new int[]{5, 25}, new int[]{3, 25}, new int[]{7, 25}, new int[]{9, 26}))
+                .when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        tournamentSettlementService.settle(tournamentId);
+
+        ArgumentCaptor<List<Object[]>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), chunks.capture());
+
+        List<Object[]> rows = new ArrayList<>();
+        chunks.getAllValues().forEach(rows::addAll);
+        rows.sort(Comparator.comparingInt(row -> (int) row[2]));
+
+        assertEquals(4, rows.size());
+        assertArrayEquals(new Object[]{2, TOURNAMENT_SECOND_RANK_REWARD, 3}, rows.get(0));
+        assertArrayEquals(new Object[]{1, TOURNAMENT_FIRST_RANK_REWARD, 5}, rows.get(1));
+        assertArrayEquals(new Object[]{3, TOURNAMENT_THIRD_RANK_REWARD, 7}, rows.get(2));
+        assertArrayEquals(new Object[]{1, TOURNAMENT_FIRST_RANK_REWARD, 9}, rows.get(3));
+    }
+
+    @Test
+    void settle_shouldSettleRemainingChunksAndThrow_WhenOneChunkFails() {
+        int tournamentId = 100;
+
+        doAnswer(rankedParticipations(new int[]{5, 25}, new int[]{3, 25}, new int[]{9, 26}))
+                .when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        doThrow(new IllegalArgumentException()).doReturn(new int[]{1}).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> tournamentSettlementService.settle(tournamentId));
+
+        assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void settle_shouldThrowAndKeepInterruptFlag_WhenInterruptedWhileWaitingForChunks() {
+        int tournamentId = 100;
+
+        doAnswer(rankedParticipations(new int[]{5, 25}, new int[]{3, 25}))
+                .when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        // the writes may be cancelled before they start
+        lenient().doAnswer(invocation -> {
+            Thread.sleep(200);
+            return new int[]{1};
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IllegalStateException.class, () -> tournamentSettlementService.settle(tournamentId));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void creditUnclaimedRewards_shouldCreditOnlyRewardsItMarkedClaimed_InChunks() {
+        int tournamentId = 100;
+
+        doAnswer(unclaimedRewards(new int[]{1, 11, TOURNAMENT_FIRST_RANK_REWARD}, new int[]{2, 12, TOURNAMENT_SECOND_RANK_REWARD}))
+                .doAnswer(unclaimedRewards(new int[]{5, 9, TOURNAMENT_THIRD_RANK_REWARD}))
+                .doAnswer(unclaimedRewards())
+                .when(jdbcTemplate).query(anyString(), any(RowMapper.class), eq(tournamentId), anyInt(), eq(2));
+
+        doReturn(new int[]{1, 0}).doReturn(new int[]{1}).when(jdbcTemplate).batchUpdate(startsWith("UPDATE tournament_participations"), anyList());
+
+        int creditedCount = tournamentSettlementService.creditUnclaimedRewards(tournamentId);
+
+        assertEquals(2, creditedCount);
+
+        ArgumentCaptor<List<Object[]>> credits = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("UPDATE users"), credits.capture());
+
+        assertEquals(1, credits.getAllValues().get(0).size());
+        assertArrayEquals(new Object[]{TOURNAMENT_FIRST_RANK_REWARD, 11}, credits.getAllValues().get(0).get(0));
+        assertArrayEquals(new Object[]{TOURNAMENT_THIRD_RANK_REWARD, 9}, credits.getAllValues().get(1).get(0));
+
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowMapper.class), eq(tournamentId), eq(0), eq(2));
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowMapper.class), eq(tournamentId), eq(2), eq(2));
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowMapper.class), eq(tournamentId), eq(5), eq(2));
+    }
+
+    @ParameterizedTest
+    @MethodSource("ranksToRewards")
+    void getRewardForRank_shouldReturnRewardOfRank(int rank, int reward) {
+        assertEquals(reward, TournamentRewards.getRewardForRank(rank));
+    }
+
+    // feeds (id, groupId) rows, already in ranking order, to the service's scan
+    private static Answer<Void> rankedParticipations(int[]... rows) {
+        return invocation -> {
+            RowCallbackHandler scan = invocation.getArgument(1);
+
+            for (int[] row : rows) {
+                ResultSet resultSet = mock(ResultSet.class);
+                doReturn(row[0]).when(resultSet).getInt("id");
+                doReturn(row[1]).when(resultSet).getInt("groupId");
+
+                scan.processRow(resultSet);
+            }
+
+            return null;
+        };
+    }
+
+    // maps (id, userId, reward) rows through the service's own row mapper
+    private static Answer<List<?>> unclaimedRewards(int[]... rows) {
+        return invocation -> {
+            RowMapper<?> rowMapper = invocation.getArgument(1);
+            List<Object> rewards = new ArrayList<>();
+
+            for (int i = 0; i < rows.length; i++) {
+                ResultSet resultSet = mock(ResultSet.class);
+                doReturn(rows[i][0]).when(resultSet).getInt("id");
+                doReturn(rows[i][1]).when(resultSet).getInt("userId");
+                doReturn(rows[i][2]).when(resultSet).getInt("reward");
+
+                rewards.add(rowMapper.mapRow(resultSet, i));
+            }
+
+            return rewards;
+        };
+    }
+
+    private static Stream<Arguments> ranksToRewards() {
+        return Stream.of(
+                arguments(1, TOURNAMENT_FIRST_RANK_REWARD),
+                arguments(2, TOURNAMENT_SECOND_RANK_REWARD),
+                arguments(3, TOURNAMENT_THIRD_RANK_REWARD),
+                arguments(4, TOURNAMENT_NON_PODIUM_REWARD),
+                arguments(5, TOURNAMENT_NON_PODIUM_REWARD),
+                arguments(6, TOURNAMENT_NON_PODIUM_REWARD),
+                arguments(7, TOURNAMENT_NON_PODIUM_REWARD),
+                arguments(8, TOURNAMENT_NON_PODIUM_REWARD),
+                arguments(9, TOURNAMENT_NON_PODIUM_REWARD),
+                arguments(10, TOURNAMENT_NON_PODIUM_REWARD),
+                arguments(11, 0)
+        );
+    }
+}
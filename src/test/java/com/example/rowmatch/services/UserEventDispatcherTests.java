@@ -0,0 +1,118 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.user.UserEventDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserEventDispatcherTests {
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    UserEventDispatcher userEventDispatcher;
+
+    private final CountDownLatch releaseWorker = new CountDownLatch(1);
+
+    @AfterEach
+    void stopDispatcher() throws InterruptedException {
+        releaseWorker.countDown();
+        userEventDispatcher.shutdown();
+    }
+
+    @Test
+    void dispatch_shouldRunOnCallingThread_WhenSynchronous() {
+        userEventDispatcher = new UserEventDispatcher(transactionManager, false, 4, 10, "block");
+
+        AtomicReference<Thread> handledOn = new AtomicReference<>();
+        userEventDispatcher.dispatch(() -> handledOn.set(Thread.currentThread()));
+
+        assertSame(Thread.currentThread(), handledOn.get());
+        assertEquals(1, userEventDispatcher.getProcessedEvents());
+    }
+
+    @Test
+    void dispatch_shouldRunOnWorker_WhenAsynchronous() throws Exception {
+        userEventDispatcher = new UserEventDispatcher(transactionManager, true, 4, 10, "block");
+
+        CompletableFuture<Thread> handledOn = new CompletableFuture<>();
+        userEventDispatcher.dispatch(() -> handledOn.complete(Thread.currentThread()));
+
+        assertNotSame(Thread.currentThread(), handledOn.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void dispatch_shouldDropAndCount_WhenQueueIsFullAndPolicyIsDrop() {
+        userEventDispatcher = new UserEventDispatcher(transactionManager, true, 1, 1, "drop");
+
+        fillWorkerAndQueue();
+        userEventDispatcher.dispatch(() -> fail("dropped event was handled"));
+
+        assertEquals(1, userEventDispatcher.getDroppedEvents());
+        assertEquals(1, userEventDispatcher.getQueueDepth());
+    }
+
+    @Test
+    void dispatch_shouldRunOnCallingThread_WhenQueueIsFullAndPolicyIsCallerRuns() {
+        userEventDispatcher = new UserEventDispatcher(transactionManager, true, 1, 1, "caller-runs");
+
+        fillWorkerAndQueue();
+        AtomicReference<Thread> handledOn = new AtomicReference<>();
+        userEventDispatcher.dispatch(() -> handledOn.set(Thread.currentThread()));
+
+        assertSame(Thread.currentThread(), handledOn.get());
+        assertEquals(0, userEventDispatcher.getDroppedEvents());
+    }
+
+    @Test
+    void dispatch_shouldWaitForQueueSlot_WhenQueueIsFullAndPolicyIsBlock() throws Exception {
+        userEventDispatcher = new UserEventDispatcher(transactionManager, true, 1, 1, "block");
+
+        fillWorkerAndQueue();
+        CountDownLatch handled = new CountDownLatch(1);
+        CompletableFuture<Void> blockedDispatch = CompletableFuture.runAsync(() -> userEventDispatcher.dispatch(handled::countDown));
+
+        assertThrows(Exception.class, () -> blockedDispatch.get(200, TimeUnit.MILLISECONDS));
+
+        releaseWorker.countDown();
+
+        blockedDispatch.get(5, TimeUnit.SECONDS);
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertEquals(0, userEventDispatcher.getDroppedEvents());
+    }
+
+    private void fillWorkerAndQueue() {
+        CountDownLatch workerBusy = new CountDownLatch(1);
+
+        userEventDispatcher.dispatch(() -> {
+            workerBusy.countDown();
+            awaitRelease();
+        });
+        awaitUninterruptibly(workerBusy);
+
+        userEventDispatcher.dispatch(this::awaitRelease);
+    }
+
+    private void awaitRelease() {
+        awaitUninterruptibly(releaseWorker);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
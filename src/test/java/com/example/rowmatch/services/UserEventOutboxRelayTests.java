@@ -0,0 +1,160 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.ActiveTournamentHolder;
+import com.example.rowmatch.tournament.TournamentService;
+import com.example.rowmatch.tournament.leaderboard.TournamentLeaderboardService;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import com.example.rowmatch.user.UserEntity;
+import com.example.rowmatch.user.UserRepository;
+import com.example.rowmatch.user.UserService;
+import com.example.rowmatch.user.outbox.UserEventOutboxRelay;
+import com.example.rowmatch.user.outbox.UserEventOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// the score buffer is on and never flushes on its own, so the relayed scores can only reach the rows through the relay itself
+@SpringBootTest(properties = {"rowmatch.user-events.outbox.enabled=true", "rowmatch.user-events.outbox.relay-interval-ms=3600000",
+        "rowmatch.score-buffer.enabled=true", "rowmatch.score-buffer.flush-interval-ms=3600000"})
+@ActiveProfiles("test")
+public class UserEventOutboxRelayTests {
+
+    private static final int USER_LEVEL = 950;
+
+    @Autowired
+    TournamentService tournamentService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TournamentParticipationRepository tournamentParticipationRepository;
+
+    @Autowired
+    UserEventOutboxRepository userEventOutboxRepository;
+
+    @Autowired
+    UserEventOutboxRelay userEventOutboxRelay;
+
+    @Autowired
+    ActiveTournamentHolder activeTournamentHolder;
+
+    @Autowired
+    TournamentLeaderboardService tournamentLeaderboardService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    int tournamentId;
+
+    @BeforeEach
+    void startTournament() {
+        tournamentService.rotate();
+        userEventOutboxRepository.deleteAll();
+
+        tournamentId = activeTournamentHolder.get().getId();
+    }
+
+    @Test
+    void relayBatch_shouldApplySummedIncrementPerParticipationAndEmptyOutbox() throws Exception {
+        int firstUserId = createParticipatingUser();
+        int secondUserId = createParticipatingUser();
+
+        for (int i = 0; i < 3; i++) {
+            userService.levelUp(firstUserId);
+        }
+        userService.levelUp(secondUserId);
+
+        assertEquals(4, userEventOutboxRepository.count());
+        assertEquals(0, getUserScore(firstUserId));
+
+        // resident before the relay, so it is raised once the relayed increments are committed
+        tournamentLeaderboardService.getLeaderboard(getGroupId(firstUserId));
+
+        assertEquals(4, userEventOutboxRelay.relayBatch());
+
+        assertEquals(3, getUserScore(firstUserId));
+        assertEquals(1, getUserScore(secondUserId));
+        assertEquals(0, userEventOutboxRepository.count());
+        assertEquals(3, getResidentUserScore(firstUserId));
+    }
+
+    @Test
+    void relayBatch_shouldDropEvent_WhenTournamentNoLongerTakesScores() throws Exception {
+        int userId = createParticipatingUser();
+
+        UserEntity user = userRepository.findById(userId).orElseThrow();
+        user.setLastEnteredTournamentId(tournamentId + 1000);
+        userRepository.save(user);
+
+        userService.levelUp(userId);
+        long droppedEvents = userEventOutboxRelay.getDroppedEvents();
+
+        assertEquals(1, userEventOutboxRelay.relayBatch());
+        assertEquals(0, userEventOutboxRepository.count());
+        assertEquals(droppedEvents + 1, userEventOutboxRelay.getDroppedEvents());
+    }
+
+    @Test
+    void relayBatch_shouldApplyEvent_WhenTournamentEndedWithinGracePeriod() throws Exception {
+        int userId = createParticipatingUser();
+
+        tournamentService.rotate();
+        userService.levelUp(userId);
+
+        assertEquals(1, userEventOutboxRelay.relayBatch());
+        assertEquals(1, getUserScore(userId));
+    }
+
+    @Test
+    void relayBatch_shouldDropEvent_WhenRecordedEndIsPastGracePeriodThoughThisNodeStillAcceptsScores() throws Exception {
+        int userId = createParticipatingUser();
+
+        tournamentService.rotate();
+        // as if another node had rotated long ago, while this one only just caught up
+        jdbcTemplate.update("UPDATE tournaments SET endedAt = ? WHERE id = ?", Timestamp.from(Instant.now().minus(Duration.ofHours(1))), tournamentId);
+        assertTrue(activeTournamentHolder.acceptsScoresFor(tournamentId));
+
+        userService.levelUp(userId);
+        long droppedEvents = userEventOutboxRelay.getDroppedEvents();
+
+        assertEquals(1, userEventOutboxRelay.relayBatch());
+        assertEquals(0, getUserScore(userId));
+        assertEquals(droppedEvents + 1, userEventOutboxRelay.getDroppedEvents());
+    }
+
+    private int createParticipatingUser() throws Exception {
+        UserEntity user = new UserEntity();
+        user.setCurrentLevel(USER_LEVEL);
+
+        int userId = userRepository.save(user).getId();
+        tournamentService.participate(userId);
+
+        return userId;
+    }
+
+    private int getGroupId(int userId) {
+        return tournamentParticipationRepository.findByTournamentIdAndUserId(tournamentId, userId).orElseThrow().getGroupId();
+    }
+
+    private int getResidentUserScore(int userId) {
+        return tournamentLeaderboardService.getResidentParticipation(tournamentId, userId).getUserScore();
+    }
+
+    private int getUserScore(int userId) {
+        return tournamentParticipationRepository.findByTournamentIdAndUserId(tournamentId, userId).orElseThrow().getUserScore();
+    }
+}
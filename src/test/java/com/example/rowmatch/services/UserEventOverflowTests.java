@@ -0,0 +1,124 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.tournament.TournamentService;
+import com.example.rowmatch.tournament.participation.TournamentParticipationRepository;
+import com.example.rowmatch.tournament.response.GetLeaderboardResponse;
+import com.example.rowmatch.user.UserEntity;
+import com.example.rowmatch.user.UserEventDispatcher;
+import com.example.rowmatch.user.UserRepository;
+import com.example.rowmatch.user.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// one worker and one queue slot, so with both taken the next event overflows onto the thread that committed the level up
+@SpringBootTest(properties = {
+        "rowmatch.user-events.async=true",
+        "rowmatch.user-events.workers=1",
+        "rowmatch.user-events.queue-capacity=1",
+        "rowmatch.user-events.overflow-policy=caller-runs"
+})
+@ActiveProfiles("test")
+public class UserEventOverflowTests {
+
+    private static final int USER_LEVEL = 950;
+
+    @Autowired
+    UserEventDispatcher userEventDispatcher;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    TournamentService tournamentService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TournamentParticipationRepository tournamentParticipationRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final CountDownLatch releaseWorker = new CountDownLatch(1);
+
+    private int tournamentId;
+
+    private int userId;
+
+    @BeforeEach
+    void joinTournament() throws Exception {
+        tournamentService.rotate();
+
+        UserEntity user = new UserEntity();
+        user.setCurrentLevel(USER_LEVEL);
+        userId = userRepository.save(user).getId();
+
+        GetLeaderboardResponse leaderboard = tournamentService.participate(userId);
+        tournamentId = leaderboard.participations.get(0).getTournamentId();
+    }
+
+    @AfterEach
+    void releaseWorker() {
+        releaseWorker.countDown();
+    }
+
+    @Test
+    void levelUp_shouldScoreInItsOwnTransaction_WhenEventOverflowsOntoCallingThread() throws Exception {
+        fillWorkerAndQueue();
+
+        userService.levelUp(userId);
+
+        // the worker is still blocked, so the score can only have been written by the overflow on this thread
+        assertEquals(1, getUserScore());
+        assertEquals(0, userEventDispatcher.getDroppedEvents());
+    }
+
+    @Test
+    void levelUp_shouldNotScore_WhenItsTransactionRollsBack() throws Exception {
+        fillWorkerAndQueue();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            userService.levelUp(userId);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, getUserScore());
+    }
+
+    private int getUserScore() {
+        return tournamentParticipationRepository.findByTournamentIdAndUserId(tournamentId, userId).orElseThrow().getUserScore();
+    }
+
+    private void fillWorkerAndQueue() throws InterruptedException {
+        CountDownLatch workerBusy = new CountDownLatch(1);
+
+        userEventDispatcher.dispatch(() -> {
+            workerBusy.countDown();
+            awaitRelease();
+        });
+        assertTrue(workerBusy.await(5, TimeUnit.SECONDS));
+
+        userEventDispatcher.dispatch(this::awaitRelease);
+        assertEquals(1, userEventDispatcher.getQueueDepth());
+    }
+
+    private void awaitRelease() {
+        try {
+            releaseWorker.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
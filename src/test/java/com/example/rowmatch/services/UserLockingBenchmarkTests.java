@@ -0,0 +1,107 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.datasource.ReadRouting;
+import com.example.rowmatch.user.UserLocks;
+import com.example.rowmatch.user.UserRepository;
+import com.example.rowmatch.user.UserService;
+import com.example.rowmatch.user.outbox.UserEventOutbox;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// opt-in: mvn test -Dtest=UserLockingBenchmarkTests -Drowmatch.benchmark.user-updates=20000
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "rowmatch.benchmark.user-updates", matches = "\\d+")
+public class UserLockingBenchmarkTests {
+
+    private static final int THREAD_COUNT = 16;
+    private static final int HOT_USER_COUNT = 4;
+    private static final int MAX_ATTEMPTS = 1000;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    UserEventOutbox userEventOutbox;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ReadRouting readRouting;
+
+    @Test
+    void levelUp_benchmark() throws Exception {
+        int updateCount = Integer.parseInt(System.getProperty("rowmatch.benchmark.user-updates"));
+
+        for (UserLocks.Mode mode : UserLocks.Mode.values()) {
+            UserService userService = new UserService(userRepository, eventPublisher, userEventOutbox,
+                    new UserLocks(transactionManager, mode.name(), 1024, 60000, MAX_ATTEMPTS), readRouting, 500, 100, 1000);
+
+            int[] userIds = new int[HOT_USER_COUNT];
+            for (int i = 0; i < HOT_USER_COUNT; i++) {
+                userIds[i] = userService.create().getId();
+            }
+
+            // warms up the code path of the mode before it is measured
+            int warmUpCount = updateCount / 10;
+            run(warmUpCount, i -> userService.levelUp(userIds[i % HOT_USER_COUNT]));
+
+            long startedAt = System.nanoTime();
+            run(updateCount, i -> userService.levelUp(userIds[i % HOT_USER_COUNT]));
+            long millis = (System.nanoTime() - startedAt) / 1_000_000;
+
+            System.out.printf("%s: %d level ups of %d users on %d threads in %d ms, %d per second%n",
+                    mode, updateCount, HOT_USER_COUNT, THREAD_COUNT, millis, updateCount * 1000L / Math.max(millis, 1));
+
+            int totalLevels = 0;
+            for (int userId : userIds) {
+                totalLevels += userRepository.findById(userId).orElseThrow().getCurrentLevel() - 1;
+            }
+            // H2 now and then lets two concurrent compare-and-set updates of one row both through, which only the
+            // version check alone is exposed to
+            if (mode == UserLocks.Mode.OPTIMISTIC) {
+                System.out.printf("%s: %d level ups lost to the database%n", mode, warmUpCount + updateCount - totalLevels);
+            } else {
+                assertEquals(warmUpCount + updateCount, totalLevels);
+            }
+        }
+    }
+
+    private void run(int updateCount, IntConsumer update) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            workers.add(executor.submit(() -> {
+                for (int i = next.getAndIncrement(); i < updateCount; i = next.getAndIncrement()) {
+                    update.accept(i);
+                }
+
+                return null;
+            }));
+        }
+
+        for (Future<?> worker : workers) {
+            worker.get(10, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+    }
+}
@@ -1,12 +1,22 @@
 package com.example.rowmatch.services;
 
+import com.example.rowmatch.datasource.ReadRouting;
+import com.example.rowmatch.exception.LevelUpBatchTooLargeException;
 import com.example.rowmatch.exception.UserNotFoundException;
 import com.example.rowmatch.user.*;
+import com.example.rowmatch.user.outbox.UserEventOutbox;
+import com.example.rowmatch.user.request.LevelUpBatchRequest.LevelUpItem;
+import com.example.rowmatch.user.response.LevelUpBatchResponse;
+import com.example.rowmatch.user.response.LevelUpBatchResponse.LevelUpResult;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.*;
 
 import static com.example.rowmatch.util.Generators.generateUser;
 import static java.util.Optional.*;
@@ -23,12 +33,28 @@ public class UserServiceTests {
     @Mock
     ApplicationEventPublisher eventPublisher;
 
-    @InjectMocks
+    @Mock
+    UserEventOutbox userEventOutbox;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
     UserService userService;
 
+    @BeforeEach
+    void createService() {
+        UserLocks userLocks = new UserLocks(transactionManager, "striped", 16, 1000, 3);
+        // without replicas every read goes to the primary as before
+        ReadRouting readRouting = new ReadRouting(transactionManager, List.of(), 2000, 1000);
+        userService = new UserService(userRepository, eventPublisher, userEventOutbox, userLocks, readRouting, MAX_LEVEL_UP_BATCH_SIZE, MAX_LEVELS_PER_LEVEL_UP, MAX_LEVELS_PER_USER_PER_BATCH);
+    }
+
     private static final int STARTING_COINS = 5000;
     private static final int LEVELUP_COIN_REWARD = 25;
     private static final int STARTING_LEVEL = 1;
+    private static final int MAX_LEVEL_UP_BATCH_SIZE = 10;
+    private static final int MAX_LEVELS_PER_LEVEL_UP = 100;
+    private static final int MAX_LEVELS_PER_USER_PER_BATCH = 150;
 
     @Test
     void create_shouldCreateAndReturnUser() {
@@ -45,6 +71,28 @@ public class UserServiceTests {
                 argThat((UserEntity user) -> user.getLastEnteredTournamentId() == null && user.getCoins() == STARTING_COINS && user.getCurrentLevel() == STARTING_LEVEL));
     }
 
+    @Test
+    void get_shouldReturnProjectedUserWithoutLoadingEntity() throws UserNotFoundException {
+        int userId = 1;
+
+        doReturn(of(new UserDto(userId, 12, 5300, 7))).when(userRepository).findDtoById(userId);
+
+        UserDto user = userService.get(userId);
+
+        assertEquals(12, user.getLevel());
+        assertEquals(5300, user.getCoins());
+        assertEquals(7, user.getLastEnteredTournamentId());
+
+        verify(userRepository, never()).findById(anyInt());
+    }
+
+    @Test
+    void get_shouldThrowUserNotFoundException_WhenUserDoesNotExist() {
+        doReturn(empty()).when(userRepository).findDtoById(1);
+
+        assertThrows(UserNotFoundException.class, () -> userService.get(1));
+    }
+
     @Test
     void levelUp_shouldThrowUserNotFoundException_WhenUserDoesNotExist() {
         int userId = 1;
@@ -106,5 +154,117 @@ public class UserServiceTests {
                 .publishEvent(argThat((UserLevelledUpEvent event) -> event.userId == userToLevelUp.getId() && event.tournamentId == userToLevelUp.getLastEnteredTournamentId()));
     }
 
+    @Test
+    void levelUp_shouldWriteToOutboxInsteadOfPublishing_WhenOutboxIsEnabled() throws UserNotFoundException {
+        int userId = 1;
+        Integer lastEnteredTournamentId = 666;
+
+        doReturn(of(generateUser(userId, 300, 121, lastEnteredTournamentId))).when(userRepository).findById(userId);
+        doAnswer(returnsFirstArg()).when(userRepository).save(any(UserEntity.class));
+        doReturn(true).when(userEventOutbox).isEnabled();
+
+        userService.levelUp(userId);
+
+        verify(userEventOutbox, times(1)).appendLevelUp(userId, lastEnteredTournamentId, 1);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void levelUpBatch_shouldSaveUserOnceAndPublishCoalescedEvent_WhenUserLevelsUpManyTimes() {
+        int userId = 1;
+        int coins = 300;
+        int level = 121;
+        Integer lastEnteredTournamentId = 666;
+
+        doReturn(Collections.singletonList(generateUser(userId, coins, level, lastEnteredTournamentId))).when(userRepository).findAllById(Collections.singleton(userId));
+        doAnswer(returnsFirstArg()).when(userRepository).save(any(UserEntity.class));
+
+        List<LevelUpResult> results = userService.levelUpBatch(Arrays.asList(new LevelUpItem(userId, 2, 1), new LevelUpItem(userId, 1, 1), new LevelUpItem(userId, 3, 3)));
+
+        assertTrue(results.stream().allMatch(result -> result.status == LevelUpBatchResponse.Status.APPLIED));
+        assertEquals(level + 5, results.get(0).user.getLevel());
+        assertEquals(coins + LEVELUP_COIN_REWARD * 5, results.get(0).user.getCoins());
 
+        verify(userRepository, times(1)).save(argThat((UserEntity user) -> user.getLastLevelUpSequence() == 3));
+        verify(eventPublisher, times(1)).publishEvent(argThat((UserLevelledUpEvent event) -> event.userId == userId && event.levelCount == 5));
+    }
+
+    @Test
+    void levelUpBatch_shouldSkipReplayedSequences() {
+        int userId = 1;
+        int level = 121;
+
+        UserEntity user = generateUser(userId, 300, level, null);
+        user.setLastLevelUpSequence(5);
+
+        doReturn(Collections.singletonList(user)).when(userRepository).findAllById(Collections.singleton(userId));
+        doAnswer(returnsFirstArg()).when(userRepository).save(any(UserEntity.class));
+
+        List<LevelUpResult> results = userService.levelUpBatch(Arrays.asList(new LevelUpItem(userId, 5, 1), new LevelUpItem(userId, 6, 1), new LevelUpItem(userId, 6, 1)));
+
+        assertEquals(LevelUpBatchResponse.Status.DUPLICATE, results.get(0).status);
+        assertEquals(LevelUpBatchResponse.Status.APPLIED, results.get(1).status);
+        assertEquals(LevelUpBatchResponse.Status.DUPLICATE, results.get(2).status);
+        assertEquals(level + 1, results.get(1).user.getLevel());
+
+        verify(userRepository, times(1)).save(any(UserEntity.class));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void levelUpBatch_shouldReportMissingUsersAndInvalidItems() {
+        int userId = 1;
+        int missingUserId = 2;
+
+        doReturn(Collections.singletonList(generateUser(userId, 300, 121, null))).when(userRepository).findAllById(new HashSet<>(Arrays.asList(userId, missingUserId)));
+
+        List<LevelUpResult> results = userService.levelUpBatch(Arrays.asList(new LevelUpItem(missingUserId, 1, 1), new LevelUpItem(userId, 1, 0)));
+
+        assertEquals(LevelUpBatchResponse.Status.USER_NOT_FOUND, results.get(0).status);
+        assertNull(results.get(0).user);
+        assertEquals(LevelUpBatchResponse.Status.INVALID, results.get(1).status);
+
+        verify(userRepository, never()).save(any(UserEntity.class));
+    }
+
+    @Test
+    void levelUpBatch_shouldRejectItemsAboveLevelLimits() {
+        int userId = 1;
+        int level = 121;
+
+        doReturn(Collections.singletonList(generateUser(userId, 300, level, null))).when(userRepository).findAllById(Collections.singleton(userId));
+        doAnswer(returnsFirstArg()).when(userRepository).save(any(UserEntity.class));
+
+        List<LevelUpResult> results = userService.levelUpBatch(Arrays.asList(new LevelUpItem(userId, 1, MAX_LEVELS_PER_LEVEL_UP + 1),
+                new LevelUpItem(userId, 2, MAX_LEVELS_PER_LEVEL_UP), new LevelUpItem(userId, 3, MAX_LEVELS_PER_LEVEL_UP), new LevelUpItem(userId, 4, 50)));
+
+        assertEquals(LevelUpBatchResponse.Status.INVALID, results.get(0).status);
+        assertEquals(LevelUpBatchResponse.Status.APPLIED, results.get(1).status);
+        assertEquals(LevelUpBatchResponse.Status.INVALID, results.get(2).status);
+        assertEquals(LevelUpBatchResponse.Status.APPLIED, results.get(3).status);
+        assertEquals(level + MAX_LEVELS_PER_USER_PER_BATCH, results.get(3).user.getLevel());
+    }
+
+    @Test
+    void levelUpBatch_shouldFailRatherThanOverflowCoins() {
+        int userId = 1;
+
+        doReturn(Collections.singletonList(generateUser(userId, Integer.MAX_VALUE - LEVELUP_COIN_REWARD, 121, null))).when(userRepository).findAllById(Collections.singleton(userId));
+
+        assertThrows(ArithmeticException.class, () -> userService.levelUpBatch(Collections.singletonList(new LevelUpItem(userId, 1, 2))));
+
+        verify(userRepository, never()).save(any(UserEntity.class));
+    }
+
+    @Test
+    void levelUpBatch_shouldThrowLevelUpBatchTooLargeException_WhenBatchExceedsLimit() {
+        List<LevelUpItem> levelUps = new ArrayList<>();
+        for (int i = 0; i <= MAX_LEVEL_UP_BATCH_SIZE; i++) {
+            levelUps.add(new LevelUpItem(1, i + 1, 1));
+        }
+
+        assertThrows(LevelUpBatchTooLargeException.class, () -> userService.levelUpBatch(levelUps));
+
+        verify(userRepository, never()).findAllById(any());
+    }
 }
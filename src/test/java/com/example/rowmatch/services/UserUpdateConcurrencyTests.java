@@ -0,0 +1,138 @@
+package com.example.rowmatch.services;
+
+import com.example.rowmatch.datasource.ReadRouting;
+import com.example.rowmatch.exception.UserUpdateConflictException;
+import com.example.rowmatch.user.UserEntity;
+import com.example.rowmatch.user.UserLocks;
+import com.example.rowmatch.user.UserRepository;
+import com.example.rowmatch.user.UserService;
+import com.example.rowmatch.user.outbox.UserEventOutbox;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class UserUpdateConcurrencyTests {
+
+    private static final int THREAD_COUNT = 8;
+    private static final int UPDATES_PER_KIND = 200;
+    private static final int STARTING_COINS = 5000;
+    private static final int LEVELUP_COIN_REWARD = 25;
+    private static final int REWARD = 10;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    UserEventOutbox userEventOutbox;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ReadRouting readRouting;
+
+    // H2 now and then lets two concurrent compare-and-set updates of one row both through, so the version check is
+    // covered by a stale write below rather than by racing two nodes here
+    @ParameterizedTest
+    @ValueSource(strings = {"striped", "pessimistic"})
+    void levelUpAndRewardClaim_shouldNotLoseCoins_WhenUpdatingOneUserConcurrently(String mode) throws Exception {
+        UserService userService = createNode(mode, 1);
+
+        int userId = userService.create().getId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> updates = new ArrayList<>();
+
+        for (int i = 0; i < UPDATES_PER_KIND; i++) {
+            updates.add(executor.submit(() -> {
+                start.await();
+                return userService.levelUp(userId);
+            }));
+            updates.add(executor.submit(() -> {
+                start.await();
+                return userService.updateAfterRewardClaim(userId, REWARD);
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> update : updates) {
+            update.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        UserEntity user = userRepository.findById(userId).orElseThrow();
+        assertEquals(STARTING_COINS + UPDATES_PER_KIND * (LEVELUP_COIN_REWARD + REWARD), user.getCoins());
+        assertEquals(1 + UPDATES_PER_KIND, user.getCurrentLevel());
+    }
+
+    @Test
+    void save_shouldFailVersionCheck_WhenUserWasUpdatedOnAnotherNodeSinceRead() {
+        UserService otherNode = createNode("striped", 1);
+
+        int userId = otherNode.create().getId();
+        UserEntity staleUser = userRepository.findById(userId).orElseThrow();
+
+        otherNode.updateAfterRewardClaim(userId, REWARD);
+
+        staleUser.setCoins(staleUser.getCoins() + LEVELUP_COIN_REWARD);
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userRepository.save(staleUser));
+
+        assertEquals(STARTING_COINS + REWARD, userRepository.findById(userId).orElseThrow().getCoins());
+    }
+
+    @Test
+    void update_shouldRetryInNewTransaction_WhenVersionCheckFails() {
+        UserLocks userLocks = new UserLocks(transactionManager, "optimistic", 64, 1000, 3);
+        AtomicInteger attempts = new AtomicInteger();
+
+        int result = userLocks.update(List.of(1), () -> {
+            assertTrue(TransactionSynchronizationManager.isActualTransactionActive());
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException(UserEntity.class, 1);
+            }
+
+            return attempts.get();
+        });
+
+        assertEquals(3, result);
+    }
+
+    @Test
+    void update_shouldThrowUserUpdateConflictException_WhenAttemptsAreExhausted() {
+        UserLocks userLocks = new UserLocks(transactionManager, "optimistic", 64, 1000, 3);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(UserUpdateConflictException.class, () -> userLocks.update(List.of(1), () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException(UserEntity.class, 1);
+        }));
+
+        assertEquals(3, attempts.get());
+    }
+
+    private UserService createNode(String mode, int maxAttempts) {
+        UserLocks userLocks = new UserLocks(transactionManager, mode, 64, 10000, maxAttempts);
+
+        return new UserService(userRepository, eventPublisher, userEventOutbox, userLocks, readRouting, 500, 100, 1000);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.rowmatch.util;
 
+import com.example.rowmatch.tournament.ActiveTournament;
 import com.example.rowmatch.tournament.TournamentEntity;
 import com.example.rowmatch.tournament.group.TournamentGroupEntity;
 import com.example.rowmatch.tournament.participation.TournamentParticipationEntity;
@@ -7,6 +8,8 @@ import com.example.rowmatch.user.UserDto;
 import com.example.rowmatch.user.UserEntity;
 import org.joda.time.DateTime;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Date;
 
 public class Generators {
@@ -33,6 +36,26 @@ public class Generators {
         return tournament;
     }
 
+    public static TournamentEntity generateSettledTournament(int id) {
+        TournamentEntity tournament = generateTournament(id, false);
+        tournament.setSettled(true);
+
+        return tournament;
+    }
+
+    public static TournamentEntity generateUpcomingTournament(int id, Instant startsAt) {
+        TournamentEntity tournament = TournamentEntity.upcoming(startsAt);
+        tournament.setId(id);
+
+        return tournament;
+    }
+
+    public static ActiveTournament generateActiveTournament(int id) {
+        Instant startedAt = Instant.now();
+
+        return new ActiveTournament(id, startedAt, startedAt.plus(1, ChronoUnit.DAYS));
+    }
+
     public static TournamentParticipationEntity generateParticipation(int id, int groupId, int tournamentId, int userId, boolean isRewardClaimed, int userScore) {
         TournamentParticipationEntity participation = new TournamentParticipationEntity();
         participation.setId(id);